@@ -0,0 +1,81 @@
+package com.lifeflow.bank.anomaly;
+
+/**
+ * Состояние одной пары (пользователь, категория) или (пользователь, мерчант): среднее и дисперсия
+ * по Уэлфорду — для log(суммы) и для интервала между тратами в днях. O(1) памяти, история не нужна.
+ *
+ * Суммы берутся в логарифме: траты распределены с длинным правым хвостом,
+ * и z-score по сырым суммам отмечал бы каждую крупную покупку.
+ */
+final class RunningStats {
+
+    private static final int NO_DAY = Integer.MIN_VALUE;
+
+    private long count;
+    private double mean;
+    private double m2;
+
+    private int lastEpochDay = NO_DAY;
+    private long gapCount;
+    private double gapMean;
+    private double gapM2;
+
+    void add(double logAmount, int epochDay) {
+        count++;
+        double delta = logAmount - mean;
+        mean += delta / count;
+        m2 += delta * (logAmount - mean);
+
+        if (lastEpochDay != NO_DAY && epochDay >= lastEpochDay) {
+            double gap = epochDay - lastEpochDay;
+            gapCount++;
+            double d = gap - gapMean;
+            gapMean += d / gapCount;
+            gapM2 += d * (gap - gapMean);
+        }
+        if (lastEpochDay == NO_DAY || epochDay > lastEpochDay) {
+            lastEpochDay = epochDay;
+        }
+    }
+
+    RunningStats copy() {
+        RunningStats c = new RunningStats();
+        c.count = count;
+        c.mean = mean;
+        c.m2 = m2;
+        c.lastEpochDay = lastEpochDay;
+        c.gapCount = gapCount;
+        c.gapMean = gapMean;
+        c.gapM2 = gapM2;
+        return c;
+    }
+
+    long count() {
+        return count;
+    }
+
+    double mean() {
+        return mean;
+    }
+
+    double stddev() {
+        return count < 2 ? 0 : Math.sqrt(m2 / (count - 1));
+    }
+
+    long gapCount() {
+        return gapCount;
+    }
+
+    double gapMean() {
+        return gapMean;
+    }
+
+    double gapStddev() {
+        return gapCount < 2 ? 0 : Math.sqrt(gapM2 / (gapCount - 1));
+    }
+
+    /** Дней с предыдущей траты, -1 — трат ещё не было или дата раньше последней. */
+    int daysSinceLast(int epochDay) {
+        return lastEpochDay == NO_DAY || epochDay < lastEpochDay ? -1 : epochDay - lastEpochDay;
+    }
+}
@@ -0,0 +1,254 @@
+package com.lifeflow.bank.anomaly;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.dto.SpendingAnomalyDto;
+import com.lifeflow.bank.model.BankTransaction;
+import com.lifeflow.bank.segment.SegmentListener;
+import com.lifeflow.bank.segment.SegmentReader;
+import com.lifeflow.bank.service.CategorySummaryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Потоковый детектор необычных трат. На каждую пару (пользователь, категория) и (пользователь, мерчант)
+ * держится RunningStats — несколько чисел, без истории. Транзакции нового сегмента (SegmentListener)
+ * сначала сверяются с состоянием, потом в него добавляются; найденные аномалии копятся
+ * в коротком списке последних на пользователя.
+ *
+ * Историю не пересканирует: при старте SegmentStore отдаёт все сегменты по порядку записи, и они
+ * проходят тот же путь, что и новые, — состояние и список последних аномалий восстанавливаются такими же.
+ */
+@Component
+@Slf4j
+public class SpendingAnomalyDetector implements SegmentListener {
+
+    public static final String AMOUNT_CATEGORY = "AMOUNT_CATEGORY";
+    public static final String AMOUNT_MERCHANT = "AMOUNT_MERCHANT";
+    public static final String FREQUENCY_MERCHANT = "FREQUENCY_MERCHANT";
+
+    /** Нижняя граница σ для log(суммы): ≈ ±25 %, иначе у мерчанта с одинаковыми суммами любой сдвиг — «аномалия». */
+    private static final double MIN_LOG_STDDEV = 0.25;
+    private static final double MIN_GAP_STDDEV = 1.0;
+    /** Частоту проверяем только у редких мерчантов (подписки, коммуналка), а не у ежедневного кофе. */
+    private static final double MIN_TYPICAL_GAP_DAYS = 7.0;
+
+    @Value("${lifeflow.anomaly.z-threshold:3.5}")
+    private double zThreshold;
+
+    @Value("${lifeflow.anomaly.min-samples:5}")
+    private int minSamples;
+
+    @Value("${lifeflow.anomaly.max-merchants-per-user:256}")
+    private int maxMerchantsPerUser;
+
+    @Value("${lifeflow.anomaly.recent-per-user:100}")
+    private int recentPerUser;
+
+    private final Map<String, UserState> byUser = new ConcurrentHashMap<>();
+
+    private final class UserState {
+        final Map<String, RunningStats> categories = new HashMap<>();
+        final Map<String, RunningStats> merchants = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RunningStats> eldest) {
+                return size() > maxMerchantsPerUser;
+            }
+        };
+        final ArrayDeque<SpendingAnomalyDto> recent = new ArrayDeque<>();
+    }
+
+    @Override
+    public void onSegment(String username, SegmentReader segment) {
+        // внутри сегмента — по дате проводки, как пришли бы по одной
+        Integer[] order = new Integer[segment.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(segment::epochDay));
+
+        UserState state = stateFor(username);
+        int flagged = 0;
+        synchronized (state) {
+            for (int i : order) {
+                BankTransaction tx = segment.transaction(i);
+                for (SpendingAnomalyDto anomaly : evaluate(state, tx)) {
+                    state.recent.addLast(anomaly);
+                    if (state.recent.size() > recentPerUser) {
+                        state.recent.removeFirst();
+                    }
+                    flagged++;
+                }
+                add(state, tx);
+            }
+        }
+        if (flagged > 0) {
+            log.info("SpendingAnomalyDetector: {} anomalies among {} transactions of {} in {}",
+                    flagged, order.length, username, segment.path().getFileName());
+        }
+    }
+
+    /**
+     * Оценка транзакций выписки по текущему состоянию, без его изменения —
+     * для сводки, которая строится до записи выписки в журнал.
+     *
+     * Транзакции идут по дате и добавляются в черновую копию состояния, как в onSegment:
+     * повтор внутри выписки (второе списание подписки) сверяется уже с первым.
+     */
+    public List<SpendingAnomalyDto> score(String username, List<BankTransaction> txs) {
+        if (username == null || username.isBlank()) {
+            return List.of();
+        }
+        List<BankTransaction> ordered = txs.stream()
+                .filter(SpendingAnomalyDetector::isExpense)
+                .sorted(Comparator.comparingInt(SpendingAnomalyDetector::epochDay))
+                .toList();
+
+        // копируются только затронутые выпиской категории и мерчанты
+        UserState scratch = new UserState();
+        UserState state = byUser.get(EnrolledAccounts.normalize(username));
+        if (state != null) {
+            synchronized (state) {
+                for (BankTransaction tx : ordered) {
+                    copy(state.categories, scratch.categories, categoryKey(tx));
+                    copy(state.merchants, scratch.merchants, merchantKey(tx));
+                }
+            }
+        }
+
+        List<SpendingAnomalyDto> out = new ArrayList<>();
+        for (BankTransaction tx : ordered) {
+            out.addAll(evaluate(scratch, tx));
+            add(scratch, tx);
+        }
+        return out;
+    }
+
+    private static void copy(Map<String, RunningStats> from, Map<String, RunningStats> to, String key) {
+        if (key == null || to.containsKey(key)) {
+            return;
+        }
+        RunningStats stats = from.get(key);
+        if (stats != null) {
+            to.put(key, stats.copy());
+        }
+    }
+
+    /**
+     * Последние найденные аномалии пользователя за период (даты включительно).
+     */
+    public List<SpendingAnomalyDto> recent(String username, LocalDate from, LocalDate to) {
+        UserState state = byUser.get(EnrolledAccounts.normalize(username));
+        if (state == null) {
+            return List.of();
+        }
+        synchronized (state) {
+            return state.recent.stream()
+                    .filter(a -> !a.date().isBefore(from) && !a.date().isAfter(to))
+                    .toList();
+        }
+    }
+
+    private UserState stateFor(String username) {
+        return byUser.computeIfAbsent(EnrolledAccounts.normalize(username), u -> new UserState());
+    }
+
+    private static boolean isExpense(BankTransaction tx) {
+        return tx.getAmount() != null && tx.getBookedAt() != null && tx.getAmount().signum() < 0;
+    }
+
+    private static String merchantKey(BankTransaction tx) {
+        String counterparty = tx.getCounterparty();
+        return counterparty == null || counterparty.isBlank() ? null : counterparty.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String categoryKey(BankTransaction tx) {
+        return tx.getCategoryCode() == null ? CategorySummaryBuilder.UNCATEGORIZED : tx.getCategoryCode();
+    }
+
+    private static double logAmount(BankTransaction tx) {
+        return Math.log1p(tx.getAmount().abs().doubleValue());
+    }
+
+    private static int epochDay(BankTransaction tx) {
+        return (int) tx.getBookedAt().toLocalDate().toEpochDay();
+    }
+
+    private void add(UserState state, BankTransaction tx) {
+        if (!isExpense(tx)) {
+            return;
+        }
+        double x = logAmount(tx);
+        int day = epochDay(tx);
+        state.categories.computeIfAbsent(categoryKey(tx), k -> new RunningStats()).add(x, day);
+        String merchant = merchantKey(tx);
+        if (merchant != null) {
+            state.merchants.computeIfAbsent(merchant, k -> new RunningStats()).add(x, day);
+        }
+    }
+
+    private List<SpendingAnomalyDto> evaluate(UserState state, BankTransaction tx) {
+        if (!isExpense(tx)) {
+            return List.of();
+        }
+        double x = logAmount(tx);
+        int day = epochDay(tx);
+        String merchant = merchantKey(tx);
+        // get() у access-order LinkedHashMap двигает запись — для оценки это не важно
+        RunningStats byMerchant = merchant == null ? null : state.merchants.get(merchant);
+        RunningStats byCategory = state.categories.get(categoryKey(tx));
+
+        List<SpendingAnomalyDto> out = new ArrayList<>(2);
+
+        // сумма: сначала по мерчанту (точнее), если по нему мало данных — по категории
+        if (byMerchant != null && byMerchant.count() >= minSamples) {
+            double z = (x - byMerchant.mean()) / Math.max(byMerchant.stddev(), MIN_LOG_STDDEV);
+            if (z >= zThreshold) {
+                out.add(anomaly(tx, AMOUNT_MERCHANT, z)
+                        .typical(money(Math.expm1(byMerchant.mean())))
+                        .build());
+            }
+        } else if (byCategory != null && byCategory.count() >= minSamples) {
+            double z = (x - byCategory.mean()) / Math.max(byCategory.stddev(), MIN_LOG_STDDEV);
+            if (z >= zThreshold) {
+                out.add(anomaly(tx, AMOUNT_CATEGORY, z)
+                        .typical(money(Math.expm1(byCategory.mean())))
+                        .build());
+            }
+        }
+
+        // частота: редкий мерчант списал заметно раньше обычного (двойное списание подписки и т.п.)
+        if (byMerchant != null && byMerchant.gapCount() >= minSamples && byMerchant.gapMean() >= MIN_TYPICAL_GAP_DAYS) {
+            int days = byMerchant.daysSinceLast(day);
+            if (days >= 0 && days < byMerchant.gapMean() / 2) {
+                double z = (byMerchant.gapMean() - days) / Math.max(byMerchant.gapStddev(), MIN_GAP_STDDEV);
+                if (z >= zThreshold) {
+                    out.add(anomaly(tx, FREQUENCY_MERCHANT, z)
+                            .typicalGapDays(Math.round(byMerchant.gapMean() * 10) / 10.0)
+                            .build());
+                }
+            }
+        }
+        return out;
+    }
+
+    private static SpendingAnomalyDto.SpendingAnomalyDtoBuilder anomaly(BankTransaction tx, String kind, double z) {
+        return SpendingAnomalyDto.builder()
+                .date(tx.getBookedAt().toLocalDate())
+                .amount(tx.getAmount())
+                .merchant(tx.getCounterparty())
+                .categoryCode(tx.getCategoryCode())
+                .kind(kind)
+                .score(Math.round(z * 100) / 100.0);
+    }
+
+    private static BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
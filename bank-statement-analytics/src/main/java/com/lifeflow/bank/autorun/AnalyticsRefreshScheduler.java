@@ -0,0 +1,200 @@
+package com.lifeflow.bank.autorun;
+
+import com.lifeflow.bank.config.EmailAutorunProperties;
+import com.lifeflow.bank.config.RefreshSchedulerProperties;
+import com.lifeflow.bank.service.EmailStatementService;
+import com.lifeflow.bank.service.UserActivityTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Массовое обновление аналитики подключённых ящиков по расписанию (lifeflow.autorun.enabled).
+ *
+ * Как это устроено:
+ *  - по cron каждый ящик ставится в DelayQueue со случайным сдвигом (jitter), чтобы не стартовать всех разом;
+ *  - созревшие задачи переезжают в очередь готовых, где первыми идут недавно активные пользователи;
+ *  - workers потоков забирают задачи; IMAP-сессии и расшифровка PDF дополнительно
+ *    ограничены глобально (PipelineLimits), общими с API;
+ *  - при ошибке — повтор с экспоненциальной паузой, не больше maxAttempts за прогон.
+ *
+ * Метрики: lifeflow.bank.refresh.{queued,completed,failed,retried}, .queue.depth, .lag, .duration.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lifeflow.autorun", name = "enabled", havingValue = "true")
+@Slf4j
+public class AnalyticsRefreshScheduler {
+
+    private final EnrolledAccounts enrolledAccounts;
+    private final EmailAutorunProperties emailProperties;
+    private final RefreshSchedulerProperties properties;
+    private final EmailStatementService emailStatementService;
+    private final UserActivityTracker activityTracker;
+
+    private final DelayQueue<RefreshJob> delayed = new DelayQueue<>();
+    private final PriorityBlockingQueue<RefreshJob> ready = new PriorityBlockingQueue<>(64, RefreshJob.PRIORITY);
+    private ExecutorService threads;
+
+    private final Counter queued;
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter retried;
+    private final Timer lag;
+    private final Timer duration;
+
+    public AnalyticsRefreshScheduler(EnrolledAccounts enrolledAccounts,
+                                     EmailAutorunProperties emailProperties,
+                                     RefreshSchedulerProperties properties,
+                                     EmailStatementService emailStatementService,
+                                     UserActivityTracker activityTracker,
+                                     MeterRegistry registry) {
+        this.enrolledAccounts = enrolledAccounts;
+        this.emailProperties = emailProperties;
+        this.properties = properties;
+        this.emailStatementService = emailStatementService;
+        this.activityTracker = activityTracker;
+
+        this.queued = registry.counter("lifeflow.bank.refresh.queued");
+        this.completed = registry.counter("lifeflow.bank.refresh.completed");
+        this.failed = registry.counter("lifeflow.bank.refresh.failed");
+        this.retried = registry.counter("lifeflow.bank.refresh.retried");
+        this.lag = Timer.builder("lifeflow.bank.refresh.lag")
+                .description("Delay between a refresh becoming due and a worker starting it")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.duration = Timer.builder("lifeflow.bank.refresh.duration")
+                .description("Duration of one mailbox refresh")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("lifeflow.bank.refresh.queue.depth", this, s -> s.delayed.size() + s.ready.size())
+                .description("Mailbox refreshes waiting (delayed + ready)")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        int workers = Math.max(1, properties.workers());
+        threads = Executors.newFixedThreadPool(workers + 1, r -> {
+            Thread t = new Thread(r, "analytics-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        threads.submit(this::promoteDueJobs);
+        for (int i = 0; i < workers; i++) {
+            threads.submit(this::workLoop);
+        }
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        threads.shutdownNow();
+    }
+
+    @Scheduled(cron = "${lifeflow.autorun.refresh.cron:0 0 2 * * *}")
+    public void scheduleRefresh() {
+        long jitterMs = Math.max(0, properties.jitter().toMillis());
+        Instant now = Instant.now();
+
+        for (EmailAutorunProperties.Account account : enrolledAccounts.all()) {
+            long offset = jitterMs == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterMs);
+            delayed.put(new RefreshJob(account, now.plusMillis(offset), 1, activityTracker.lastSeen(account.username())));
+            queued.increment();
+        }
+        log.info("AnalyticsRefreshScheduler: queued {} mailboxes (jitter up to {})",
+                enrolledAccounts.all().size(), properties.jitter());
+    }
+
+    private void promoteDueJobs() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ready.put(delayed.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void workLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                RefreshJob job = ready.take();
+                lag.record(Duration.between(job.dueAt(), Instant.now()));
+                run(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(RefreshJob job) {
+        EmailAutorunProperties.Account account = job.account();
+        long start = System.nanoTime();
+        try {
+            emailStatementService.refreshStatements(
+                    account.username(), account.password(), emailProperties.lastCount(), account.pdfPassword());
+            completed.increment();
+        } catch (Exception e) {
+            if (job.attempt() >= properties.maxAttempts()) {
+                log.error("AnalyticsRefreshScheduler: giving up on {} after {} attempts",
+                        account.username(), job.attempt(), e);
+                failed.increment();
+                return;
+            }
+            Duration backoff = backoff(job.attempt());
+            log.warn("AnalyticsRefreshScheduler: refresh of {} failed (attempt {}), retry in {}",
+                    account.username(), job.attempt(), backoff, e);
+            retried.increment();
+            delayed.put(new RefreshJob(account, Instant.now().plus(backoff), job.attempt() + 1, job.lastSeen()));
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * base * 2^(attempt-1) плюс до 50% случайного разброса.
+     */
+    private Duration backoff(int attempt) {
+        long base = properties.retryBackoff().toMillis() << Math.min(attempt - 1, 16);
+        long spread = base / 2 == 0 ? 0 : ThreadLocalRandom.current().nextLong(base / 2);
+        return Duration.ofMillis(base + spread);
+    }
+
+    private record RefreshJob(EmailAutorunProperties.Account account,
+                              Instant dueAt,
+                              int attempt,
+                              Instant lastSeen) implements Delayed {
+
+        /** Недавно активные пользователи — первыми, затем — кто раньше созрел. */
+        static final Comparator<RefreshJob> PRIORITY = Comparator
+                .comparing(RefreshJob::lastSeen, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(RefreshJob::dueAt);
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(Instant.now(), dueAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return dueAt.compareTo(((RefreshJob) other).dueAt);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.lifeflow.bank.autorun;
+
+import com.lifeflow.bank.config.EmailAutorunProperties;
+import com.lifeflow.bank.service.RequestCoalescer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Ящики, подключённые к фоновой обработке (lifeflow.autorun.email.accounts).
+ *
+ * Готовые данные отдаются только если в запросе те же пароли, что и в конфиге, —
+ * хранилище не должно открывать чужие выписки по одному имени ящика.
+ */
+@Component
+public class EnrolledAccounts {
+
+    private final List<EmailAutorunProperties.Account> accounts;
+    private final Map<String, String> credentialsHashByUser;
+
+    public EnrolledAccounts(EmailAutorunProperties properties) {
+        this.accounts = properties.accounts();
+        this.credentialsHashByUser = accounts.stream().collect(Collectors.toMap(
+                a -> normalize(a.username()),
+                a -> RequestCoalescer.hashCredentials(a.password(), a.pdfPassword()),
+                (a, b) -> a
+        ));
+    }
+
+    public static String normalize(String username) {
+        return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public List<EmailAutorunProperties.Account> all() {
+        return accounts;
+    }
+
+    public boolean isEnrolled(String username) {
+        return credentialsHashByUser.containsKey(normalize(username));
+    }
+
+    public boolean matches(String username, String password, String pdfPassword) {
+        String expected = credentialsHashByUser.get(normalize(username));
+        return expected != null && expected.equals(RequestCoalescer.hashCredentials(password, pdfPassword));
+    }
+}
@@ -0,0 +1,202 @@
+package com.lifeflow.bank.autorun;
+
+import com.lifeflow.bank.config.EmailAutorunProperties;
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.service.EmailStatementService;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MessageCountAdapter;
+import jakarta.mail.event.MessageCountEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Держит IMAP IDLE на INBOX каждого подключённого ящика.
+ *
+ * Когда приходит письмо от vypisy@tatrabanka.sk, выписка сразу скачивается, разбирается
+ * и считается (EmailStatementService.ingestMessage → StatementIngestedEvent → StatementSummaryStore),
+ * поэтому первый API-запрос нового месяца уже не платит за полный конвейер.
+ *
+ * Полная догрузка последних выписок выполняется один раз при первом подключении; после
+ * переподключения дочитываются только письма с UID больше последнего увиденного.
+ *
+ * Включается флагом lifeflow.autorun.email.enabled. На каждый ящик — свой поток.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lifeflow.autorun.email", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class MailboxIdleWatcher {
+
+    private static final String IMAP_HOST = "imap.gmail.com";
+    private static final long MIN_BACKOFF_MS = 5_000;
+    private static final long MAX_BACKOFF_MS = 10 * 60_000;
+    /** Сколько ждать событие листенера после возврата из idle(): оно доставляется из другого потока. */
+    private static final long ARRIVAL_WAIT_MS = 2_000;
+
+    private final EmailAutorunProperties properties;
+    private final EmailStatementService emailStatementService;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (EmailAutorunProperties.Account account : properties.accounts()) {
+            Thread t = new Thread(() -> watchLoop(account), "imap-idle-" + account.username());
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+        log.info("MailboxIdleWatcher: watching {} mailboxes", workers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void watchLoop(EmailAutorunProperties.Account account) {
+        long backoff = MIN_BACKOFF_MS;
+        UidCursor cursor = new UidCursor();
+        boolean caughtUp = false;
+        while (running) {
+            try {
+                // 1) первичное заполнение — только при первом подключении
+                if (!caughtUp) {
+                    emailStatementService.fetchLastStatementsAndLogAnalytics(
+                            account.username(), account.password(), properties.lastCount(), account.pdfPassword());
+                    caughtUp = true;
+                }
+
+                // 2) дочитываем пропущенное за время разрыва и ждём новые письма
+                idle(account, cursor);
+                backoff = MIN_BACKOFF_MS;
+            } catch (Exception e) {
+                log.warn("MailboxIdleWatcher: {} disconnected, reconnecting in {} ms", account.username(), backoff, e);
+            }
+
+            if (!running) {
+                break;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Возвращается, когда соединение закрылось (Gmail рвёт IDLE примерно раз в 30 минут).
+     */
+    private void idle(EmailAutorunProperties.Account account, UidCursor cursor)
+            throws MessagingException, InterruptedException {
+        Properties props = new Properties();
+        props.put("mail.store.protocol", "imaps");
+        props.put("mail.imaps.partialfetch", "true");
+
+        Session session = Session.getInstance(props);
+        try (Store store = session.getStore("imaps")) {
+            store.connect(IMAP_HOST, account.username(), account.password());
+
+            IMAPFolder inbox = (IMAPFolder) store.getFolder("INBOX");
+            inbox.open(Folder.READ_ONLY);
+
+            // Листенер вызывается из потока событий Jakarta Mail — там только ставим в очередь,
+            // обработка идёт в нашем потоке между вызовами idle()
+            BlockingQueue<Message> arrived = new LinkedBlockingQueue<>();
+            inbox.addMessageCountListener(new MessageCountAdapter() {
+                @Override
+                public void messagesAdded(MessageCountEvent e) {
+                    arrived.addAll(Arrays.asList(e.getMessages()));
+                }
+            });
+
+            catchUp(account, inbox, cursor);
+
+            log.info("MailboxIdleWatcher: IDLE on INBOX of {}", account.username());
+            while (running && inbox.isOpen()) {
+                inbox.idle();
+
+                // idle() возвращается раньше, чем поток событий успевает вызвать листенер,
+                // поэтому первое письмо ждём с таймаутом, остальные забираем без ожидания
+                Message msg = arrived.poll(ARRIVAL_WAIT_MS, TimeUnit.MILLISECONDS);
+                while (msg != null) {
+                    handleArrived(account, inbox, cursor, msg);
+                    msg = arrived.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Письма, пришедшие между разрывом и новым подключением: UID строго больше последнего увиденного.
+     * При первом подключении (или смене UIDVALIDITY) только запоминает текущую границу —
+     * всё, что было до неё, уже покрыла полная догрузка.
+     */
+    private void catchUp(EmailAutorunProperties.Account account, IMAPFolder inbox, UidCursor cursor)
+            throws MessagingException {
+        long uidValidity = inbox.getUIDValidity();
+        if (cursor.lastUid <= 0 || cursor.uidValidity != uidValidity) {
+            cursor.uidValidity = uidValidity;
+            cursor.lastUid = inbox.getUIDNext() - 1;
+            return;
+        }
+
+        Message[] missed = inbox.getMessagesByUID(cursor.lastUid + 1, UIDFolder.MAXUID);
+        int handled = 0;
+        for (Message msg : missed) {
+            // "n:*" на сервере всегда возвращает хотя бы последнее письмо, даже если его UID < n
+            if (msg != null && inbox.getUID(msg) > cursor.lastUid) {
+                handleArrived(account, inbox, cursor, msg);
+                handled++;
+            }
+        }
+        if (handled > 0) {
+            log.info("MailboxIdleWatcher: caught up {} messages for {} after reconnect", handled, account.username());
+        }
+    }
+
+    private void handleArrived(EmailAutorunProperties.Account account, IMAPFolder inbox, UidCursor cursor, Message msg)
+            throws MessagingException {
+        cursor.lastUid = Math.max(cursor.lastUid, inbox.getUID(msg));
+        if (!emailStatementService.isStatementMessage(msg)) {
+            return;
+        }
+        log.info("MailboxIdleWatcher: new Tatra statement for {}", account.username());
+        AnalyticsSummaryDto summary = emailStatementService.ingestMessage(account.username(), msg, account.pdfPassword());
+        if (summary == null) {
+            log.info("MailboxIdleWatcher: message for {} had no new statement", account.username());
+        }
+    }
+
+    /**
+     * Последний увиденный UID INBOX; живёт между переподключениями одного потока.
+     */
+    private static final class UidCursor {
+        long uidValidity;
+        long lastUid;
+    }
+}
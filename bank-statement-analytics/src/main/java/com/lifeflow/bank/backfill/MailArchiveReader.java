@@ -0,0 +1,225 @@
+package com.lifeflow.bank.backfill;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Читает архивы почты с диска без IMAP и без разбора тел писем.
+ *
+ * .mbox отображается в память (FileChannel.map) и режется на письма по строкам "From " в начале строки;
+ * Maildir — каждый файл в cur/ и new/ это одно письмо. Наружу отдаются срезы ByteBuffer,
+ * а у каждого письма смотрятся только заголовки — тело трогаем, только если отправитель подходит.
+ */
+@Slf4j
+public class MailArchiveReader {
+
+    /** Одно окно отображения; письма длиннее окна не бывают, а файл может быть больше 2 ГБ. */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private static final byte[] FROM_LINE = "From ".getBytes(StandardCharsets.US_ASCII);
+
+    private final String senderNeedle;
+
+    public MailArchiveReader(String sender) {
+        this.senderNeedle = sender.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Обходит все письма архива; consumer получает только письма от нужного отправителя
+     * (RFC 822 без envelope-строки "From ..." у mbox).
+     */
+    public void read(Path path, Consumer<ByteBuffer> consumer) throws IOException {
+        if (Files.isDirectory(path) && isMaildir(path)) {
+            readMaildir(path, consumer);
+        } else if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                for (Path p : files.filter(Files::isRegularFile).filter(MailArchiveReader::isMbox).toList()) {
+                    readMbox(p, consumer);
+                }
+            }
+        } else {
+            readMbox(path, consumer);
+        }
+    }
+
+    private static boolean isMaildir(Path dir) {
+        return Files.isDirectory(dir.resolve("cur")) || Files.isDirectory(dir.resolve("new"));
+    }
+
+    private static boolean isMbox(Path p) {
+        return p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".mbox");
+    }
+
+    // ---------- Maildir ----------
+
+    private void readMaildir(Path dir, Consumer<ByteBuffer> consumer) throws IOException {
+        for (String sub : List.of("cur", "new")) {
+            Path d = dir.resolve(sub);
+            if (!Files.isDirectory(d)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.list(d)) {
+                for (Path file : files.filter(Files::isRegularFile).toList()) {
+                    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                        if (matchesSender(buf)) {
+                            consumer.accept(buf);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ---------- mbox ----------
+
+    private void readMbox(Path file, Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            log.info("MailArchiveReader: mapping {} ({} MB)", file, size >> 20);
+
+            long windowStart = 0;
+            while (windowStart < size) {
+                long windowLen = Math.min(MAP_WINDOW, size - windowStart);
+                MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLen);
+                boolean lastWindow = windowStart + windowLen >= size;
+
+                List<int[]> messages = split(window, lastWindow);
+                int consumed = 0;
+                for (int[] m : messages) {
+                    ByteBuffer msg = window.slice(m[0], m[1] - m[0]);
+                    if (matchesSender(msg)) {
+                        consumer.accept(msg);
+                    }
+                    consumed = m[1];
+                }
+
+                if (lastWindow) {
+                    break;
+                }
+                if (consumed == 0) {
+                    throw new IOException("Message larger than " + (MAP_WINDOW >> 20) + " MB in " + file);
+                }
+                // следующее окно начинается с недочитанного письма
+                windowStart += consumed;
+            }
+        }
+    }
+
+    /**
+     * Границы писем [start, end) внутри окна; start — уже после envelope-строки "From ...".
+     * Последнее письмо окна возвращается только если окно последнее (иначе оно может быть обрезано).
+     */
+    private static List<int[]> split(ByteBuffer window, boolean lastWindow) {
+        List<int[]> out = new ArrayList<>();
+        int limit = window.limit();
+
+        int envelope = startsWithFrom(window, 0) ? 0 : nextFromLine(window, 0);
+        while (envelope >= 0) {
+            int bodyStart = lineEnd(window, envelope);
+            int next = nextFromLine(window, bodyStart);
+            if (next < 0) {
+                if (lastWindow) {
+                    out.add(new int[]{bodyStart, limit});
+                }
+                break;
+            }
+            out.add(new int[]{bodyStart, next});
+            envelope = next;
+        }
+        return out;
+    }
+
+    private static int nextFromLine(ByteBuffer buf, int from) {
+        int limit = buf.limit() - FROM_LINE.length;
+        for (int i = Math.max(from, 1); i <= limit; i++) {
+            if (buf.get(i - 1) == '\n' && startsWithFrom(buf, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWithFrom(ByteBuffer buf, int at) {
+        if (at + FROM_LINE.length > buf.limit()) {
+            return false;
+        }
+        for (int k = 0; k < FROM_LINE.length; k++) {
+            if (buf.get(at + k) != FROM_LINE[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lineEnd(ByteBuffer buf, int from) {
+        for (int i = from; i < buf.limit(); i++) {
+            if (buf.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return buf.limit();
+    }
+
+    // ---------- заголовки ----------
+
+    /**
+     * Ищем отправителя только в заголовках (до первой пустой строки), тело не читаем.
+     */
+    private boolean matchesSender(ByteBuffer msg) {
+        int limit = msg.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int end = lineEnd(msg, lineStart);
+            int len = end - lineStart;
+            if (len <= 2 && isBlankLine(msg, lineStart, end)) {
+                return false; // конец заголовков
+            }
+            if (len > 5 && headerIs(msg, lineStart, "from:")) {
+                String line = new String(bytes(msg, lineStart, end), StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+                return line.contains(senderNeedle);
+            }
+            lineStart = end;
+        }
+        return false;
+    }
+
+    private static boolean isBlankLine(ByteBuffer buf, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean headerIs(ByteBuffer buf, int start, String nameLower) {
+        for (int k = 0; k < nameLower.length(); k++) {
+            int b = buf.get(start + k);
+            if (Character.toLowerCase(b) != nameLower.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] bytes(ByteBuffer buf, int start, int end) {
+        byte[] out = new byte[end - start];
+        buf.get(start, out);
+        return out;
+    }
+}
@@ -0,0 +1,173 @@
+package com.lifeflow.bank.backfill;
+
+import com.lifeflow.bank.config.BackfillProperties;
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.service.EmailStatementService;
+import com.lifeflow.bank.service.StatementDeduplicator;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.SharedInputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Офлайн-загрузка истории из выгрузок почты (lifeflow.backfill.path).
+ *
+ * Письма от Tatra banky режутся из .mbox / Maildir без IMAP (MailArchiveReader),
+ * а PDF-выписки параллельно идут через тот же путь, что и письма из Gmail:
+ * EmailStatementService.ingestMessage → PdfStatementService → AnalyticsService → StatementIngestedEvent.
+ * В лог пишется скорость в выписках в секунду — это же и воспроизводимый нагрузочный тест конвейера.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lifeflow.backfill", name = "path")
+@RequiredArgsConstructor
+@Slf4j
+public class StatementBackfillRunner implements ApplicationRunner {
+
+    private static final long PROGRESS_EVERY = 100;
+
+    private final BackfillProperties properties;
+    private final EmailStatementService emailStatementService;
+    private final ApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path path = Path.of(properties.path());
+        int threads = properties.effectiveThreads();
+        log.info("StatementBackfillRunner: loading {} for {} with {} threads", path, properties.username(), threads);
+
+        Session session = Session.getInstance(new Properties());
+        StatementDeduplicator dedup = new StatementDeduplicator();
+
+        AtomicLong messages = new AtomicLong();
+        AtomicLong statements = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long start = System.nanoTime();
+
+        // ограниченная очередь: чтение архива не убегает вперёд обработки
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            new MailArchiveReader(EmailStatementService.TATRA_SENDER).read(path, buf -> executor.execute(() -> {
+                messages.incrementAndGet();
+                try (InputStream is = new ByteBufferInputStream(buf)) {
+                    MimeMessage msg = new MimeMessage(session, is);
+                    AnalyticsSummaryDto summary = emailStatementService.ingestMessage(
+                            properties.username(), msg, properties.pdfPassword(), dedup);
+                    if (summary != null) {
+                        long done = statements.incrementAndGet();
+                        if (done % PROGRESS_EVERY == 0) {
+                            logRate("progress", done, messages.get(), start);
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    log.warn("StatementBackfillRunner: failed to ingest message", e);
+                }
+            }));
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+
+        logRate("finished", statements.get(), messages.get(), start);
+        if (failures.get() > 0) {
+            log.warn("StatementBackfillRunner: {} messages failed", failures.get());
+        }
+
+        if (properties.exitWhenDone()) {
+            System.exit(SpringApplication.exit(context, () -> failures.get() == 0 ? 0 : 1));
+        }
+    }
+
+    private void logRate(String phase, long statements, long messages, long startNanos) {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+        log.info("StatementBackfillRunner: {} — {} statements from {} messages in {} s ({} statements/s)",
+                phase, statements, messages, String.format("%.1f", seconds), String.format("%.1f", statements / seconds));
+    }
+
+    /**
+     * InputStream поверх среза отображённого файла. SharedInputStream: MimeMessage тогда не копирует
+     * тело письма в byte[], а берёт части (вложения) как срезы того же буфера (newStream) —
+     * в куче только разобранные заголовки.
+     */
+    private static final class ByteBufferInputStream extends InputStream implements SharedInputStream {
+
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf.slice();
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            buf.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buf.reset();
+        }
+
+        @Override
+        public long getPosition() {
+            return buf.position();
+        }
+
+        /** Позиции — от начала этого потока; end == -1 — до конца. */
+        @Override
+        public InputStream newStream(long start, long end) {
+            int from = (int) start;
+            int to = end < 0 ? buf.limit() : (int) end;
+            return new ByteBufferInputStream(buf.slice(from, to - from));
+        }
+    }
+}
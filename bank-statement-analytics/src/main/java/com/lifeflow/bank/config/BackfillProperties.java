@@ -0,0 +1,26 @@
+package com.lifeflow.bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * lifeflow.backfill — разовая загрузка выписок из выгруженных архивов почты (.mbox или Maildir).
+ *
+ * path        — файл .mbox, каталог Maildir или каталог с несколькими .mbox
+ * username    — чей это архив (ключ для хранилищ)
+ * threads     — 0 → по числу ядер
+ * exitWhenDone — завершить приложение после загрузки (удобно для офлайн нагрузочного теста)
+ */
+@ConfigurationProperties(prefix = "lifeflow.backfill")
+public record BackfillProperties(
+        String path,
+        String username,
+        String pdfPassword,
+        @DefaultValue("0") int threads,
+        @DefaultValue("false") boolean exitWhenDone
+) {
+
+    public int effectiveThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,30 @@
+package com.lifeflow.bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * lifeflow.autorun.email — фоновая обработка выписок для «подключённых» ящиков.
+ *
+ * accounts — ящики, за которыми следим (пароли лучше подставлять из env / .env).
+ */
+@ConfigurationProperties(prefix = "lifeflow.autorun.email")
+public record EmailAutorunProperties(
+        boolean enabled,
+        @DefaultValue("12") int lastCount,
+        List<Account> accounts
+) {
+
+    public EmailAutorunProperties {
+        accounts = accounts == null ? List.of() : List.copyOf(accounts);
+    }
+
+    public record Account(
+            String username,     // Gmail
+            String password,     // app password
+            String pdfPassword   // пароль от PDF-выписок
+    ) {
+    }
+}
@@ -0,0 +1,28 @@
+package com.lifeflow.bank.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.context.support.AbstractApplicationContext;
+
+/**
+ * События приложения доставляются синхронно, по очереди всем слушателям.
+ *
+ * По умолчанию исключение одного слушателя прерывает рассылку: остальные слушатели события
+ * не вызываются, а ошибка уходит в publishEvent — и упавшая, например, запись сегмента обрывала бы
+ * разбор выписки. Здесь ошибка слушателя логируется, остальные получают событие как обычно;
+ * производные хранилища (SegmentStore) потом догоняют журнал сами.
+ */
+@Configuration
+@Slf4j
+public class EventConfig {
+
+    @Bean(name = AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME)
+    public SimpleApplicationEventMulticaster applicationEventMulticaster(BeanFactory beanFactory) {
+        SimpleApplicationEventMulticaster multicaster = new SimpleApplicationEventMulticaster(beanFactory);
+        multicaster.setErrorHandler(e -> log.error("EventConfig: event listener failed, continuing with the others", e));
+        return multicaster;
+    }
+}
@@ -0,0 +1,40 @@
+package com.lifeflow.bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * lifeflow.pdf — как достаём транзакции из PDF-выписки.
+ *
+ * mode   — TEXT: PDFTextStripper.getText + регэкспы по строкам (как раньше);
+ *          LAYOUT: глифы раскладываются по колонкам таблицы Tatra по координатам,
+ *          шапка, подвал и юридический текст не обрабатываются. Если таблица не найдена — откат на TEXT.
+ * layout — границы колонок в долях ширины страницы (0..1): дата | описание | сумма | знак
+ * parallelMinPages — с какого числа страниц извлекаем текст параллельно по диапазонам страниц
+ * pageWorkers      — потоков на это во всём узле, 0 = по числу ядер
+ */
+@ConfigurationProperties(prefix = "lifeflow.pdf")
+public record PdfExtractionProperties(
+        @DefaultValue("TEXT") Mode mode,
+        @DefaultValue Layout layout,
+        @DefaultValue("16") int parallelMinPages,
+        @DefaultValue("0") int pageWorkers
+) {
+
+    public int effectivePageWorkers() {
+        return pageWorkers > 0 ? pageWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    public enum Mode {
+        TEXT,
+        LAYOUT
+    }
+
+    public record Layout(
+            @DefaultValue("0.17") double dateColumnEnd,
+            @DefaultValue("0.72") double amountColumnStart,
+            @DefaultValue("0.93") double signColumnStart,
+            @DefaultValue("3.0") double maxRowGap        // в высотах строки: дальше — уже не продолжение операции
+    ) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.lifeflow.bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * lifeflow.pipeline — глобальные лимиты конвейера выписок на узел.
+ *
+ * maxPdfDecodes = 0 → по числу ядер.
+ */
+@ConfigurationProperties(prefix = "lifeflow.pipeline")
+public record PipelineProperties(
+        @DefaultValue("16") int maxImapConnections,
+        @DefaultValue("0") int maxPdfDecodes
+) {
+
+    public int effectivePdfDecodes() {
+        return maxPdfDecodes > 0 ? maxPdfDecodes : Runtime.getRuntime().availableProcessors();
+    }
+}
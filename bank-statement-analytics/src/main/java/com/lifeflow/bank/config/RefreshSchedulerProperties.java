@@ -0,0 +1,24 @@
+package com.lifeflow.bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * lifeflow.autorun.refresh — ночное массовое обновление аналитики подключённых ящиков.
+ *
+ * jitter       — случайный сдвиг старта каждого ящика, чтобы не стартовать всех разом
+ * workers      — сколько ящиков обновляем одновременно
+ * maxAttempts  — попыток на ящик за прогон
+ * retryBackoff — база экспоненциальной паузы между попытками
+ */
+@ConfigurationProperties(prefix = "lifeflow.autorun.refresh")
+public record RefreshSchedulerProperties(
+        @DefaultValue("0 0 2 * * *") String cron,
+        @DefaultValue("PT30M") Duration jitter,
+        @DefaultValue("8") int workers,
+        @DefaultValue("4") int maxAttempts,
+        @DefaultValue("PT1M") Duration retryBackoff
+) {
+}
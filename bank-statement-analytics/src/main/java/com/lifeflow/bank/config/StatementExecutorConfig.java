@@ -0,0 +1,39 @@
+package com.lifeflow.bank.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пулы для параллельной обработки PDF.
+ *
+ * statementUploadExecutor — загруженные файлы; размер как лимит расшифровок PDF,
+ *                           больше потоков всё равно ждали бы PipelineLimits.
+ * pdfPageExecutor         — диапазоны страниц одной длинной выписки (PageParallelExtractor).
+ */
+@Configuration
+public class StatementExecutorConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService statementUploadExecutor(PipelineProperties properties) {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(properties.effectivePdfDecodes(), r -> {
+            Thread t = new Thread(r, "statement-upload-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pdfPageExecutor(PdfExtractionProperties properties) {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(properties.effectivePageWorkers(), r -> {
+            Thread t = new Thread(r, "pdf-pages-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
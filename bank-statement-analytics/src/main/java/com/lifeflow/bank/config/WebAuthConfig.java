@@ -0,0 +1,37 @@
+package com.lifeflow.bank.config;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.controller.AccountAuthInterceptor;
+import com.lifeflow.bank.controller.AdminAuthInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Какие эндпоинты требуют учётных данных ящика (AccountAuthInterceptor).
+ *
+ * /history*, /percentiles — только с паролями: отдают сохранённые данные пользователя.
+ * /upload                 — анонимно без сохранения; с паролями — выписки пишутся в историю.
+ * /api/admin/**           — служебный токен lifeflow.admin.token (AdminAuthInterceptor), без него выключены.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebAuthConfig implements WebMvcConfigurer {
+
+    private final EnrolledAccounts enrolledAccounts;
+
+    @Value("${lifeflow.admin.token:}")
+    private String adminToken;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AccountAuthInterceptor(enrolledAccounts, true))
+                .addPathPatterns("/api/analytics/history", "/api/analytics/history/**", "/api/analytics/percentiles");
+        registry.addInterceptor(new AccountAuthInterceptor(enrolledAccounts, false))
+                .addPathPatterns("/api/analytics/upload");
+        registry.addInterceptor(new AdminAuthInterceptor(adminToken))
+                .addPathPatterns("/api/admin/**");
+    }
+}
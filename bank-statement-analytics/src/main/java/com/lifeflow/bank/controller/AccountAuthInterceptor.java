@@ -0,0 +1,83 @@
+package com.lifeflow.bank.controller;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Проверка учётных данных ящика перед эндпоинтами, которые пишут или читают историю пользователя.
+ *
+ * Authorization: Basic base64(username:password) + X-Pdf-Password — те же пароли, что и в конфиге
+ * ящика (EnrolledAccounts.matches). Имя пользователя для обработчика берётся только отсюда
+ * (атрибут USERNAME), параметру username в запросе не доверяем.
+ *
+ * required = false — для эндпоинтов, которые работают и анонимно: без заголовка запрос проходит
+ * без пользователя, но неверные учётные данные всё равно дают 401.
+ */
+@Slf4j
+public class AccountAuthInterceptor implements HandlerInterceptor {
+
+    public static final String USERNAME = "lifeflow.authenticatedUsername";
+    public static final String PDF_PASSWORD_HEADER = "X-Pdf-Password";
+
+    private static final String BASIC = "Basic ";
+
+    private final EnrolledAccounts enrolledAccounts;
+    private final boolean required;
+
+    public AccountAuthInterceptor(EnrolledAccounts enrolledAccounts, boolean required) {
+        this.enrolledAccounts = enrolledAccounts;
+        this.required = required;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null && !required) {
+            return true;
+        }
+
+        String username = authenticate(authorization, request.getHeader(PDF_PASSWORD_HEADER));
+        if (username == null) {
+            log.warn("AccountAuthInterceptor: rejected {} {}", request.getMethod(), request.getRequestURI());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"lifeflow\"");
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return false;
+        }
+        request.setAttribute(USERNAME, username);
+        return true;
+    }
+
+    /**
+     * Имя пользователя, если пароли совпали с конфигом, иначе null.
+     */
+    private String authenticate(String authorization, String pdfPassword) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BASIC, 0, BASIC.length())) {
+            return null;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(authorization.substring(BASIC.length()).trim()),
+                    StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int colon = decoded.indexOf(':');
+        if (colon <= 0) {
+            return null;
+        }
+        String username = decoded.substring(0, colon);
+        String password = decoded.substring(colon + 1);
+        return enrolledAccounts.matches(username, password, pdfPassword) ? EnrolledAccounts.normalize(username) : null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.lifeflow.bank.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Проверка служебного токена перед /api/admin/**: Authorization: Bearer <lifeflow.admin.token>.
+ *
+ * Токен не задан — служебные эндпоинты выключены (404), а не открыты всем.
+ * Сравнение — MessageDigest.isEqual, без раннего выхода на первом несовпавшем байте.
+ */
+@Slf4j
+public class AdminAuthInterceptor implements HandlerInterceptor {
+
+    private static final String BEARER = "Bearer ";
+
+    private final byte[] token;
+
+    public AdminAuthInterceptor(String token) {
+        this.token = token == null || token.isBlank() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (CorsUtils.isPreFlightRequest(request)) {
+            return true;
+        }
+        if (token == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return false;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())
+                || !MessageDigest.isEqual(token,
+                authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8))) {
+            log.warn("AdminAuthInterceptor: rejected {} {}", request.getMethod(), request.getRequestURI());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer realm=\"lifeflow-admin\"");
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return false;
+        }
+        return true;
+    }
+}
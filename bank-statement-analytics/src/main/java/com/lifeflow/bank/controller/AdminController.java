@@ -0,0 +1,43 @@
+package com.lifeflow.bank.controller;
+
+import com.lifeflow.bank.dto.MerchantFrequencyDto;
+import com.lifeflow.bank.merchant.UncategorizedMerchantTracker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Служебные эндпоинты для команды (не для фронта пользователя).
+ * Только с Authorization: Bearer <lifeflow.admin.token> — см. WebAuthConfig / AdminAuthInterceptor.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final UncategorizedMerchantTracker uncategorizedMerchantTracker;
+
+    /**
+     * GET http://localhost:8081/api/admin/merchants/uncategorized?limit=50
+     * Authorization: Bearer ${LIFEFLOW_ADMIN_TOKEN}
+     *
+     * Самые частые мерчанты с категорией OTHER по всем пользователям — кандидаты в правила CategoryClassifier.
+     */
+    @GetMapping("/merchants/uncategorized")
+    public List<MerchantFrequencyDto> uncategorizedMerchants(
+            @RequestParam(value = "limit", defaultValue = "50") int limit
+    ) {
+        List<MerchantFrequencyDto> top = uncategorizedMerchantTracker.top(Math.min(Math.max(1, limit), MAX_LIMIT));
+        log.info("Received /api/admin/merchants/uncategorized: {} of {} OTHER transactions",
+                top.size(), uncategorizedMerchantTracker.total());
+        return top;
+    }
+}
@@ -1,28 +1,51 @@
 package com.lifeflow.bank.controller;
 
+import com.lifeflow.bank.autorun.EnrolledAccounts;
 import com.lifeflow.bank.dto.AnalyticsSummaryDto;
 import com.lifeflow.bank.dto.UserEmailRequest;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import com.lifeflow.bank.metrics.StageTimings;
 import com.lifeflow.bank.service.EmailStatementService;
+import com.lifeflow.bank.service.FetchedStatements;
 import com.lifeflow.bank.service.GPTAnalyticsService;
+import com.lifeflow.bank.service.RequestCoalescer;
+import com.lifeflow.bank.service.StatementSummaryStore;
+import com.lifeflow.bank.service.UserActivityTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequiredArgsConstructor
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ETAG)  // фронт читает ETag для If-None-Match
 @Slf4j
 @RequestMapping("/analytics")
 public class AiAnalyticsController {
 
     private final EmailStatementService emailStatementService;
     private final GPTAnalyticsService gptAnalyticsService;
+    private final RequestCoalescer requestCoalescer;
+    private final StatementSummaryStore summaryStore;
+    private final EnrolledAccounts enrolledAccounts;
+    private final PipelineMetrics metrics;
+    private final UserActivityTracker activityTracker;
     private final ObjectMapper objectMapper;
 
     /**
@@ -35,9 +58,20 @@ public class AiAnalyticsController {
      *   "pdfPassword": "pdf_password_for_statements",
      *   "lastCount": 6
      * }
+     *
+     * Ответ всегда содержит заголовок Server-Timing (imap, search, download, pdf, parse, analyze, gpt, total).
+     * С ?debug=true та же разбивка кладётся в тело ответа в поле "timings".
+     *
+     * 200 несёт ETag набора выписок (UIDVALIDITY + UID писем + lastCount + версия промпта); полный
+     * прогон снимает его со своего же SEARCH. Запрос с If-None-Match и тем же ETag получает 304 после
+     * одной короткой IMAP-сессии (SEARCH + FETCH UID) — без скачивания PDF, разбора и GPT; без
+     * If-None-Match этой сессии нет. Метод POST (в теле пароли), поэтому кэш ответа держит сам фронт,
+     * а сервер лишь подтверждает, что он не устарел.
      */
     @PostMapping("/ai/user")
-    public ResponseEntity<JsonNode> getUserAiAnalytics(@RequestBody UserEmailRequest req) {
+    public ResponseEntity<?> getUserAiAnalytics(@RequestBody UserEmailRequest req,
+                                                @RequestParam(name = "debug", defaultValue = "false") boolean debug,
+                                                @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         // --- ВАЛИДАЦИЯ ПАРАМЕТРОВ (400) ---
         if (req.username() == null || req.username().isBlank()) {
@@ -53,26 +87,179 @@ public class AiAnalyticsController {
             return badRequest("lastCount must be > 0");
         }
 
-        List<AnalyticsSummaryDto> summaries;
+        activityTracker.touch(req.username());
+
+        // --- УСЛОВНЫЙ ЗАПРОС (304): набор выписок и промпт не менялись ---
+        // без If-None-Match сравнивать не с чем — отпечаток даст сам прогон
+        if (ifNoneMatch != null && !ifNoneMatch.isBlank()) {
+            StageTimings check = new StageTimings();
+            String current = etag(req, StageTimings.with(check, () -> statementSetFingerprint(req)));
+            if (current != null && etagMatches(ifNoneMatch, current)) {
+                log.info("Statement set of {} unchanged, 304 Not Modified", req.username());
+                metrics.cacheHit("etag");
+                return withTimings(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build(),
+                        check.toMillis(), false);
+            }
+        }
 
-        // --- ПОЛУЧЕНИЕ ВЫПИСОК ---
+        // --- ВЫПИСКИ + GPT (одинаковые параллельные запросы склеиваются) ---
+        AiOutcome outcome;
         try {
-            summaries = emailStatementService.fetchLastStatementsAndLogAnalytics(
-                    req.username(),
-                    req.password(),
-                    req.lastCount(),
-                    req.pdfPassword()
+            outcome = requestCoalescer.execute(
+                    RequestCoalescer.key(req.username(), req.lastCount(), req.password(), req.pdfPassword()),
+                    () -> computeAiAnalytics(req)
             );
+        } catch (StageException e) {
+            return withTimings(serverError(e.getMessage()), e.timings, debug);
+        }
+
+        if (outcome.monthsCount() == 0) {
+            return withTimings(notFound("No TatraBanka statements found in mailbox"), outcome.timings(), debug);
+        }
+
+        int monthsCount = outcome.monthsCount();
+        String aiResult = outcome.aiResult();
+
+        // --- ФОРМИРОВАНИЕ JSON (200 OK): ответ GPT копируется потоком токенов, без дерева ---
+        // ETag — только от набора, который реально посчитан (до прогона в ящик могла прийти выписка)
+        String etag = etag(req, outcome.statementSet());
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (etag != null) {
+            ok.eTag(etag);
+        }
+        try {
+            byte[] body = spliceMonthsCount(objectMapper, aiResult, monthsCount, debug ? outcome.timings() : null);
+            return withTimings(ok.contentType(MediaType.APPLICATION_JSON).body(body), outcome.timings(), false);
+        } catch (IOException e) {
+            log.warn("GPT result is not a JSON object, returning it as raw text: {}", e.getMessage());
+            ObjectNode raw = objectMapper.createObjectNode();
+            raw.put("raw", aiResult);
+            raw.put("monthsCount", monthsCount);
+            return withTimings(ok.body(raw), outcome.timings(), debug);
+        }
+    }
+
+    /**
+     * Копирует JSON-объект от GPT токен за токеном (JsonParser → JsonGenerator) и дописывает в корень
+     * monthsCount (и timings для ?debug=true). Одноимённые поля от GPT в корне отбрасываются —
+     * значение сервера главнее. Не объект или битый JSON — IOException, тогда отдаём как raw.
+     */
+    static byte[] spliceMonthsCount(ObjectMapper objectMapper, String aiResult, int monthsCount,
+                                    Map<String, Double> timings) throws IOException {
+        JsonFactory factory = objectMapper.getFactory();
+        ByteArrayBuilder out = new ByteArrayBuilder(aiResult.length() + 64);
+        try (JsonParser in = factory.createParser(aiResult);
+             JsonGenerator gen = factory.createGenerator(out)) {
+            if (in.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(in, "AI result is not a JSON object");
+            }
+            gen.writeStartObject();
+            while (in.nextToken() == JsonToken.FIELD_NAME) {
+                String field = in.currentName();
+                in.nextToken();
+                if ("monthsCount".equals(field) || (timings != null && "timings".equals(field))) {
+                    in.skipChildren();
+                    continue;
+                }
+                gen.writeFieldName(field);
+                gen.copyCurrentStructure(in);
+            }
+            if (in.nextToken() != null) {
+                throw new JsonParseException(in, "Trailing content after AI result object");
+            }
+            gen.writeNumberField("monthsCount", monthsCount);
+            if (timings != null) {
+                gen.writeObjectField("timings", timings);
+            }
+            gen.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Strong ETag: хэш ящика, UIDVALIDITY + UID писем-кандидатов, lastCount и версии промпта.
+     * null — отпечатка нет: тогда и ETag нет.
+     */
+    private static String etag(UserEmailRequest req, String statementSet) {
+        if (statementSet == null) {
+            return null;
+        }
+        String tag = RequestCoalescer.sha256(EnrolledAccounts.normalize(req.username())
+                + '\u0000' + req.lastCount()
+                + '\u0000' + GPTAnalyticsService.PROMPT_VERSION
+                + '\u0000' + statementSet);
+        return "\"" + tag.substring(0, 32) + "\"";
+    }
+
+    /**
+     * Отдельная короткая IMAP-сессия (SEARCH + FETCH UID) — только там, где полного прогона нет:
+     * проверка If-None-Match и ответ из готовых сводок.
+     * null — отпечаток снять не удалось (IMAP недоступен, неверный пароль): тогда просто полный прогон.
+     */
+    private String statementSetFingerprint(UserEmailRequest req) {
+        try {
+            return emailStatementService.statementSetFingerprint(req.username(), req.password(), req.lastCount());
         } catch (Exception e) {
-            log.error("Unexpected email processing error", e);
-            return serverError("Email parsing error: " + e.getMessage());
+            log.warn("Cannot fingerprint statement set of {}: {}", req.username(), e.getMessage());
+            return null;
         }
+    }
 
+    /**
+     * If-None-Match: список тегов через запятую или "*"; сравнение слабое (W/ игнорируется), как требует RFC 9110.
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Полный прогон: IMAP → PDF → аналитика → GPT.
+     * Выполняется один раз на группу одинаковых одновременных запросов.
+     */
+    private AiOutcome computeAiAnalytics(UserEmailRequest req) {
+        StageTimings timings = new StageTimings();
+        return StageTimings.with(timings, () -> computeAiAnalytics(req, timings));
+    }
+
+    private AiOutcome computeAiAnalytics(UserEmailRequest req, StageTimings timings) {
+        // --- ГОТОВЫЕ СВОДКИ (подключённый ящик, фоновый раннер уже всё посчитал) ---
+        List<AnalyticsSummaryDto> summaries = storedSummaries(req);
+
+        // --- ПОЛУЧЕНИЕ ВЫПИСОК (отпечаток набора писем — с того же SEARCH) ---
+        String statementSet;
         if (summaries.isEmpty()) {
-            return notFound("No TatraBanka statements found in mailbox");
+            try {
+                FetchedStatements fetched = emailStatementService.fetchStatements(
+                        req.username(),
+                        req.password(),
+                        req.lastCount(),
+                        req.pdfPassword()
+                );
+                summaries = fetched.summaries();
+                statementSet = fetched.statementSet();
+            } catch (Exception e) {
+                log.error("Unexpected email processing error", e);
+                throw new StageException("Email parsing error: " + e.getMessage(), e, timings.toMillis());
+            }
+        } else {
+            statementSet = statementSetFingerprint(req);
         }
 
-        int monthsCount = summaries.size();
+        if (summaries.isEmpty()) {
+            return new AiOutcome(0, null, null, timings.toMillis());
+        }
 
         // --- GPT АНАЛИЗ ---
         String aiResult;
@@ -80,22 +267,53 @@ public class AiAnalyticsController {
             aiResult = gptAnalyticsService.generateAnalytics(summaries);
         } catch (Exception e) {
             log.error("GPT error", e);
-            return serverError("AI analytics failed: " + e.getMessage());
+            throw new StageException("AI analytics failed: " + e.getMessage(), e, timings.toMillis());
         }
+        return new AiOutcome(summaries.size(), aiResult, statementSet, timings.toMillis());
+    }
 
-        // --- ФОРМИРОВАНИЕ JSON (200 OK) ---
-        try {
-            JsonNode json = objectMapper.readTree(aiResult);
-            if (json.isObject()) {
-                ((ObjectNode) json).put("monthsCount", monthsCount);
-            }
-            return ResponseEntity.ok(json);
-        } catch (Exception e) {
-            ObjectNode raw = objectMapper.createObjectNode();
-            raw.put("raw", aiResult);
-            raw.put("monthsCount", monthsCount);
-            return ResponseEntity.ok(raw);
+    /**
+     * timings — разбивка того прогона, который реально считал результат
+     * (для «приклеившихся» запросов это чужой прогон).
+     */
+    private List<AnalyticsSummaryDto> storedSummaries(UserEmailRequest req) {
+        if (!enrolledAccounts.matches(req.username(), req.password(), req.pdfPassword())) {
+            return List.of();
+        }
+        List<AnalyticsSummaryDto> stored = summaryStore.latest(req.username(), req.lastCount());
+        if (!stored.isEmpty()) {
+            log.info("Serving {} stored monthly summaries for {}", stored.size(), req.username());
+            metrics.cacheHit("summary_store");
+        }
+        return stored;
+    }
+
+    private record AiOutcome(int monthsCount, String aiResult, String statementSet, Map<String, Double> timings) {
+    }
+
+    /**
+     * Ошибка этапа с уже готовым текстом для клиента (уходит в 500).
+     */
+    private static class StageException extends RuntimeException {
+        private final transient Map<String, Double> timings;
+
+        StageException(String message, Throwable cause, Map<String, Double> timings) {
+            super(message, cause);
+            this.timings = timings;
+        }
+    }
+
+    private <T> ResponseEntity<T> withTimings(ResponseEntity<T> response,
+                                              Map<String, Double> timings,
+                                              boolean debug) {
+        if (debug && response.getBody() instanceof ObjectNode node) {
+            node.set("timings", objectMapper.valueToTree(timings));
         }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header("Server-Timing", StageTimings.toServerTimingHeader(timings))
+                .header("Timing-Allow-Origin", "*")   // фронт на другом origin (см. @CrossOrigin)
+                .body(response.getBody());
     }
 
     // =====================================================================
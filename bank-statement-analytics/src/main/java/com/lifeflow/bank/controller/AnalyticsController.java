@@ -1,15 +1,35 @@
 package com.lifeflow.bank.controller;
 
+import com.lifeflow.bank.anomaly.SpendingAnomalyDetector;
 import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.dto.CategoryPercentileDto;
+import com.lifeflow.bank.dto.TransactionPageDto;
+import com.lifeflow.bank.dto.TransactionQueryRequest;
+import com.lifeflow.bank.dto.TransactionSearchDto;
+import com.lifeflow.bank.dto.UploadedStatementDto;
+import com.lifeflow.bank.ledger.TransactionLedger;
 import com.lifeflow.bank.model.BankTransaction;
+import com.lifeflow.bank.percentile.SpendingPercentiles;
+import com.lifeflow.bank.segment.SegmentAnalytics;
+import com.lifeflow.bank.segment.TransactionQueryService;
+import com.lifeflow.bank.segment.TransactionSearchService;
 import com.lifeflow.bank.service.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 @RestController
@@ -21,6 +41,162 @@ public class AnalyticsController {
     private final PdfStatementService pdfStatementService;
     private final AnalyticsService analyticsService;
     private final EmailStatementService emailStatementService;
+    private final StatementUploadService statementUploadService;
+    private final TransactionLedger transactionLedger;
+    private final SegmentAnalytics segmentAnalytics;
+    private final TransactionQueryService transactionQueryService;
+    private final TransactionSearchService transactionSearchService;
+    private final TransactionExporter transactionExporter;
+    private final SpendingAnomalyDetector spendingAnomalyDetector;
+    private final SpendingPercentiles spendingPercentiles;
+
+    /**
+     * POST http://localhost:8081/api/analytics/upload  (multipart/form-data)
+     *
+     * files       — один или несколько PDF-выписок
+     * pdfPassword — пароль от PDF (если выписки зашифрованы)
+     *
+     * Без заголовков авторизации загрузка ничего не сохраняет. С Authorization: Basic + X-Pdf-Password
+     * (см. AccountAuthInterceptor) выписки попадают в историю того, чьи пароли совпали.
+     *
+     * Вернёт по AnalyticsSummaryDto на каждый файл (в том же порядке).
+     */
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<UploadedStatementDto>> upload(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "pdfPassword", required = false) String pdfPassword,
+            @RequestAttribute(value = AccountAuthInterceptor.USERNAME, required = false) String username
+    ) {
+        log.info("Received /api/analytics/upload with {} files", files.size());
+        if (files.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(statementUploadService.analyzeUploads(files, pdfPassword, username));
+    }
+
+    /**
+     * GET http://localhost:8081/api/analytics/history?from=2025-01-01&to=2025-12-31[&category=FOOD_GROCERIES]
+     *
+     * Эндпоинты истории и перцентилей требуют Authorization: Basic (ящик:пароль) и X-Pdf-Password
+     * (AccountAuthInterceptor); пользователь — тот, чьи пароли совпали.
+     *
+     * Аналитика по сохранённой истории — без похода в почту и PDF.
+     * Сначала из сегментов .lfseg (скан отображённых файлов), если их нет — запросом к журналу.
+     */
+    @GetMapping("/history")
+    public AnalyticsSummaryDto history(
+            @RequestAttribute(AccountAuthInterceptor.USERNAME) String username,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "category", required = false) String category
+    ) {
+        AnalyticsSummaryDto summary = historySummary(username, from, to, category);
+        // аномалии отмечены детектором при записи в журнал — здесь только выборка за период
+        return summary.toBuilder()
+                .anomalies(spendingAnomalyDetector.recent(username, from, to))
+                .build();
+    }
+
+    /**
+     * GET http://localhost:8081/api/analytics/percentiles[?month=2025-09]
+     *
+     * Место пользователя среди всех по тратам в каждой категории за месяц (по умолчанию — прошлый).
+     * Траты пользователя — из его истории, распределение — из t-digest'ов, без скана чужих данных.
+     */
+    @GetMapping("/percentiles")
+    public List<CategoryPercentileDto> percentiles(
+            @RequestAttribute(AccountAuthInterceptor.USERNAME) String username,
+            @RequestParam(value = "month", required = false) YearMonth month
+    ) {
+        YearMonth target = month != null ? month : YearMonth.now().minusMonths(1);
+        AnalyticsSummaryDto summary = historySummary(username, target.atDay(1), target.atEndOfMonth(), null);
+        return spendingPercentiles.percentiles(target, summary);
+    }
+
+    /**
+     * Сначала из сегментов .lfseg (скан отображённых файлов), если их нет — запросом к журналу.
+     */
+    private AnalyticsSummaryDto historySummary(String username, LocalDate from, LocalDate to, String category) {
+        AnalyticsSummaryDto summary = segmentAnalytics.summarize(username, from, to, category);
+        if (summary != null) {
+            return summary;
+        }
+        List<BankTransaction> txs = transactionLedger.find(username, from, to, category);
+        log.info("Received /api/analytics/history for {} ({} - {}), {} transactions", username, from, to, txs.size());
+        return analyticsService.summarize(txs);
+    }
+
+    /**
+     * POST http://localhost:8081/api/analytics/history/query
+     *
+     * {"filter": {"and": [{"category": "FOOD_*"}, {"flag": "subscription"},
+     *                     {"from": "2024-01", "to": "2024-12"}]}, "page": 0, "size": 50}
+     *
+     * Фильтр считается по битмап-индексам истории, в ответе — страница транзакций (новые первыми).
+     */
+    @PostMapping("/history/query")
+    public ResponseEntity<TransactionPageDto> queryHistory(
+            @RequestAttribute(AccountAuthInterceptor.USERNAME) String username,
+            @RequestBody TransactionQueryRequest req
+    ) {
+        try {
+            return ResponseEntity.ok(transactionQueryService.query(username, req));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("Bad /api/analytics/history/query filter: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * GET http://localhost:8081/api/analytics/history/search?q=koshi[&prefix=true][&limit=50]
+     *
+     * Поиск по описанию и контрагенту: q — подстрока (от 3 символов) или начало слова (prefix=true, от 2).
+     * Результаты — новые первыми.
+     */
+    @GetMapping("/history/search")
+    public ResponseEntity<TransactionSearchDto> searchHistory(
+            @RequestAttribute(AccountAuthInterceptor.USERNAME) String username,
+            @RequestParam("q") String query,
+            @RequestParam(value = "prefix", defaultValue = "false") boolean prefix,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        try {
+            return ResponseEntity.ok(transactionSearchService.search(username, query, prefix, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("Bad /api/analytics/history/search query: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * GET http://localhost:8081/api/analytics/history/export?from=2020-01-01&to=2025-12-31&format=csv|ndjson
+     *
+     * Выгрузка всех категоризированных транзакций за период. Строки пишутся в ответ по мере чтения
+     * из журнала (chunked), так что размер выгрузки не ограничен памятью.
+     */
+    @GetMapping("/history/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @RequestAttribute(AccountAuthInterceptor.USERNAME) String username,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "format", defaultValue = "csv") String format
+    ) {
+        log.info("Received /api/analytics/history/export for {} ({} - {}), format={}", username, from, to, format);
+        if ("csv".equalsIgnoreCase(format)) {
+            StreamingResponseBody body = out -> transactionExporter.writeCsv(username, from, to, out);
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .header("Content-Disposition", "attachment; filename=\"transactions.csv\"")
+                    .body(body);
+        }
+        if ("ndjson".equalsIgnoreCase(format)) {
+            StreamingResponseBody body = out -> transactionExporter.writeNdjson(username, from, to, out);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(body);
+        }
+        return ResponseEntity.badRequest().build();
+    }
 
 //    @GetMapping("/from-local")
 //    public AnalyticsSummaryDto analyzeFromLocal(@RequestParam("namePart") String namePart) throws Exception {
@@ -5,7 +5,7 @@ import lombok.Builder;
 import java.math.BigDecimal;
 import java.util.List;
 
-@Builder
+@Builder(toBuilder = true)
 public record AnalyticsSummaryDto(
         BigDecimal totalExpenses,
         BigDecimal totalIncome,
@@ -14,6 +14,7 @@ public record AnalyticsSummaryDto(
         BigDecimal subscriptionsExpenses,
         List<CategoryAnalyticsDto> categories,
         List<SubscriptionDto> subscriptionsTop,
+        List<SpendingAnomalyDto> anomalies,
         String insight
 ) {
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.lifeflow.bank.dto;
+
+import lombok.Builder;
+
+import java.math.BigDecimal;
+
+/**
+ * Место пользователя среди всех пользователей по тратам в категории за месяц.
+ */
+@Builder
+public record CategoryPercentileDto(
+        String code,
+        String name,
+        BigDecimal amount,      // траты пользователя
+        double percentile,      // доля пользователей (%), у которых траты в категории меньше
+        BigDecimal median,      // медиана среди тех, кто в категории тратил
+        long users              // сколько пользователей в выборке месяца
+) {
+}
@@ -0,0 +1,14 @@
+package com.lifeflow.bank.dto;
+
+import lombok.Builder;
+
+/**
+ * Частый мерчант без категории: оценка числа операций (count-min, может быть завышена не больше чем на maxError).
+ */
+@Builder
+public record MerchantFrequencyDto(
+        String merchant,
+        long count,
+        long maxError
+) {
+}
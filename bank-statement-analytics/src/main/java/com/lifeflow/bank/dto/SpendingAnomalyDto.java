@@ -0,0 +1,22 @@
+package com.lifeflow.bank.dto;
+
+import lombok.Builder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Необычная трата: сумма или частота выбивается из истории категории / мерчанта пользователя.
+ */
+@Builder
+public record SpendingAnomalyDto(
+        LocalDate date,
+        BigDecimal amount,
+        String merchant,
+        String categoryCode,
+        String kind,            // AMOUNT_CATEGORY / AMOUNT_MERCHANT / FREQUENCY_MERCHANT
+        BigDecimal typical,     // типичная сумма (AMOUNT_*), у FREQUENCY_* — null
+        Double typicalGapDays,  // типичный интервал между тратами в днях (FREQUENCY_*), у AMOUNT_* — null
+        double score            // z-score
+) {
+}
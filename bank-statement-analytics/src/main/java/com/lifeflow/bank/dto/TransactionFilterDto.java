@@ -0,0 +1,23 @@
+package com.lifeflow.bank.dto;
+
+import java.util.List;
+
+/**
+ * Фильтр по истории транзакций. Все заданные поля узла объединяются через AND.
+ *
+ *  {"and": [{"category": "FOOD_*"}, {"flag": "subscription"}, {"from": "2024-01", "to": "2024-12"}]}
+ *  {"merchant": "bolt"}
+ *  {"not": {"category": "TRANSFER"}}
+ */
+public record TransactionFilterDto(
+        List<TransactionFilterDto> and,
+        List<TransactionFilterDto> or,
+        TransactionFilterDto not,
+        String category,     // код CategoryResult, "FOOD_*" — по префиксу
+        String merchant,     // подстрока в имени мерчанта, без учёта регистра
+        String month,        // "2025-03"
+        String from,         // диапазон месяцев "2025-01" .. "2025-06" включительно
+        String to,
+        String flag          // subscription | regular | expense | income
+) {
+}
@@ -0,0 +1,16 @@
+package com.lifeflow.bank.dto;
+
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record TransactionPageDto(
+        long total,
+        int page,
+        int size,
+        List<BankTransaction> items,
+        double queryMillis
+) {
+}
@@ -0,0 +1,8 @@
+package com.lifeflow.bank.dto;
+
+public record TransactionQueryRequest(
+        TransactionFilterDto filter,   // null — все транзакции
+        Integer page,                  // с 0
+        Integer size                   // по умолчанию 50, максимум 500
+) {
+}
@@ -0,0 +1,15 @@
+package com.lifeflow.bank.dto;
+
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record TransactionSearchDto(
+        String query,
+        long total,
+        List<BankTransaction> items,    // новые первыми
+        double queryMillis
+) {
+}
@@ -0,0 +1,16 @@
+package com.lifeflow.bank.dto;
+
+import lombok.Builder;
+
+import java.time.LocalDate;
+
+@Builder
+public record UploadedStatementDto(
+        String fileName,
+        LocalDate periodFrom,
+        LocalDate periodTo,
+        int transactionsCount,
+        AnalyticsSummaryDto summary,
+        String error          // null, если файл разобран успешно
+) {
+}
@@ -0,0 +1,23 @@
+package com.lifeflow.bank.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Категоризация пачки транзакций одной выписки.
+ */
+@Name("com.lifeflow.bank.Classify")
+@Label("Classify")
+@Category({"LifeFlow", "Bank Statements"})
+@Description("Keyword classification of a batch of transactions")
+public class ClassifyEvent extends Event {
+
+    @Label("Transaction Count")
+    public int transactionCount;
+
+    @Label("Uncategorised Count")
+    public int otherCount;
+}
@@ -0,0 +1,32 @@
+package com.lifeflow.bank.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Один запрос к OpenAI chat completions.
+ */
+@Name("com.lifeflow.bank.GptCall")
+@Label("GPT Call")
+@Category({"LifeFlow", "Bank Statements"})
+@Description("Round trip to the OpenAI chat completions API")
+public class GptCallEvent extends Event {
+
+    @Label("Months")
+    public int months;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    public long bytesSent;
+
+    @Label("Bytes Received")
+    @DataAmount
+    public long bytesReceived;
+
+    @Label("HTTP Status")
+    public int statusCode;
+}
@@ -0,0 +1,29 @@
+package com.lifeflow.bank.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Скачивание одного письма с выпиской (content + вложения).
+ */
+@Name("com.lifeflow.bank.ImapFetch")
+@Label("IMAP Fetch")
+@Category({"LifeFlow", "Bank Statements"})
+@Description("Download of one statement email and its attachments")
+public class ImapFetchEvent extends Event {
+
+    @Label("Message Size")
+    @DataAmount
+    public long messageSize;
+
+    @Label("Attachment Bytes")
+    @DataAmount
+    public long attachmentBytes;
+
+    @Label("Attachments")
+    public int attachmentCount;
+}
@@ -0,0 +1,26 @@
+package com.lifeflow.bank.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Загрузка/расшифровка PDF и извлечение текста.
+ */
+@Name("com.lifeflow.bank.PdfDecode")
+@Label("PDF Decode")
+@Category({"LifeFlow", "Bank Statements"})
+@Description("PDF load, decryption and text extraction")
+public class PdfDecodeEvent extends Event {
+
+    @Label("Page Count")
+    public int pageCount;
+
+    @Label("Password Protected")
+    public boolean passwordProtected;
+
+    @Label("Extracted Characters")
+    public int textLength;
+}
@@ -0,0 +1,29 @@
+package com.lifeflow.bank.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Разбор текста выписки в транзакции.
+ */
+@Name("com.lifeflow.bank.StatementParse")
+@Label("Statement Parse")
+@Category({"LifeFlow", "Bank Statements"})
+@Description("Parsing statement text into transactions")
+public class StatementParseEvent extends Event {
+
+    @Label("Text Length")
+    public int textLength;
+
+    @Label("Transaction Count")
+    public int transactionCount;
+
+    @Label("Period From")
+    public String periodFrom;
+
+    @Label("Period To")
+    public String periodTo;
+}
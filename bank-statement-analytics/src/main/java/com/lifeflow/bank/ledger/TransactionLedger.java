@@ -0,0 +1,226 @@
+package com.lifeflow.bank.ledger;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.model.BankTransaction;
+import com.lifeflow.bank.service.StatementIngestedEvent;
+import com.lifeflow.bank.service.TransactionFingerprint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Журнал разобранных транзакций по пользователям (JDBC, по умолчанию встроенная H2 в lifeflow.storage.dir).
+ *
+ * Каждая выписка из StatementIngestedEvent дописывается сюда пачкой. Ключ строки —
+ * (username, отпечаток транзакции, номер повтора в выписке), поэтому повторный прогон
+ * тех же писем или пересекающиеся выписки ничего не дублируют.
+ * Новые строки уходят дальше в TransactionsAppendedEvent вместе с номерами строк (seq) до и после записи.
+ *
+ * Аналитика по истории считается запросом к журналу (find), без IMAP и PDF.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionLedger {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO bank_transaction
+                (username, fingerprint, occurrence, booked_on, amount, currency,
+                 category_code, category_name, merchant, description, subscription, regular)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String SELECT_COLUMNS = """
+            SELECT booked_on, amount, currency, category_code, category_name,
+                   merchant, description, subscription, regular
+            FROM bank_transaction
+            """;
+
+    private static final RowMapper<BankTransaction> ROW_MAPPER = (rs, i) -> BankTransaction.builder()
+            .bookedAt(rs.getDate("booked_on").toLocalDate().atStartOfDay().atOffset(ZoneOffset.UTC))
+            .amount(rs.getBigDecimal("amount"))
+            .currency(rs.getString("currency"))
+            .categoryCode(rs.getString("category_code"))
+            .categoryName(rs.getString("category_name"))
+            .counterparty(rs.getString("merchant"))
+            .description(rs.getString("description"))
+            .subscription(rs.getBoolean("subscription"))
+            .regular(rs.getBoolean("regular"))
+            .build();
+
+    private record Key(long fingerprint, int occurrence) {
+    }
+
+    private record Row(Key key, BankTransaction tx) {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /** Запись одного пользователя — последовательно: проверка «уже есть» + вставка без гонок. */
+    private final Map<String, Object> userLocks = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onStatementIngested(StatementIngestedEvent event) {
+        if (event.username() == null || event.transactions().isEmpty()) {
+            return;
+        }
+        append(event.username(), event.transactions());
+    }
+
+    /**
+     * Дописать транзакции выписки. Возвращает только реально добавленные.
+     */
+    public List<BankTransaction> append(String username, List<BankTransaction> statementTxs) {
+        String user = EnrolledAccounts.normalize(username);
+
+        // номер повтора внутри выписки: два одинаковых кофе в один день — две строки
+        Map<Long, Integer> seen = new HashMap<>();
+        List<Row> rows = new ArrayList<>(statementTxs.size());
+        LocalDate min = null;
+        LocalDate max = null;
+        for (BankTransaction tx : statementTxs) {
+            long fp = TransactionFingerprint.of(tx);
+            int occurrence = seen.merge(fp, 1, Integer::sum);
+            rows.add(new Row(new Key(fp, occurrence), tx));
+
+            LocalDate d = bookedOn(tx);
+            min = min == null || d.isBefore(min) ? d : min;
+            max = max == null || d.isAfter(max) ? d : max;
+        }
+
+        List<BankTransaction> added;
+        long previousSeq;
+        long ledgerSeq;
+        synchronized (userLocks.computeIfAbsent(user, u -> new Object())) {
+            Set<Key> existing = existingKeys(user, min, max);
+            List<Row> fresh = rows.stream().filter(r -> !existing.contains(r.key())).toList();
+            // запись пользователя последовательна, поэтому его новые строки — ровно (previousSeq, ledgerSeq]
+            previousSeq = maxSeq(user);
+            insert(user, fresh);
+            ledgerSeq = fresh.isEmpty() ? previousSeq : maxSeq(user);
+            added = fresh.stream().map(Row::tx).toList();
+        }
+
+        log.info("TransactionLedger: {} → {} new of {} transactions", user, added.size(), statementTxs.size());
+        if (!added.isEmpty()) {
+            eventPublisher.publishEvent(new TransactionsAppendedEvent(user, added, previousSeq, ledgerSeq));
+        }
+        return added;
+    }
+
+    /**
+     * Транзакции пользователя за период [from, to], опционально одной категории.
+     * Ложится на индексы (username, booked_on) / (username, category_code, booked_on).
+     */
+    public List<BankTransaction> find(String username, LocalDate from, LocalDate to, String categoryCode) {
+        String user = EnrolledAccounts.normalize(username);
+        if (categoryCode == null || categoryCode.isBlank()) {
+            return jdbc.query(SELECT_COLUMNS + " WHERE username = ? AND booked_on BETWEEN ? AND ? ORDER BY booked_on",
+                    ROW_MAPPER, user, Date.valueOf(from), Date.valueOf(to));
+        }
+        return jdbc.query(SELECT_COLUMNS
+                        + " WHERE username = ? AND category_code = ? AND booked_on BETWEEN ? AND ? ORDER BY booked_on",
+                ROW_MAPPER, user, categoryCode, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * То же, что find без категории, но строки отдаются по одной по мере чтения курсора —
+     * для выгрузок любой длины без списка в памяти.
+     */
+    public void stream(String username, LocalDate from, LocalDate to, Consumer<BankTransaction> sink) {
+        String user = EnrolledAccounts.normalize(username);
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    SELECT_COLUMNS + " WHERE username = ? AND booked_on BETWEEN ? AND ? ORDER BY booked_on");
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setString(1, user);
+            ps.setDate(2, Date.valueOf(from));
+            ps.setDate(3, Date.valueOf(to));
+            return ps;
+        }, rs -> {
+            sink.accept(ROW_MAPPER.mapRow(rs, rs.getRow()));
+        });
+    }
+
+    /**
+     * Строки пользователя с номерами в (afterSeq, uptoSeq] в порядке записи —
+     * догрузка производных хранилищ, отставших от журнала.
+     */
+    public List<BankTransaction> findAppended(String username, long afterSeq, long uptoSeq) {
+        return jdbc.query(SELECT_COLUMNS + " WHERE username = ? AND seq > ? AND seq <= ? ORDER BY seq",
+                ROW_MAPPER, EnrolledAccounts.normalize(username), afterSeq, uptoSeq);
+    }
+
+    /**
+     * Номер последней строки пользователя в журнале, 0 — строк нет.
+     */
+    public long maxSeq(String username) {
+        Long seq = jdbc.queryForObject("SELECT MAX(seq) FROM bank_transaction WHERE username = ?",
+                Long.class, EnrolledAccounts.normalize(username));
+        return seq == null ? 0L : seq;
+    }
+
+    public List<String> usernames() {
+        return jdbc.queryForList("SELECT DISTINCT username FROM bank_transaction", String.class);
+    }
+
+    private Set<Key> existingKeys(String user, LocalDate from, LocalDate to) {
+        Set<Key> keys = new HashSet<>();
+        jdbc.query("SELECT fingerprint, occurrence FROM bank_transaction WHERE username = ? AND booked_on BETWEEN ? AND ?",
+                rs -> {
+                    keys.add(new Key(rs.getLong(1), rs.getInt(2)));
+                },
+                user, Date.valueOf(from), Date.valueOf(to));
+        return keys;
+    }
+
+    private void insert(String user, List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate(INSERT_SQL, rows, BATCH_SIZE, (PreparedStatement ps, Row row) -> {
+            BankTransaction tx = row.tx();
+            ps.setString(1, user);
+            ps.setLong(2, row.key().fingerprint());
+            ps.setInt(3, row.key().occurrence());
+            ps.setDate(4, Date.valueOf(bookedOn(tx)));
+            ps.setBigDecimal(5, tx.getAmount());
+            ps.setString(6, tx.getCurrency());
+            ps.setString(7, tx.getCategoryCode());
+            ps.setString(8, truncate(tx.getCategoryName(), 128));
+            ps.setString(9, truncate(tx.getCounterparty(), 512));
+            ps.setString(10, truncate(tx.getDescription(), 2048));
+            ps.setBoolean(11, tx.isSubscription());
+            ps.setBoolean(12, tx.isRegular());
+        });
+    }
+
+    private static LocalDate bookedOn(BankTransaction tx) {
+        return tx.getBookedAt().toLocalDate();
+    }
+
+    private static String truncate(String s, int max) {
+        return s == null || s.length() <= max ? s : s.substring(0, max);
+    }
+}
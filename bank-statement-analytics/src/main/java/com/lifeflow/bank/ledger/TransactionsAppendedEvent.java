@@ -0,0 +1,21 @@
+package com.lifeflow.bank.ledger;
+
+import com.lifeflow.bank.model.BankTransaction;
+
+import java.util.List;
+
+/**
+ * В журнал пользователя добавлены новые транзакции (только те, которых там ещё не было).
+ * Публикуется TransactionLedger после записи.
+ *
+ * previousSeq / ledgerSeq — последний номер строки журнала пользователя до и после этой записи:
+ * новые строки — ровно (previousSeq, ledgerSeq]. Если потребитель учёл журнал не до previousSeq
+ * (прошлое событие у него упало), недостающее он дочитывает из журнала (TransactionLedger.findAppended).
+ */
+public record TransactionsAppendedEvent(
+        String username,
+        List<BankTransaction> transactions,
+        long previousSeq,
+        long ledgerSeq
+) {
+}
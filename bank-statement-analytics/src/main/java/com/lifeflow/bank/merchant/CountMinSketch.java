@@ -0,0 +1,61 @@
+package com.lifeflow.bank.merchant;
+
+/**
+ * Count-min sketch: depth строк по width счётчиков. Оценка частоты ключа — минимум по строкам,
+ * завышена не больше чем на e/width · N с вероятностью 1 − e^(−depth). Память фиксирована
+ * и не зависит от числа различных ключей.
+ *
+ * Ключ — уже посчитанный 64-битный хэш (MerchantKey.hash); индексы строк —
+ * двойное хэширование h1 + i · h2 (Kirsch–Mitzenmacher). Не потокобезопасен.
+ */
+final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+    private long total;
+
+    CountMinSketch(int width, int depth) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two: " + width);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[width * depth];
+    }
+
+    /**
+     * Добавляет ключ и возвращает новую оценку его частоты.
+     */
+    long add(long keyHash) {
+        total++;
+        int h1 = (int) keyHash;
+        int h2 = (int) (keyHash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int idx = row * width + ((h1 + row * h2) & (width - 1));
+            estimate = Math.min(estimate, ++counters[idx]);
+        }
+        return estimate;
+    }
+
+    long estimate(long keyHash) {
+        int h1 = (int) keyHash;
+        int h2 = (int) (keyHash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + ((h1 + row * h2) & (width - 1))]);
+        }
+        return estimate;
+    }
+
+    /** Всего добавлено ключей (N). */
+    long total() {
+        return total;
+    }
+
+    /** Граница завышения оценки: e/width · N. */
+    long errorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+}
@@ -0,0 +1,214 @@
+package com.lifeflow.bank.merchant;
+
+import com.lifeflow.bank.model.CategoryResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static com.lifeflow.bank.merchant.MerchantKbFormat.*;
+
+/**
+ * Сборка справочника мерчантов: TSV → .lfkb. Запускается при сборке/обновлении справочника,
+ * не в приложении:
+ *
+ *   java -cp bank-statement-analytics.jar com.lifeflow.bank.merchant.MerchantKbCompiler merchants.tsv merchants.lfkb
+ *
+ * Строки TSV: имя мерчанта, код CategoryResult, MCC (необязателен). Пустые строки и '#' — пропуск.
+ * Имена нормализуются так же, как при поиске (MerchantKey), дубликаты после нормализации — последняя строка.
+ */
+public final class MerchantKbCompiler {
+
+    /** Предел перебора сида для одной корзины; при λ = 4 реальные значения — единицы/сотни. */
+    private static final int MAX_SEED = 1 << 24;
+
+    private record Entry(String name, long keyHash, int category, int mcc) {
+    }
+
+    private record Placement(Entry[] slots, int[] seeds) {
+    }
+
+    private MerchantKbCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: MerchantKbCompiler <merchants.tsv> <output" + EXTENSION + ">");
+            System.exit(2);
+        }
+        int count = compile(Path.of(args[0]), Path.of(args[1]));
+        System.out.println("MerchantKbCompiler: wrote " + count + " merchants to " + args[1]);
+    }
+
+    public static int compile(Path tsv, Path out) throws IOException {
+        List<String> categoryCodes = new ArrayList<>();
+        Map<String, Integer> categoryIndex = new HashMap<>();
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(tsv, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] cols = line.split("\t");
+                if (cols.length < 2) {
+                    throw new IOException(tsv + ":" + lineNo + ": expected <name>\\t<category>[\\t<mcc>]");
+                }
+                String code = cols[1].trim();
+                if (Arrays.stream(CategoryResult.values()).noneMatch(c -> c.getCode().equals(code))) {
+                    throw new IOException(tsv + ":" + lineNo + ": unknown category '" + code + "'");
+                }
+                int mcc = cols.length > 2 && !cols[2].isBlank() ? Integer.parseInt(cols[2].trim()) : 0;
+                if (mcc < 0 || mcc > 0xFFFF) {
+                    throw new IOException(tsv + ":" + lineNo + ": MCC out of range: " + mcc);
+                }
+
+                int category = categoryIndex.computeIfAbsent(code, c -> {
+                    categoryCodes.add(c);
+                    return categoryCodes.size() - 1;
+                });
+                long keyHash = MerchantKey.hash(cols[0]);
+                Entry previous = entries.put(keyHash, new Entry(cols[0], keyHash, category, mcc));
+                if (previous != null) {
+                    System.err.println("MerchantKbCompiler: '" + cols[0] + "' overrides '" + previous.name() + "'");
+                }
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new IOException("No merchants in " + tsv);
+        }
+
+        Placement placement = place(new ArrayList<>(entries.values()));
+        write(out, categoryCodes, placement);
+        return placement.slots().length;
+    }
+
+    // ======================
+    // CHD: корзины по убыванию размера, для каждой — первый сид без коллизий
+    // ======================
+
+    private static Placement place(List<Entry> keys) throws IOException {
+        int n = keys.size();
+        int bucketCount = bucketCount(n);
+
+        List<List<Entry>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (Entry e : keys) {
+            buckets.get(MerchantKey.bucket(e.keyHash(), bucketCount)).add(e);
+        }
+
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer b) -> buckets.get(b).size()).reversed());
+
+        Entry[] slots = new Entry[n];
+        int[] seeds = new int[bucketCount];
+        int[] candidate = new int[n];
+
+        for (int b : order) {
+            List<Entry> bucket = buckets.get(b);
+            if (bucket.isEmpty()) {
+                break; // дальше только пустые
+            }
+            int seed = 0;
+            while (!fits(bucket, seed, slots, candidate)) {
+                if (++seed == MAX_SEED) {
+                    throw new IOException("Cannot place bucket of " + bucket.size() + " keys, try again with fewer duplicates");
+                }
+            }
+            for (int i = 0; i < bucket.size(); i++) {
+                slots[candidate[i]] = bucket.get(i);
+            }
+            seeds[b] = seed;
+        }
+        return new Placement(slots, seeds);
+    }
+
+    private static boolean fits(List<Entry> bucket, int seed, Entry[] slots, int[] candidate) {
+        for (int i = 0; i < bucket.size(); i++) {
+            int slot = MerchantKey.slot(bucket.get(i).keyHash(), seed, slots.length);
+            if (slots[slot] != null) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (candidate[j] == slot) {
+                    return false;
+                }
+            }
+            candidate[i] = slot;
+        }
+        return true;
+    }
+
+    private static int bucketCount(int keys) {
+        return Math.max(1, (keys + KEYS_PER_BUCKET - 1) / KEYS_PER_BUCKET);
+    }
+
+    private static void write(Path file, List<String> categoryCodes, Placement placement) throws IOException {
+        Entry[] slots = placement.slots();
+        int[] seeds = placement.seeds();
+        List<byte[]> codes = new ArrayList<>();
+        int codesSize = 0;
+        for (String code : categoryCodes) {
+            byte[] b = code.getBytes(StandardCharsets.UTF_8);
+            codes.add(b);
+            codesSize += 2 + b.length;
+        }
+        int seedsOffset = HEADER_SIZE + codesSize;
+        int slotsOffset = align8(seedsOffset + seeds.length * Integer.BYTES);
+        int total = slotsOffset + slots.length * SLOT_SIZE;
+
+        ByteBuffer buf = ByteBuffer.allocate(total);
+        buf.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) SLOT_SIZE)
+                .putInt(slots.length)
+                .putInt(seeds.length)
+                .putInt(codes.size())
+                .putInt(seedsOffset)
+                .putInt(slotsOffset)
+                .putInt(0);
+        for (byte[] b : codes) {
+            buf.putShort((short) b.length).put(b);
+        }
+        for (int seed : seeds) {
+            buf.putInt(seed);
+        }
+        buf.position(slotsOffset);
+        for (Entry e : slots) {
+            buf.putLong(e.keyHash())
+                    .putShort((short) e.category())
+                    .putShort((short) e.mcc())
+                    .putInt(0);
+        }
+        buf.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int align8(int n) {
+        return (n + 7) & ~7;
+    }
+}
@@ -0,0 +1,49 @@
+package com.lifeflow.bank.merchant;
+
+/**
+ * Формат справочника мерчантов (.lfkb), версия 1. Порядок байт — big-endian.
+ *
+ * Таблица — минимальный совершенный хэш (CHD): ключ сначала попадает в корзину
+ * bucket = H mod bucketCount, а слот считается как fmix64(H ^ seed[bucket] · φ) mod slotCount.
+ * Сиды подобраны компилятором так, что у каждого ключа свой слот, slotCount == числу ключей.
+ * В слоте хранится полный 64-битный хэш ключа — по нему отсеиваются чужие имена.
+ *
+ *  Заголовок (32 байта):
+ *    0  int    magic "LFKB"
+ *    4  short  version
+ *    6  short  slotSize (16)
+ *    8  int    slotCount
+ *   12  int    bucketCount
+ *   16  int    categoryCount
+ *   20  int    seedsOffset
+ *   24  int    slotsOffset
+ *   28  int    reserved
+ *
+ *  Таблица категорий: categoryCount × (ushort длина + UTF-8) — коды CategoryResult
+ *  Сиды (с seedsOffset): bucketCount × int
+ *  Слоты (с slotsOffset, выровнено по 8), по 16 байт:
+ *    0  long   хэш ключа (MerchantKey.hash)
+ *    8  ushort индекс категории
+ *   10  ushort MCC (0 — неизвестен)
+ *   12  int    reserved
+ */
+final class MerchantKbFormat {
+
+    static final int MAGIC = 0x4C464B42; // "LFKB"
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+    static final int SLOT_SIZE = 16;
+
+    static final int OFF_KEY = 0;
+    static final int OFF_CATEGORY = 8;
+    static final int OFF_MCC = 10;
+
+    /** Среднее число ключей на корзину: меньше — быстрее подбор сидов, больше — компактнее таблица сидов. */
+    static final int KEYS_PER_BUCKET = 4;
+
+    static final String EXTENSION = ".lfkb";
+
+    private MerchantKbFormat() {
+    }
+}
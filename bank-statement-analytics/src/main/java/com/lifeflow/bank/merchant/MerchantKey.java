@@ -0,0 +1,158 @@
+package com.lifeflow.bank.merchant;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Нормализация имени мерчанта и хэш для справочника — общие для компилятора и для поиска.
+ *
+ * Нормализация: нижний регистр, без диакритики, токены — буквы/цифры/./&, остальное — разделитель
+ * (между токенами ровно один пробел). Хэш (FNV-1a 64 + fmix64) считается прямо по символам
+ * исходной строки, без построения нормализованной строки — поиск ничего не аллоцирует.
+ */
+public final class MerchantKey {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /** Подписи перед именем в выписках Tatra: «Miesto platby: ...», «Príjemca: ...». */
+    private static final int MAX_LABEL_LENGTH = 24;
+
+    /** Свёртка Latin-1 / Latin Extended-A/B: 'Č' → 'c', 'ô' → 'o'; 0 — разделитель. */
+    private static final char[] FOLD = new char[0x250];
+
+    static {
+        for (char c = 0; c < FOLD.length; c++) {
+            String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "")
+                    .toLowerCase(Locale.ROOT); // не по локали JVM: в tr_TR "I" → "ı"
+            char f = base.length() == 1 ? base.charAt(0) : c;
+            FOLD[c] = isTokenChar(f) ? f : 0;
+        }
+    }
+
+    private MerchantKey() {
+    }
+
+    /**
+     * Хэш всей нормализованной строки.
+     */
+    public static long hash(CharSequence s) {
+        return hash(s, 0);
+    }
+
+    /**
+     * Хэш нормализованной строки, начиная с позиции from.
+     */
+    public static long hash(CharSequence s, int from) {
+        long h = FNV_OFFSET;
+        boolean inToken = false;
+        boolean any = false;
+
+        for (int i = from, len = s.length(); i < len; i++) {
+            char c = fold(s.charAt(i));
+            if (c == 0) {
+                inToken = false;
+                continue;
+            }
+            if (!inToken && any) {
+                h = step(h, ' ');
+            }
+            h = step(h, c);
+            inToken = true;
+            any = true;
+        }
+        return finish(h);
+    }
+
+    /**
+     * Хэши префиксов из 1, 2, ... токенов строки, начиная с позиции from:
+     * out[k - 1] — хэш первых k токенов. Возвращает, сколько префиксов записано (не больше out.length).
+     */
+    public static int prefixHashes(CharSequence s, int from, long[] out) {
+        long h = FNV_OFFSET;
+        int tokens = 0;
+        boolean inToken = false;
+
+        for (int i = from, len = s.length(); i < len; i++) {
+            char c = fold(s.charAt(i));
+            if (c == 0) {
+                if (inToken) {
+                    out[tokens++] = finish(h);
+                    if (tokens == out.length) {
+                        return tokens;
+                    }
+                    inToken = false;
+                }
+                continue;
+            }
+            if (!inToken && tokens > 0) {
+                h = step(h, ' ');
+            }
+            h = step(h, c);
+            inToken = true;
+        }
+        if (inToken) {
+            out[tokens++] = finish(h);
+        }
+        return tokens;
+    }
+
+    /**
+     * Позиция после «Подписи:» в начале строки (только если двоеточие близко к началу), иначе 0.
+     */
+    public static int labelEnd(CharSequence s) {
+        for (int i = 0, len = Math.min(s.length(), MAX_LABEL_LENGTH); i < len; i++) {
+            char c = s.charAt(i);
+            if (c == ':') {
+                return i + 1;
+            }
+            if (Character.isDigit(c)) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    static int bucket(long keyHash, int bucketCount) {
+        return (int) Long.remainderUnsigned(keyHash, bucketCount);
+    }
+
+    static int slot(long keyHash, int seed, int slotCount) {
+        return (int) Long.remainderUnsigned(fmix64(keyHash ^ (seed * GOLDEN)), slotCount);
+    }
+
+    private static char fold(char c) {
+        if (c < FOLD.length) {
+            return FOLD[c];
+        }
+        char lower = Character.toLowerCase(c);
+        return isTokenChar(lower) ? lower : 0;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '&';
+    }
+
+    private static long step(long h, char c) {
+        h ^= c & 0xFF;
+        h *= FNV_PRIME;
+        h ^= c >>> 8;
+        h *= FNV_PRIME;
+        return h;
+    }
+
+    private static long finish(long h) {
+        return fmix64(h);
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb53fe1a85a63L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,179 @@
+package com.lifeflow.bank.merchant;
+
+import com.lifeflow.bank.model.CategoryResult;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.lifeflow.bank.merchant.MerchantKbFormat.*;
+
+/**
+ * Справочник мерчантов: скомпилированный MerchantKbCompiler файл .lfkb, отображённый в память
+ * при старте. Поиск — O(1): хэш имени, одна корзина, один слот, сравнение 64-битного ключа.
+ * Ни строк, ни объектов на поиск не создаётся (буфер хэшей префиксов — на поток).
+ *
+ * Файл необязателен: если lifeflow.merchant-kb.path не задан или не читается,
+ * справочник пуст и CategoryClassifier работает только на ключевых словах.
+ */
+@Component
+@Slf4j
+public class MerchantKnowledgeBase {
+
+    /** Сколько первых токенов имени пробуем: «lidl», «lidl kosice», ... — длинный префикс точнее. */
+    private static final int MAX_PREFIX_TOKENS = 6;
+
+    private static final ThreadLocal<long[]> PREFIX_HASHES =
+            ThreadLocal.withInitial(() -> new long[MAX_PREFIX_TOKENS]);
+
+    @Value("${lifeflow.merchant-kb.path:}")
+    private String path;
+
+    private volatile Table table;
+
+    private record Table(MappedByteBuffer map, int slotCount, int bucketCount,
+                         int seedsOffset, int slotsOffset, CategoryResult[] categories) {
+    }
+
+    @PostConstruct
+    void load() {
+        if (path == null || path.isBlank()) {
+            log.info("MerchantKnowledgeBase: lifeflow.merchant-kb.path is not set, keyword rules only");
+            return;
+        }
+        Path file = Path.of(path);
+        if (!Files.isReadable(file)) {
+            log.warn("MerchantKnowledgeBase: {} is not readable, keyword rules only", file);
+            return;
+        }
+        try {
+            table = open(file);
+            log.info("MerchantKnowledgeBase: mapped {} merchants ({} buckets) from {}",
+                    table.slotCount(), table.bucketCount(), file);
+        } catch (IOException e) {
+            log.error("MerchantKnowledgeBase: failed to load {}, keyword rules only", file, e);
+        }
+    }
+
+    public boolean isLoaded() {
+        return table != null;
+    }
+
+    public int size() {
+        Table t = table;
+        return t == null ? 0 : t.slotCount();
+    }
+
+    /**
+     * Ищет мерчанта по имени из выписки (counterparty). Пробует префиксы от самого длинного
+     * к самому короткому, чтобы «lidl kosice» выигрывал у «lidl».
+     *
+     * @return слот справочника или -1
+     */
+    public int lookup(CharSequence name) {
+        Table t = table;
+        if (t == null || name == null) {
+            return -1;
+        }
+        long[] hashes = PREFIX_HASHES.get();
+        int n = MerchantKey.prefixHashes(name, MerchantKey.labelEnd(name), hashes);
+        for (int i = n - 1; i >= 0; i--) {
+            int slot = find(t, hashes[i]);
+            if (slot >= 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Точный поиск по готовому хэшу (MerchantKey.hash).
+     */
+    public int find(long keyHash) {
+        Table t = table;
+        return t == null ? -1 : find(t, keyHash);
+    }
+
+    public CategoryResult category(int slot) {
+        Table t = table;
+        return t.categories()[Short.toUnsignedInt(t.map().getShort(slotPos(t, slot) + OFF_CATEGORY))];
+    }
+
+    /** MCC мерчанта, 0 — неизвестен. */
+    public int mcc(int slot) {
+        Table t = table;
+        return Short.toUnsignedInt(t.map().getShort(slotPos(t, slot) + OFF_MCC));
+    }
+
+    private static int find(Table t, long keyHash) {
+        int bucket = MerchantKey.bucket(keyHash, t.bucketCount());
+        int seed = t.map().getInt(t.seedsOffset() + bucket * Integer.BYTES);
+        int slot = MerchantKey.slot(keyHash, seed, t.slotCount());
+        return t.map().getLong(slotPos(t, slot) + OFF_KEY) == keyHash ? slot : -1;
+    }
+
+    private static int slotPos(Table t, int slot) {
+        return t.slotsOffset() + slot * SLOT_SIZE;
+    }
+
+    private static Table open(Path file) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // отображение остаётся валидным и после закрытия канала
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a .lfkb merchant table: " + file);
+        }
+        short version = map.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported .lfkb version " + version + ": " + file);
+        }
+        if (map.getShort(6) != SLOT_SIZE) {
+            throw new IOException("Unexpected .lfkb slot size in " + file);
+        }
+
+        int slotCount = map.getInt(8);
+        int bucketCount = map.getInt(12);
+        int categoryCount = map.getInt(16);
+        int seedsOffset = map.getInt(20);
+        int slotsOffset = map.getInt(24);
+
+        if (slotCount <= 0 || bucketCount <= 0
+                || (long) seedsOffset + (long) bucketCount * Integer.BYTES > map.capacity()
+                || (long) slotsOffset + (long) slotCount * SLOT_SIZE > map.capacity()) {
+            throw new IOException("Truncated .lfkb merchant table: " + file);
+        }
+
+        // коды категорий → enum один раз при загрузке; неизвестные (старый файл) → OTHER
+        CategoryResult[] categories = new CategoryResult[categoryCount];
+        int pos = HEADER_SIZE;
+        for (int i = 0; i < categoryCount; i++) {
+            int len = Short.toUnsignedInt(map.getShort(pos));
+            byte[] bytes = new byte[len];
+            map.get(pos + 2, bytes);
+            categories[i] = resolve(new String(bytes, StandardCharsets.UTF_8));
+            pos += 2 + len;
+        }
+        return new Table(map, slotCount, bucketCount, seedsOffset, slotsOffset, categories);
+    }
+
+    private static CategoryResult resolve(String code) {
+        for (CategoryResult c : CategoryResult.values()) {
+            if (c.getCode().equals(code)) {
+                return c;
+            }
+        }
+        log.warn("MerchantKnowledgeBase: unknown category code '{}', mapped to OTHER", code);
+        return CategoryResult.OTHER;
+    }
+}
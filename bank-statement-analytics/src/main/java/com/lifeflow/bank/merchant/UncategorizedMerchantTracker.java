@@ -0,0 +1,124 @@
+package com.lifeflow.bank.merchant;
+
+import com.lifeflow.bank.dto.MerchantFrequencyDto;
+import com.lifeflow.bank.model.CategoryResult;
+import com.lifeflow.bank.segment.SegmentListener;
+import com.lifeflow.bank.segment.SegmentReader;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Самые частые мерчанты, которые CategoryClassifier отнёс к OTHER, по всем пользователям —
+ * чтобы знать, какие правила / записи справочника добавлять первыми.
+ *
+ * Частоты — в count-min sketch (фиксированная память), строки хранятся только у top-K кандидатов
+ * (min-heap по оценке). Сколько бы разных мерчантов ни встретилось, память не растёт.
+ *
+ * Пополняется по сегментам истории (SegmentListener): при старте SegmentStore отдаёт все сегменты —
+ * счётчики восстанавливаются без отдельного файла, — дальше каждый новый. Категория в сегментах
+ * уже проставлена классификатором, а повторный разбор той же выписки новых строк не даёт.
+ */
+@Component
+@Slf4j
+public class UncategorizedMerchantTracker implements SegmentListener {
+
+    @Value("${lifeflow.merchant-tracker.top-k:200}")
+    private int topK;
+
+    @Value("${lifeflow.merchant-tracker.width:16384}")
+    private int width;
+
+    @Value("${lifeflow.merchant-tracker.depth:4}")
+    private int depth;
+
+    private static final long EMPTY_KEY = MerchantKey.hash("");
+
+    private CountMinSketch sketch;
+    private final Map<Long, Candidate> candidates = new HashMap<>();
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingLong(c -> c.count));
+
+    private static final class Candidate {
+        final long keyHash;
+        final String name;
+        long count;
+
+        Candidate(long keyHash, String name, long count) {
+            this.keyHash = keyHash;
+            this.name = name;
+            this.count = count;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        sketch = new CountMinSketch(width, depth);
+        log.info("UncategorizedMerchantTracker: count-min {}x{}, top-{}", depth, width, topK);
+    }
+
+    @Override
+    public void onSegment(String username, SegmentReader segment) {
+        String other = CategoryResult.OTHER.getCode();
+        for (int i = 0, n = segment.size(); i < n; i++) {
+            if (other.equals(segment.categoryCode(segment.categoryIndex(i)))) {
+                record(segment.merchant(segment.merchantId(i)));
+            }
+        }
+    }
+
+    public synchronized void record(String counterparty) {
+        if (counterparty == null) {
+            return;
+        }
+        int from = MerchantKey.labelEnd(counterparty);
+        long keyHash = MerchantKey.hash(counterparty, from);
+        if (keyHash == EMPTY_KEY) {
+            return;
+        }
+        long estimate = sketch.add(keyHash);
+
+        Candidate existing = candidates.get(keyHash);
+        if (existing != null) {
+            heap.remove(existing);
+            existing.count = estimate;
+            heap.add(existing);
+            return;
+        }
+        if (candidates.size() >= topK) {
+            if (estimate <= heap.peek().count) {
+                return;
+            }
+            candidates.remove(heap.poll().keyHash);
+        }
+        Candidate c = new Candidate(keyHash, displayName(counterparty, from), estimate);
+        candidates.put(keyHash, c);
+        heap.add(c);
+    }
+
+    /**
+     * limit самых частых мерчантов без категории, от частых к редким.
+     */
+    public synchronized List<MerchantFrequencyDto> top(int limit) {
+        long maxError = sketch.errorBound();
+        return candidates.values().stream()
+                .sorted(Comparator.comparingLong((Candidate c) -> c.count).reversed())
+                .limit(limit)
+                .map(c -> MerchantFrequencyDto.builder()
+                        .merchant(c.name)
+                        .count(c.count)
+                        .maxError(maxError)
+                        .build())
+                .toList();
+    }
+
+    public synchronized long total() {
+        return sketch.total();
+    }
+
+    private static String displayName(String counterparty, int from) {
+        return counterparty.substring(from).trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,105 @@
+package com.lifeflow.bank.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики конвейера выписок (Micrometer → /actuator/prometheus).
+ *
+ * lifeflow.bank.stage{stage=...}          — таймер с гистограммой на каждый этап
+ * lifeflow.bank.statement.transactions   — сколько транзакций в одной выписке
+ * lifeflow.bank.attachment.bytes         — размер скачанного вложения
+ * lifeflow.bank.transactions.parsed      — всего распарсено транзакций
+ * lifeflow.bank.statements.skipped       — пропущенные письма/выписки (тег reason)
+ * lifeflow.bank.cache.hits               — ответы без полного прогона (тег cache)
+ */
+@Component
+public class PipelineMetrics {
+
+    @FunctionalInterface
+    public interface StageCallable<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final MeterRegistry registry;
+    private final Map<PipelineStage, Timer> timers = new EnumMap<>(PipelineStage.class);
+    private final DistributionSummary statementTransactions;
+    private final DistributionSummary attachmentBytes;
+    private final Counter transactionsParsed;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        for (PipelineStage stage : PipelineStage.values()) {
+            timers.put(stage, Timer.builder("lifeflow.bank.stage")
+                    .description("Duration of a statement pipeline stage")
+                    .tag("stage", stage.getTag())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+
+        this.statementTransactions = DistributionSummary.builder("lifeflow.bank.statement.transactions")
+                .description("Transactions per parsed statement")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        this.attachmentBytes = DistributionSummary.builder("lifeflow.bank.attachment.bytes")
+                .description("Size of downloaded statement attachments")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        this.transactionsParsed = Counter.builder("lifeflow.bank.transactions.parsed")
+                .description("Transactions parsed from statements")
+                .register(registry);
+    }
+
+    /**
+     * Выполнить body и записать длительность в таймер этапа (в том числе при исключении).
+     */
+    public <T, E extends Exception> T record(PipelineStage stage, StageCallable<T, E> body) throws E {
+        long start = System.nanoTime();
+        try {
+            return body.call();
+        } finally {
+            recordNanos(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void recordNanos(PipelineStage stage, long nanos) {
+        timers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+
+        StageTimings timings = StageTimings.current();
+        if (timings != null) {
+            timings.add(stage, nanos);
+        }
+    }
+
+    public void statementParsed(int transactions) {
+        statementTransactions.record(transactions);
+        transactionsParsed.increment(transactions);
+    }
+
+    public void attachmentDownloaded(long bytes) {
+        attachmentBytes.record(bytes);
+    }
+
+    public void statementSkipped(String reason) {
+        registry.counter("lifeflow.bank.statements.skipped", "reason", reason).increment();
+    }
+
+    public void cacheHit(String cache) {
+        registry.counter("lifeflow.bank.cache.hits", "cache", cache).increment();
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+}
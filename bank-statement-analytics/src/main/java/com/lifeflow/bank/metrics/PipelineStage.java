@@ -0,0 +1,36 @@
+package com.lifeflow.bank.metrics;
+
+/**
+ * Этапы конвейера выписок. tag — значение тега "stage" в метриках,
+ * serverTimingName — имя группы в заголовке Server-Timing.
+ */
+public enum PipelineStage {
+
+    IMAP_CONNECT("imap_connect", "imap"),
+    FOLDER_RESOLVE("folder_resolve", "imap"),
+    SEARCH("search", "search"),
+    DOWNLOAD("download", "download"),
+    PDF_LOAD("pdf_load", "pdf"),
+    TEXT_EXTRACT("text_extract", "pdf"),
+    PARSE("parse", "parse"),
+    CLASSIFY("classify", "analyze"),
+    SUBSCRIPTIONS("subscriptions", "analyze"),
+    AGGREGATE("aggregate", "analyze"),
+    GPT("gpt", "gpt");
+
+    private final String tag;
+    private final String serverTimingName;
+
+    PipelineStage(String tag, String serverTimingName) {
+        this.tag = tag;
+        this.serverTimingName = serverTimingName;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getServerTimingName() {
+        return serverTimingName;
+    }
+}
@@ -0,0 +1,78 @@
+package com.lifeflow.bank.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Разбивка времени одного запроса по этапам (для заголовка Server-Timing).
+ *
+ * Привязывается к потоку через {@link #with}; PipelineMetrics дописывает сюда
+ * каждое измерение. Этапы, которые идут параллельно (скачивание/разбор нескольких выписок),
+ * суммируются по всем воркерам, поэтому сумма может быть больше общего времени запроса.
+ */
+public final class StageTimings {
+
+    private static final ThreadLocal<StageTimings> CURRENT = new ThreadLocal<>();
+
+    private final LongAdder[] nanos = new LongAdder[PipelineStage.values().length];
+    private final long startedAt = System.nanoTime();
+
+    public StageTimings() {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    public static StageTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Выполнить body с привязанными timings (в том числе в воркерах parallel-стрима).
+     */
+    public static <T> T with(StageTimings timings, Supplier<T> body) {
+        StageTimings previous = CURRENT.get();
+        CURRENT.set(timings);
+        try {
+            return body.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    void add(PipelineStage stage, long durationNanos) {
+        nanos[stage.ordinal()].add(durationNanos);
+    }
+
+    /**
+     * Миллисекунды по группам Server-Timing (imap, search, download, pdf, parse, analyze, gpt) + total.
+     */
+    public Map<String, Double> toMillis() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (PipelineStage stage : PipelineStage.values()) {
+            double ms = nanos[stage.ordinal()].sum() / 1_000_000.0;
+            out.merge(stage.getServerTimingName(), ms, Double::sum);
+        }
+        out.put("total", (System.nanoTime() - startedAt) / 1_000_000.0);
+        out.replaceAll((k, v) -> Math.round(v * 10) / 10.0);
+        return out;
+    }
+
+    public static String toServerTimingHeader(Map<String, Double> millis) {
+        StringBuilder sb = new StringBuilder();
+        for (var e : millis.entrySet()) {
+            if (!sb.isEmpty()) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey()).append(";dur=").append(String.format(Locale.ROOT, "%.1f", e.getValue()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,309 @@
+package com.lifeflow.bank.percentile;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.dto.CategoryAnalyticsDto;
+import com.lifeflow.bank.dto.CategoryPercentileDto;
+import com.lifeflow.bank.model.CategoryResult;
+import com.lifeflow.bank.service.StatementIngestedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Распределение месячных трат по категориям среди всех пользователей: на (месяц, категория) —
+ * t-digest по суммам тех, кто в категории тратил, и счётчик тех, кто не тратил.
+ * «Вы тратите на рестораны больше, чем 80 % пользователей» — один запрос к дайджесту, без скана.
+ *
+ * Пополняется по StatementIngestedEvent (готовая месячная сводка), каждый пользователь
+ * учитывается в месяце один раз. Скетчи периодически сохраняются в lifeflow.storage.dir
+ * и поднимаются при старте.
+ *
+ * Кто в каком месяце уже учтён, в скетчах не хранится (это росло бы как пользователи × месяцы):
+ * отметки лежат рядом с журналом пользователя, в таблице percentile_contribution. Новые отметки
+ * копятся в pending и пишутся в таблицу вместе с сохранением скетчей — отметка без скетча
+ * после падения означала бы навсегда потерянный вклад.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpendingPercentiles {
+
+    private static final int MAGIC = 0x4C465044; // "LFPD"
+    private static final int VERSION = 2;
+    private static final String FILE_NAME = "percentiles.lfpd";
+
+    /** Категории расходов; доходы и переводы между своими счетами не сравниваем. */
+    private static final List<CategoryResult> CATEGORIES = Arrays.stream(CategoryResult.values())
+            .filter(c -> !c.getCode().startsWith("INCOME_") && c != CategoryResult.TRANSFER)
+            .toList();
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${lifeflow.storage.dir:./data}")
+    private String storageDir;
+
+    @Value("${lifeflow.percentiles.compression:100}")
+    private double compression;
+
+    @Value("${lifeflow.percentiles.months:24}")
+    private int retainedMonths;
+
+    private final NavigableMap<YearMonth, MonthSketches> byMonth = new ConcurrentSkipListMap<>();
+
+    /** Учтённые, но ещё не записанные в percentile_contribution (username, месяц). */
+    private final Set<Contribution> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean dirty;
+
+    private record Contribution(String username, YearMonth month) {
+    }
+
+    /**
+     * Скетчи одного месяца. users — сколько пользователей учтено.
+     */
+    private static final class MonthSketches {
+        long users;
+        final TDigest[] digests = new TDigest[CATEGORIES.size()];
+        final long[] zeros = new long[CATEGORIES.size()];
+
+        MonthSketches(double compression) {
+            for (int i = 0; i < digests.length; i++) {
+                digests[i] = new TDigest(compression);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void load() {
+        Path file = file();
+        if (!Files.isReadable(file)) {
+            return;
+        }
+        try {
+            byMonth.putAll(read(file));
+            log.info("SpendingPercentiles: loaded {} months from {}", byMonth.size(), file);
+        } catch (IOException e) {
+            log.error("SpendingPercentiles: failed to load {}, starting empty", file, e);
+        }
+    }
+
+    @EventListener
+    public void onStatementIngested(StatementIngestedEvent event) {
+        YearMonth month = event.month();
+        if (event.username() == null || month == null || event.summary() == null) {
+            return;
+        }
+        MonthSketches sketches = byMonth.computeIfAbsent(month, m -> new MonthSketches(compression));
+        Map<String, BigDecimal> amounts = amountsByCode(event.summary());
+        Contribution contribution = new Contribution(EnrolledAccounts.normalize(event.username()), month);
+
+        synchronized (sketches) {
+            if (pending.contains(contribution) || contributed(contribution)) {
+                return;
+            }
+            pending.add(contribution);
+            sketches.users++;
+            for (int i = 0; i < CATEGORIES.size(); i++) {
+                BigDecimal amount = amounts.get(CATEGORIES.get(i).getCode());
+                if (amount == null || amount.signum() == 0) {
+                    sketches.zeros[i]++;
+                } else {
+                    sketches.digests[i].add(amount.doubleValue());
+                }
+            }
+        }
+        dirty = true;
+
+        while (byMonth.size() > retainedMonths) {
+            byMonth.pollFirstEntry();
+        }
+    }
+
+    /**
+     * Перцентили пользователя по категориям за месяц; summary — его сводка за этот месяц.
+     * Категории, по которым за месяц нет ни одного пользователя, не возвращаются.
+     */
+    public List<CategoryPercentileDto> percentiles(YearMonth month, AnalyticsSummaryDto summary) {
+        MonthSketches sketches = byMonth.get(month);
+        if (sketches == null) {
+            return List.of();
+        }
+        Map<String, BigDecimal> amounts = amountsByCode(summary);
+
+        List<CategoryPercentileDto> out = new ArrayList<>();
+        synchronized (sketches) {
+            long users = sketches.users;
+            for (int i = 0; i < CATEGORIES.size(); i++) {
+                TDigest digest = sketches.digests[i];
+                long zeros = sketches.zeros[i];
+                long spenders = digest.size();
+                if (spenders + zeros == 0) {
+                    continue;
+                }
+                CategoryResult category = CATEGORIES.get(i);
+                BigDecimal amount = amounts.getOrDefault(category.getCode(), BigDecimal.ZERO);
+
+                // не тратившие — ниже любого, кто тратил; равные пользователю — наполовину
+                double below = amount.signum() == 0
+                        ? zeros / 2.0
+                        : zeros + digest.cdf(amount.doubleValue()) * spenders;
+
+                out.add(CategoryPercentileDto.builder()
+                        .code(category.getCode())
+                        .name(category.getDisplayName())
+                        .amount(amount)
+                        .percentile(Math.round(below * 10000.0 / (spenders + zeros)) / 100.0)
+                        .median(spenders == 0 ? BigDecimal.ZERO
+                                : BigDecimal.valueOf(digest.quantile(0.5)).setScale(2, RoundingMode.HALF_UP))
+                        .users(users)
+                        .build());
+            }
+        }
+        return out;
+    }
+
+    @Scheduled(fixedDelayString = "${lifeflow.percentiles.persist-interval:PT10M}",
+            initialDelayString = "${lifeflow.percentiles.persist-interval:PT10M}")
+    public void persistIfDirty() {
+        if (dirty) {
+            persist();
+        }
+    }
+
+    @PreDestroy
+    public void persist() {
+        dirty = false;
+        // снимок до записи файла: всё из него уже в скетчах, которые сейчас будут записаны
+        List<Contribution> flushed = List.copyOf(pending);
+        Path file = file();
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                Map<YearMonth, MonthSketches> months = new TreeMap<>(byMonth);
+                out.writeInt(months.size());
+                for (Map.Entry<YearMonth, MonthSketches> e : months.entrySet()) {
+                    MonthSketches sketches = e.getValue();
+                    synchronized (sketches) {
+                        out.writeInt(e.getKey().getYear());
+                        out.writeInt(e.getKey().getMonthValue());
+                        out.writeLong(sketches.users);
+                        out.writeInt(CATEGORIES.size());
+                        for (int i = 0; i < CATEGORIES.size(); i++) {
+                            out.writeUTF(CATEGORIES.get(i).getCode());
+                            out.writeLong(sketches.zeros[i]);
+                            sketches.digests[i].writeTo(out);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("SpendingPercentiles: persisted {} months to {}", byMonth.size(), file);
+        } catch (IOException e) {
+            dirty = true;
+            log.error("SpendingPercentiles: failed to persist {}", file, e);
+            return;
+        }
+
+        // отметки — только после скетчей: упадём между ними — максимум повторный учёт, а не потеря
+        try {
+            if (!flushed.isEmpty()) {
+                jdbc.batchUpdate("INSERT INTO percentile_contribution (username, month) VALUES (?, ?)",
+                        flushed.stream().map(c -> new Object[]{c.username(), c.month().toString()}).toList());
+                flushed.forEach(pending::remove);
+            }
+            // месяцы, выпавшие из скетчей, отметки больше не нужны ("2024-03" < "2024-11" и как строки)
+            if (!byMonth.isEmpty()) {
+                jdbc.update("DELETE FROM percentile_contribution WHERE month < ?", byMonth.firstKey().toString());
+            }
+        } catch (DataAccessException e) {
+            dirty = true;
+            log.error("SpendingPercentiles: failed to record {} contributions", flushed.size(), e);
+        }
+    }
+
+    private boolean contributed(Contribution c) {
+        Integer rows = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM percentile_contribution WHERE username = ? AND month = ?",
+                Integer.class, c.username(), c.month().toString());
+        return rows != null && rows > 0;
+    }
+
+    private Map<YearMonth, MonthSketches> read(Path file) throws IOException {
+        Map<YearMonth, MonthSketches> out = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a .lfpd percentile file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported .lfpd version " + version + ": " + file);
+            }
+            int months = in.readInt();
+            for (int m = 0; m < months; m++) {
+                YearMonth month = YearMonth.of(in.readInt(), in.readInt());
+                MonthSketches sketches = new MonthSketches(compression);
+                sketches.users = in.readLong();
+                int categories = in.readInt();
+                for (int i = 0; i < categories; i++) {
+                    String code = in.readUTF();
+                    long zeros = in.readLong();
+                    TDigest digest = TDigest.readFrom(in);
+                    int idx = indexOf(code);
+                    if (idx >= 0) {
+                        sketches.zeros[idx] = zeros;
+                        sketches.digests[idx].merge(digest);
+                    }
+                }
+                out.put(month, sketches);
+            }
+        }
+        return out;
+    }
+
+    private Path file() {
+        return Path.of(storageDir, FILE_NAME);
+    }
+
+    private static Map<String, BigDecimal> amountsByCode(AnalyticsSummaryDto summary) {
+        Map<String, BigDecimal> out = new HashMap<>();
+        if (summary != null && summary.categories() != null) {
+            for (CategoryAnalyticsDto c : summary.categories()) {
+                if (c.code() != null && c.amount() != null) {
+                    out.merge(c.code(), c.amount(), BigDecimal::add);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static int indexOf(String code) {
+        for (int i = 0; i < CATEGORIES.size(); i++) {
+            if (CATEGORIES.get(i).getCode().equals(code)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
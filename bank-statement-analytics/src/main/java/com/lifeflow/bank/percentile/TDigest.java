@@ -0,0 +1,261 @@
+package com.lifeflow.bank.percentile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Merging t-digest (Dunning): квантильный скетч фиксированного размера.
+ *
+ * Центроиды (среднее, вес) отсортированы по среднему; новые точки копятся в буфере и вливаются
+ * проходом слияния со шкалой k1 = δ/2π · asin(2q − 1) — у хвостов центроиды мелкие, в середине крупные,
+ * поэтому крайние перцентили точнее средних. Число центроидов ≤ ~πδ/2, память не растёт с потоком.
+ *
+ * Два дайджеста сливаются (merge) без потери свойств — так объединяются скетчи разных узлов.
+ * Не потокобезопасен: синхронизация на вызывающей стороне.
+ */
+public final class TDigest {
+
+    private final double compression;
+
+    private double[] mean;
+    private double[] weight;
+    private int centroids;
+
+    private final double[] bufferMean;
+    private final double[] bufferWeight;
+    private int buffered;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression * Math.PI / 2) + 10;
+        this.mean = new double[capacity];
+        this.weight = new double[capacity];
+        this.bufferMean = new double[(int) (compression * 2)];
+        this.bufferWeight = new double[bufferMean.length];
+    }
+
+    public double compression() {
+        return compression;
+    }
+
+    /** Суммарный вес (число точек). */
+    public long size() {
+        return Math.round(totalWeight);
+    }
+
+    public void add(double x) {
+        add(x, 1);
+    }
+
+    public void add(double x, double w) {
+        if (Double.isNaN(x) || w <= 0) {
+            return;
+        }
+        if (buffered == bufferMean.length) {
+            compress();
+        }
+        bufferMean[buffered] = x;
+        bufferWeight[buffered] = w;
+        buffered++;
+        totalWeight += w;
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+    }
+
+    /**
+     * Вливает другой дайджест (например, скетч того же месяца с другого узла).
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) {
+            add(other.mean[i], other.weight[i]);
+        }
+        if (other.centroids > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Доля точек ≤ x (точки, равные x, считаются наполовину), 0..1; NaN — дайджест пуст.
+     */
+    public double cdf(double x) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (x < min) {
+            return 0;
+        }
+        if (x > max) {
+            return 1;
+        }
+        if (min == max) {
+            return 0.5;
+        }
+
+        // левый хвост: от min до центра первого центроида
+        if (x < mean[0]) {
+            return (x - min) / (mean[0] - min) * weight[0] / 2 / totalWeight;
+        }
+
+        double cumulative = 0; // вес всех центроидов левее i
+        for (int i = 0; i < centroids; i++) {
+            if (mean[i] == x) {
+                // все центроиды с этим же средним — наполовину
+                double equal = 0;
+                int j = i;
+                while (j < centroids && mean[j] == x) {
+                    equal += weight[j++];
+                }
+                return (cumulative + equal / 2) / totalWeight;
+            }
+            if (i + 1 < centroids && x < mean[i + 1]) {
+                double left = cumulative + weight[i] / 2;
+                double span = (weight[i] + weight[i + 1]) / 2;
+                return (left + (x - mean[i]) / (mean[i + 1] - mean[i]) * span) / totalWeight;
+            }
+            cumulative += weight[i];
+        }
+
+        // правый хвост: от центра последнего центроида до max
+        int last = centroids - 1;
+        double left = totalWeight - weight[last] / 2;
+        return (left + (x - mean[last]) / (max - mean[last]) * weight[last] / 2) / totalWeight;
+    }
+
+    /**
+     * Значение квантиля q (0..1); NaN — дайджест пуст.
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        double target = q * totalWeight;
+        if (target < weight[0] / 2) {
+            return min + (mean[0] - min) * target / (weight[0] / 2);
+        }
+        double cumulative = 0;
+        for (int i = 0; i + 1 < centroids; i++) {
+            double center = cumulative + weight[i] / 2;
+            double next = center + (weight[i] + weight[i + 1]) / 2;
+            if (target < next) {
+                return mean[i] + (mean[i + 1] - mean[i]) * (target - center) / (next - center);
+            }
+            cumulative += weight[i];
+        }
+        int last = centroids - 1;
+        double center = totalWeight - weight[last] / 2;
+        return mean[last] + (max - mean[last]) * Math.min(1, (target - center) / (weight[last] / 2));
+    }
+
+    /**
+     * Вливает буфер в центроиды. Вызывается сам при заполнении буфера и перед запросами.
+     */
+    public void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int n = centroids + buffered;
+        double[] allMean = Arrays.copyOf(mean, n);
+        double[] allWeight = Arrays.copyOf(weight, n);
+        System.arraycopy(bufferMean, 0, allMean, centroids, buffered);
+        System.arraycopy(bufferWeight, 0, allWeight, centroids, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(allMean[a], allMean[b]));
+
+        int out = 0;
+        double wSoFar = 0;
+        double curMean = allMean[order[0]];
+        double curWeight = allWeight[order[0]];
+        double wLimit = totalWeight * q(k(0) + 1);
+
+        for (int i = 1; i < n; i++) {
+            int idx = order[i];
+            double w = allWeight[idx];
+            if (wSoFar + curWeight + w <= wLimit) {
+                curWeight += w;
+                curMean += (allMean[idx] - curMean) * w / curWeight;
+            } else {
+                out = emit(out, curMean, curWeight);
+                wSoFar += curWeight;
+                wLimit = totalWeight * q(k(wSoFar / totalWeight) + 1);
+                curMean = allMean[idx];
+                curWeight = w;
+            }
+        }
+        centroids = emit(out, curMean, curWeight);
+    }
+
+    private int emit(int out, double m, double w) {
+        if (out == mean.length) {
+            // на практике не случается (оценка πδ/2 с запасом), но массив не должен переполниться
+            mean = Arrays.copyOf(mean, out * 2);
+            weight = Arrays.copyOf(weight, out * 2);
+        }
+        mean[out] = m;
+        weight[out] = w;
+        return out + 1;
+    }
+
+    private double k(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+    }
+
+    private double q(double k) {
+        if (k >= compression / 4) {
+            return 1;
+        }
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    // ======================
+    // Сериализация
+    // ======================
+
+    public void writeTo(DataOutput out) throws IOException {
+        compress();
+        out.writeDouble(compression);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            out.writeDouble(mean[i]);
+            out.writeDouble(weight[i]);
+        }
+    }
+
+    public static TDigest readFrom(DataInput in) throws IOException {
+        TDigest digest = new TDigest(in.readDouble());
+        double min = in.readDouble();
+        double max = in.readDouble();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            digest.add(in.readDouble(), in.readDouble());
+        }
+        if (n > 0) {
+            digest.min = min;
+            digest.max = max;
+        }
+        digest.compress();
+        return digest;
+    }
+}
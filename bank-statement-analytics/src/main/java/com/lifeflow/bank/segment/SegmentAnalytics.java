@@ -0,0 +1,99 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.model.CategoryResult;
+import com.lifeflow.bank.service.CategorySummaryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Та же сводка, что и AnalyticsService.aggregate (общий шаг — CategorySummaryBuilder), но прямо
+ * по сегментам .lfseg: суммы копятся в long-центах по индексам категорий, BankTransaction не создаются,
+ * строки мерчантов декодируются только для подписок.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentAnalytics {
+
+    static final String UNCATEGORIZED = CategorySummaryBuilder.UNCATEGORIZED;
+
+    private static final Map<String, String> CATEGORY_NAMES = new HashMap<>();
+
+    static {
+        for (CategoryResult c : CategoryResult.values()) {
+            CATEGORY_NAMES.put(c.getCode(), c.getDisplayName());
+        }
+    }
+
+    private final SegmentStore segmentStore;
+
+    /**
+     * null — у пользователя нет сегментов (история ещё не накоплена).
+     * categoryCode — опциональный фильтр, как у TransactionLedger.find.
+     */
+    public AnalyticsSummaryDto summarize(String username, LocalDate from, LocalDate to, String categoryCode) {
+        List<SegmentReader> segments = segmentStore.segments(username);
+        if (segments.isEmpty()) {
+            return null;
+        }
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        boolean filtered = categoryCode != null && !categoryCode.isBlank();
+
+        CategorySummaryBuilder builder = new CategorySummaryBuilder();
+        int scanned = 0;
+
+        for (SegmentReader seg : segments) {
+            if (!seg.overlaps(fromDay, toDay)) {
+                continue;
+            }
+            long[] segCategoryExpense = new long[seg.categoryCount() + 1]; // последний — без категории
+            int uncategorized = seg.categoryCount();
+
+            for (int i = 0, n = seg.size(); i < n; i++) {
+                int day = seg.epochDay(i);
+                if (day < fromDay || day > toDay) {
+                    continue;
+                }
+                int cat = seg.categoryIndex(i);
+                if (filtered && !categoryCode.equals(seg.categoryCode(cat))) {
+                    continue;
+                }
+                scanned++;
+
+                long cents = seg.cents(i);
+                if (cents < 0) {
+                    segCategoryExpense[cat < 0 ? uncategorized : cat] -= cents;
+                } else if (cents > 0) {
+                    builder.income(cents);
+                }
+
+                if (seg.subscription(i)) {
+                    builder.subscription(seg.merchant(seg.merchantId(i)), Math.abs(cents));
+                }
+            }
+
+            for (int c = 0; c < segCategoryExpense.length; c++) {
+                if (segCategoryExpense[c] == 0) {
+                    continue;
+                }
+                String code = c == uncategorized ? UNCATEGORIZED : seg.categoryCode(c);
+                builder.expense(code, categoryName(code), segCategoryExpense[c]);
+            }
+        }
+
+        log.info("SegmentAnalytics: {} → {} records from {} segments", username, scanned, segments.size());
+        return builder.build();
+    }
+
+    static String categoryName(String code) {
+        return CATEGORY_NAMES.getOrDefault(code, "Без категории");
+    }
+}
@@ -0,0 +1,225 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.dto.TransactionFilterDto;
+import com.lifeflow.bank.model.BankTransaction;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Битмап-индексы (Roaring) по истории одного пользователя.
+ *
+ * Номер строки — сквозной номер записи по сегментам в порядке их записи (SegmentRows).
+ * Индексы: категория, мерчант (словарь на пользователя), месяц, флаги subscription/regular,
+ * знак суммы. Догоняется инкрементально: при запросе индексируются только новые сегменты.
+ *
+ * Методы synchronized: догонка мутирует битмапы, а запросы здесь — доли миллисекунды.
+ */
+final class SegmentBitmapIndex {
+
+    private final SegmentRows rows = new SegmentRows();
+
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final Map<String, RoaringBitmap> byCategory = new HashMap<>();
+    private final Map<String, RoaringBitmap> byMerchant = new HashMap<>();   // ключ — имя в нижнем регистре
+    private final NavigableMap<YearMonth, RoaringBitmap> byMonth = new TreeMap<>();
+    private final RoaringBitmap subscription = new RoaringBitmap();
+    private final RoaringBitmap regular = new RoaringBitmap();
+    private final RoaringBitmap expense = new RoaringBitmap();
+    private final RoaringBitmap income = new RoaringBitmap();
+
+    synchronized void catchUp(List<SegmentReader> current) {
+        for (int s = rows.segmentCount(); s < current.size(); s++) {
+            addSegment(current.get(s));
+        }
+    }
+
+    private void addSegment(SegmentReader seg) {
+        int base = rows.add(seg);
+        int n = seg.size();
+
+        // битмапы по индексам таблиц сегмента — чтобы не искать строку в map на каждую запись
+        RoaringBitmap[] categoryBitmaps = new RoaringBitmap[seg.categoryCount() + 1];
+        RoaringBitmap[] merchantBitmaps = new RoaringBitmap[seg.dictionarySize()];
+        int lastDay = Integer.MIN_VALUE;
+        RoaringBitmap monthBitmap = null;
+
+        for (int i = 0; i < n; i++) {
+            int row = base + i;
+
+            int cat = seg.categoryIndex(i);
+            int catSlot = cat < 0 ? categoryBitmaps.length - 1 : cat;
+            if (categoryBitmaps[catSlot] == null) {
+                String code = cat < 0 ? SegmentAnalytics.UNCATEGORIZED : seg.categoryCode(cat);
+                categoryBitmaps[catSlot] = byCategory.computeIfAbsent(code, k -> new RoaringBitmap());
+            }
+            categoryBitmaps[catSlot].add(row);
+
+            int merchantId = seg.merchantId(i);
+            if (merchantId >= 0) {
+                if (merchantBitmaps[merchantId] == null) {
+                    String key = seg.merchant(merchantId).toLowerCase(Locale.ROOT);
+                    merchantBitmaps[merchantId] = byMerchant.computeIfAbsent(key, k -> new RoaringBitmap());
+                }
+                merchantBitmaps[merchantId].add(row);
+            }
+
+            int day = seg.epochDay(i);
+            if (day != lastDay) {
+                YearMonth month = YearMonth.from(LocalDate.ofEpochDay(day));
+                monthBitmap = byMonth.computeIfAbsent(month, k -> new RoaringBitmap());
+                lastDay = day;
+            }
+            monthBitmap.add(row);
+
+            if (seg.subscription(i)) subscription.add(row);
+            if (seg.regular(i)) regular.add(row);
+
+            long cents = seg.cents(i);
+            if (cents < 0) expense.add(row);
+            else if (cents > 0) income.add(row);
+        }
+
+        all.add((long) base, (long) base + n);
+    }
+
+    synchronized RoaringBitmap evaluate(TransactionFilterDto f) {
+        return f == null ? all.clone() : eval(f);
+    }
+
+    private RoaringBitmap eval(TransactionFilterDto f) {
+        List<RoaringBitmap> terms = new ArrayList<>();
+
+        if (f.and() != null) {
+            for (TransactionFilterDto child : f.and()) {
+                terms.add(eval(child));
+            }
+        }
+        if (f.or() != null) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (TransactionFilterDto child : f.or()) {
+                union.or(eval(child));
+            }
+            terms.add(union);
+        }
+        if (f.not() != null) {
+            terms.add(RoaringBitmap.andNot(all, eval(f.not())));
+        }
+        if (f.category() != null) {
+            terms.add(category(f.category()));
+        }
+        if (f.merchant() != null) {
+            terms.add(merchant(f.merchant()));
+        }
+        if (f.month() != null) {
+            terms.add(months(YearMonth.parse(f.month()), YearMonth.parse(f.month())));
+        }
+        if (f.from() != null || f.to() != null) {
+            YearMonth from = f.from() != null ? YearMonth.parse(f.from()) : YearMonth.of(1970, 1);
+            YearMonth to = f.to() != null ? YearMonth.parse(f.to()) : YearMonth.of(9999, 12);
+            terms.add(months(from, to));
+        }
+        if (f.flag() != null) {
+            terms.add(flag(f.flag()));
+        }
+
+        if (terms.isEmpty()) {
+            return all.clone();
+        }
+        RoaringBitmap result = terms.get(0).clone();
+        for (int i = 1; i < terms.size(); i++) {
+            result.and(terms.get(i));
+        }
+        return result;
+    }
+
+    private RoaringBitmap category(String code) {
+        if (!code.endsWith("*")) {
+            RoaringBitmap b = byCategory.get(code);
+            return b == null ? new RoaringBitmap() : b;
+        }
+        String prefix = code.substring(0, code.length() - 1);
+        RoaringBitmap union = new RoaringBitmap();
+        byCategory.forEach((k, b) -> {
+            if (k.startsWith(prefix)) union.or(b);
+        });
+        return union;
+    }
+
+    private RoaringBitmap merchant(String needle) {
+        String lower = needle.toLowerCase(Locale.ROOT);
+        RoaringBitmap union = new RoaringBitmap();
+        byMerchant.forEach((k, b) -> {
+            if (k.contains(lower)) union.or(b);
+        });
+        return union;
+    }
+
+    private RoaringBitmap months(YearMonth from, YearMonth to) {
+        RoaringBitmap union = new RoaringBitmap();
+        for (RoaringBitmap b : byMonth.subMap(from, true, to, true).values()) {
+            union.or(b);
+        }
+        return union;
+    }
+
+    private RoaringBitmap flag(String flag) {
+        return switch (flag.toLowerCase(Locale.ROOT)) {
+            case "subscription" -> subscription;
+            case "regular" -> regular;
+            case "expense" -> expense;
+            case "income" -> income;
+            default -> throw new IllegalArgumentException("Unknown flag: " + flag);
+        };
+    }
+
+    /**
+     * Страница результата: от новых операций к старым — по дате проводки, а не по номеру строки
+     * (выписку за прошлый месяц могут загрузить после текущей). Месяцы идут от последнего к первому,
+     * сортируется только срез месяца, в который попала страница; внутри дня — от последних записанных.
+     * Смещение за концом результата — пустая страница.
+     */
+    synchronized List<BankTransaction> page(RoaringBitmap result, long offset, int limit) {
+        if (offset >= result.getLongCardinality()) {
+            return List.of();
+        }
+        List<BankTransaction> out = new ArrayList<>(limit);
+        long skip = offset;
+        for (RoaringBitmap month : byMonth.descendingMap().values()) {
+            if (out.size() >= limit) {
+                break;
+            }
+            RoaringBitmap slice = RoaringBitmap.and(month, result);
+            int n = slice.getCardinality();
+            if (n <= skip) {
+                skip -= n;
+                continue;
+            }
+
+            // ключ (день, строка): старшие 32 бита — день, младшие — номер строки
+            long[] keys = new long[n];
+            IntIterator it = slice.getIntIterator();
+            for (int k = 0; k < n; k++) {
+                int row = it.next();
+                keys[k] = ((long) rows.epochDay(row) << 32) | (row & 0xFFFFFFFFL);
+            }
+            Arrays.sort(keys);
+
+            for (int k = n - 1 - (int) skip; k >= 0 && out.size() < limit; k--) {
+                out.add(rows.transaction((int) keys[k]));
+            }
+            skip = 0;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,58 @@
+package com.lifeflow.bank.segment;
+
+/**
+ * Формат сегмента истории транзакций (.lfseg), версия 2. Порядок байт — big-endian.
+ *
+ *  Заголовок (40 байт):
+ *    0  int    magic "LFSG"
+ *    4  short  version
+ *    6  short  recordSize (24)
+ *    8  int    recordCount
+ *   12  int    minEpochDay
+ *   16  int    maxEpochDay
+ *   20  int    categoryCount
+ *   24  int    dictionaryCount
+ *   28  int    recordsOffset
+ *   32  long   ledgerSeq — последний номер строки журнала (TransactionLedger), учтённый этим и
+ *              предыдущими сегментами пользователя
+ *
+ *  Таблица категорий: categoryCount × (ushort длина + UTF-8) — коды CategoryResult на момент записи,
+ *                     запись ссылается на категорию индексом в этой таблице (переупорядочивание enum не страшно)
+ *  Словарь строк: dictionaryCount × (ushort длина + UTF-8) — имена мерчантов и описания операций
+ *  Записи (с recordsOffset, выровнено по 8), по 24 байта:
+ *    0  int    epochDay
+ *    4  long   сумма в центах (минус = расход)
+ *   12  ushort индекс категории (NO_CATEGORY — без категории)
+ *   14  int    id мерчанта в словаре (NO_MERCHANT — без мерчанта)
+ *   18  ushort флаги (FLAG_SUBSCRIPTION, FLAG_REGULAR)
+ *   20  int    id описания в словаре (NO_DESCRIPTION — без описания)
+ */
+final class SegmentFormat {
+
+    static final int MAGIC = 0x4C465347; // "LFSG"
+    static final short VERSION = 2;
+
+    static final int HEADER_SIZE = 40;
+    static final int RECORD_SIZE = 24;
+
+    static final int OFF_LEDGER_SEQ = 32;
+
+    static final int OFF_EPOCH_DAY = 0;
+    static final int OFF_CENTS = 4;
+    static final int OFF_CATEGORY = 12;
+    static final int OFF_MERCHANT = 14;
+    static final int OFF_FLAGS = 18;
+    static final int OFF_DESCRIPTION = 20;
+
+    static final int NO_CATEGORY = 0xFFFF;
+    static final int NO_MERCHANT = -1;
+    static final int NO_DESCRIPTION = -1;
+
+    static final int FLAG_SUBSCRIPTION = 1;
+    static final int FLAG_REGULAR = 1 << 1;
+
+    static final String EXTENSION = ".lfseg";
+
+    private SegmentFormat() {
+    }
+}
@@ -0,0 +1,14 @@
+package com.lifeflow.bank.segment;
+
+/**
+ * Потребитель истории, который строит состояние по сегментам, а не по журналу.
+ *
+ * При старте SegmentStore один раз проходит по отображённым сегментам всех пользователей и отдаёт
+ * каждый сегмент всем слушателям — журнал целиком никто не перечитывает и BankTransaction не копит.
+ * Дальше каждый новый сегмент отдаётся сразу после записи. Сегменты одного пользователя приходят
+ * по порядку и под его блокировкой.
+ */
+public interface SegmentListener {
+
+    void onSegment(String username, SegmentReader segment);
+}
@@ -0,0 +1,196 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.model.BankTransaction;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static com.lifeflow.bank.segment.SegmentFormat.*;
+
+/**
+ * Сегмент .lfseg, отображённый в память (FileChannel.map). Записи читаются по индексу прямо из
+ * отображения — BankTransaction не создаются, куча почти не используется.
+ * В куче только смещения строк словаря; сами строки декодируются по запросу.
+ *
+ * Неизменяемый, после открытия читать можно из любых потоков (абсолютные get'ы).
+ */
+public final class SegmentReader {
+
+    private final Path path;
+    private final MappedByteBuffer map;
+    private final int count;
+    private final int minEpochDay;
+    private final int maxEpochDay;
+    private final int recordsOffset;
+    private final long ledgerSeq;
+    private final String[] categories;
+    private final int[] dictionaryOffsets;
+
+    private SegmentReader(Path path, MappedByteBuffer map) throws IOException {
+        this.path = path;
+        this.map = map;
+
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a .lfseg segment: " + path);
+        }
+        short version = map.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported .lfseg version " + version + ": " + path);
+        }
+        if (map.getShort(6) != RECORD_SIZE) {
+            throw new IOException("Unexpected .lfseg record size in " + path);
+        }
+
+        this.count = map.getInt(8);
+        this.minEpochDay = map.getInt(12);
+        this.maxEpochDay = map.getInt(16);
+        int categoryCount = map.getInt(20);
+        int dictionaryCount = map.getInt(24);
+        this.recordsOffset = map.getInt(28);
+        this.ledgerSeq = map.getLong(OFF_LEDGER_SEQ);
+
+        if ((long) recordsOffset + (long) count * RECORD_SIZE > map.capacity()) {
+            throw new IOException("Truncated .lfseg segment: " + path);
+        }
+
+        int pos = HEADER_SIZE;
+        this.categories = new String[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            int len = Short.toUnsignedInt(map.getShort(pos));
+            categories[i] = decode(pos + 2, len);
+            pos += 2 + len;
+        }
+
+        this.dictionaryOffsets = new int[dictionaryCount];
+        for (int i = 0; i < dictionaryCount; i++) {
+            dictionaryOffsets[i] = pos;
+            pos += 2 + Short.toUnsignedInt(map.getShort(pos));
+        }
+    }
+
+    public static SegmentReader open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            // отображение остаётся валидным и после закрытия канала
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new SegmentReader(path, map);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int minEpochDay() {
+        return minEpochDay;
+    }
+
+    public int maxEpochDay() {
+        return maxEpochDay;
+    }
+
+    /** Номер строки журнала, до которого история учтена с этим сегментом. */
+    public long ledgerSeq() {
+        return ledgerSeq;
+    }
+
+    /** Пересекается ли сегмент с [fromDay, toDay] — иначе его можно не сканировать. */
+    public boolean overlaps(long fromDay, long toDay) {
+        return count > 0 && maxEpochDay >= fromDay && minEpochDay <= toDay;
+    }
+
+    public int epochDay(int i) {
+        return map.getInt(recordsOffset + i * RECORD_SIZE + OFF_EPOCH_DAY);
+    }
+
+    public long cents(int i) {
+        return map.getLong(recordsOffset + i * RECORD_SIZE + OFF_CENTS);
+    }
+
+    /** Индекс в таблице категорий этого сегмента, -1 — без категории. */
+    public int categoryIndex(int i) {
+        int idx = Short.toUnsignedInt(map.getShort(recordsOffset + i * RECORD_SIZE + OFF_CATEGORY));
+        return idx == NO_CATEGORY ? -1 : idx;
+    }
+
+    public int categoryCount() {
+        return categories.length;
+    }
+
+    public String categoryCode(int categoryIndex) {
+        return categoryIndex < 0 ? null : categories[categoryIndex];
+    }
+
+    /** id в словаре этого сегмента, -1 — без мерчанта. */
+    public int merchantId(int i) {
+        return map.getInt(recordsOffset + i * RECORD_SIZE + OFF_MERCHANT);
+    }
+
+    public String merchant(int merchantId) {
+        return string(merchantId);
+    }
+
+    /** Описание операции, null — нет. */
+    public String description(int i) {
+        return string(map.getInt(recordsOffset + i * RECORD_SIZE + OFF_DESCRIPTION));
+    }
+
+    /** Размер словаря строк (мерчанты и описания) — верхняя граница id мерчанта. */
+    public int dictionarySize() {
+        return dictionaryOffsets.length;
+    }
+
+    public boolean subscription(int i) {
+        return (flags(i) & FLAG_SUBSCRIPTION) != 0;
+    }
+
+    public boolean regular(int i) {
+        return (flags(i) & FLAG_REGULAR) != 0;
+    }
+
+    private int flags(int i) {
+        return Short.toUnsignedInt(map.getShort(recordsOffset + i * RECORD_SIZE + OFF_FLAGS));
+    }
+
+    /**
+     * Запись как транзакция — для отдачи наружу (страница запроса, результаты поиска)
+     * и для потребителей, которым нужна одна запись за раз; копить такие объекты не нужно.
+     */
+    public BankTransaction transaction(int i) {
+        String code = categoryCode(categoryIndex(i));
+        return BankTransaction.builder()
+                .bookedAt(LocalDate.ofEpochDay(epochDay(i)).atStartOfDay().atOffset(ZoneOffset.UTC))
+                .amount(BigDecimal.valueOf(cents(i), 2))
+                .description(description(i))
+                .counterparty(merchant(merchantId(i)))
+                .categoryCode(code)
+                .categoryName(code == null ? null : SegmentAnalytics.categoryName(code))
+                .subscription(subscription(i))
+                .regular(regular(i))
+                .build();
+    }
+
+    private String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int pos = dictionaryOffsets[id];
+        return decode(pos + 2, Short.toUnsignedInt(map.getShort(pos)));
+    }
+
+    private String decode(int pos, int len) {
+        byte[] b = new byte[len];
+        map.get(pos, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.model.BankTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сквозная нумерация записей по сегментам одного пользователя: первая запись второго сегмента
+ * идёт сразу за последней записью первого. Индексы (SegmentBitmapIndex, TrigramIndex) хранят только
+ * номера строк, а сами записи читаются из отображённых сегментов по номеру.
+ *
+ * Не потокобезопасен — синхронизирует владелец.
+ */
+final class SegmentRows {
+
+    private final List<SegmentReader> segments = new ArrayList<>();
+    private final List<Integer> segmentStarts = new ArrayList<>();
+    private int rowCount;
+
+    /** Номер первой строки добавленного сегмента. */
+    int add(SegmentReader seg) {
+        int base = rowCount;
+        segments.add(seg);
+        segmentStarts.add(base);
+        rowCount += seg.size();
+        return base;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    int epochDay(int row) {
+        int s = segmentOf(row);
+        return segments.get(s).epochDay(row - segmentStarts.get(s));
+    }
+
+    BankTransaction transaction(int row) {
+        int s = segmentOf(row);
+        return segments.get(s).transaction(row - segmentStarts.get(s));
+    }
+
+    SegmentReader segment(int row) {
+        return segments.get(segmentOf(row));
+    }
+
+    int indexInSegment(int row) {
+        return row - segmentStarts.get(segmentOf(row));
+    }
+
+    private int segmentOf(int row) {
+        int lo = 0;
+        int hi = segmentStarts.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segmentStarts.get(mid) <= row) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+}
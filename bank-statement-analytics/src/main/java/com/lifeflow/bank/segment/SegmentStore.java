@@ -0,0 +1,192 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.ledger.TransactionLedger;
+import com.lifeflow.bank.ledger.TransactionsAppendedEvent;
+import com.lifeflow.bank.model.BankTransaction;
+import com.lifeflow.bank.service.RequestCoalescer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * История транзакций пользователей в сегментах .lfseg: ${lifeflow.storage.dir}/segments/<sha256 логина>/00000001.lfseg ...
+ *
+ * После рестарта узел просто отображает файлы в память — ни перепарсинга PDF, ни чтения всего журнала.
+ * Новые транзакции (TransactionsAppendedEvent из TransactionLedger) дописываются новым сегментом.
+ *
+ * Каждый сегмент помнит номер строки журнала, до которого история учтена (ledgerSeq). Если запись
+ * сегмента упала, а строки в журнале уже есть, отставание закрывается догрузкой из журнала:
+ * при старте (и для пользователей без сегментов — первое построение) и при следующем событии.
+ *
+ * Производные состояния в памяти (поиск, детектор аномалий, счётчик мерчантов без категории) строятся через SegmentListener:
+ * один проход по сегментам при старте, дальше — по каждому новому сегменту.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentStore {
+
+    private final TransactionLedger ledger;
+    private final List<SegmentListener> listeners;
+
+    @Value("${lifeflow.storage.dir:./data}")
+    private String storageDir;
+
+    private final Map<String, List<SegmentReader>> byUser = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() throws IOException {
+        Path root = root();
+        Files.createDirectories(root);
+
+        long records = 0;
+        try (Stream<Path> users = Files.list(root)) {
+            for (Path userDir : users.filter(Files::isDirectory).toList()) {
+                List<SegmentReader> segments = new CopyOnWriteArrayList<>();
+                for (Path file : segmentFiles(userDir)) {
+                    SegmentReader reader = SegmentReader.open(file);
+                    segments.add(reader);
+                    records += reader.size();
+                }
+                byUser.put(userDir.getFileName().toString(), segments);
+            }
+        }
+        log.info("SegmentStore: mapped {} users, {} records from {}", byUser.size(), records, root);
+
+        // сначала слушателям — уже записанные сегменты, потом догрузка (её сегменты уходят им из append)
+        long start = System.nanoTime();
+        List<String> users = ledger.usernames();
+        for (String user : users) {
+            List<SegmentReader> segments = segments(user);
+            synchronized (segments) {
+                segments.forEach(seg -> publish(user, seg));
+            }
+        }
+        log.info("SegmentStore: replayed segments of {} users to {} listeners in {} ms",
+                users.size(), listeners.size(), (System.nanoTime() - start) / 1_000_000);
+
+        for (String user : users) {
+            try {
+                catchUp(user, ledger.maxSeq(user));
+            } catch (RuntimeException e) {
+                log.error("SegmentStore: failed to catch up segments of {} with the ledger", user, e);
+            }
+        }
+    }
+
+    @EventListener
+    public void onTransactionsAppended(TransactionsAppendedEvent event) {
+        String dir = dirName(EnrolledAccounts.normalize(event.username()));
+        List<SegmentReader> segments = byUser.computeIfAbsent(dir, d -> new CopyOnWriteArrayList<>());
+        synchronized (segments) {
+            long seq = ledgerSeq(segments);
+            if (seq == event.previousSeq()) {
+                append(event.username(), event.transactions(), event.ledgerSeq());
+            } else {
+                // прошлая запись сегмента не удалась (или сегменты отстали) — берём всё недостающее из журнала
+                catchUp(event.username(), event.ledgerSeq());
+            }
+        }
+    }
+
+    /**
+     * Сегменты пользователя в порядке записи (пустой список — истории нет).
+     */
+    public List<SegmentReader> segments(String username) {
+        return byUser.getOrDefault(dirName(EnrolledAccounts.normalize(username)), List.of());
+    }
+
+    public boolean hasHistory(String username) {
+        return !segments(username).isEmpty();
+    }
+
+    /**
+     * Дописать сегментом строки журнала после последнего учтённого номера, до uptoSeq включительно.
+     */
+    private void catchUp(String username, long uptoSeq) {
+        String dir = dirName(EnrolledAccounts.normalize(username));
+        List<SegmentReader> segments = byUser.computeIfAbsent(dir, d -> new CopyOnWriteArrayList<>());
+        synchronized (segments) {
+            long seq = ledgerSeq(segments);
+            if (seq >= uptoSeq) {
+                return;
+            }
+            List<BankTransaction> missing = ledger.findAppended(username, seq, uptoSeq);
+            log.info("SegmentStore: catching up {} from ledger: {} transactions after #{}", username, missing.size(), seq);
+            append(username, missing, uptoSeq);
+        }
+    }
+
+    private void append(String username, List<BankTransaction> txs, long ledgerSeq) {
+        if (txs.isEmpty()) {
+            return;
+        }
+        String dir = dirName(EnrolledAccounts.normalize(username));
+        List<SegmentReader> segments = byUser.computeIfAbsent(dir, d -> new CopyOnWriteArrayList<>());
+
+        // номер сегмента и запись — последовательно в рамках пользователя
+        synchronized (segments) {
+            try {
+                Path userDir = Files.createDirectories(root().resolve(dir));
+                Path file = userDir.resolve(String.format("%08d%s", segments.size() + 1, SegmentFormat.EXTENSION));
+                SegmentWriter.write(file, txs, ledgerSeq);
+                SegmentReader segment = SegmentReader.open(file);
+                segments.add(segment);
+                log.info("SegmentStore: wrote {} ({} records, ledger #{})", file, txs.size(), ledgerSeq);
+                publish(username, segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write segment for " + username, e);
+            }
+        }
+    }
+
+    /** Упавший слушатель не мешает остальным и не отменяет запись сегмента. */
+    private void publish(String username, SegmentReader segment) {
+        for (SegmentListener listener : listeners) {
+            try {
+                listener.onSegment(username, segment);
+            } catch (RuntimeException e) {
+                log.error("SegmentStore: {} failed on segment {}", listener.getClass().getSimpleName(), segment.path(), e);
+            }
+        }
+    }
+
+    /** Номер строки журнала, учтённый последним сегментом; 0 — сегментов нет. */
+    private static long ledgerSeq(List<SegmentReader> segments) {
+        return segments.isEmpty() ? 0L : segments.get(segments.size() - 1).ledgerSeq();
+    }
+
+    private Path root() {
+        return Path.of(storageDir, "segments");
+    }
+
+    private static List<Path> segmentFiles(Path userDir) throws IOException {
+        try (Stream<Path> files = Files.list(userDir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(SegmentFormat.EXTENSION))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Имя папки пользователя: hex SHA-256 нормализованного логина. Взаимно однозначно и безопасно для пути —
+     * замена «опасных» символов склеивала разные логины (a+b@x.sk и a_b@x.sk) в одну историю.
+     */
+    static String dirName(String normalizedUsername) {
+        return RequestCoalescer.sha256(normalizedUsername);
+    }
+}
@@ -0,0 +1,143 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.model.BankTransaction;
+import com.lifeflow.bank.model.CategoryResult;
+import com.lifeflow.bank.service.TransactionFingerprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.lifeflow.bank.segment.SegmentFormat.*;
+
+/**
+ * Запись одного сегмента. Сегменты не переписываются: каждая пачка новых транзакций — новый файл.
+ * Пишем во временный файл и переименовываем, чтобы читатель никогда не увидел недописанный сегмент.
+ */
+final class SegmentWriter {
+
+    private static final List<String> CATEGORY_TABLE;
+    private static final Map<String, Integer> CATEGORY_INDEX = new HashMap<>();
+
+    static {
+        List<String> codes = new ArrayList<>();
+        for (CategoryResult c : CategoryResult.values()) {
+            CATEGORY_INDEX.put(c.getCode(), codes.size());
+            codes.add(c.getCode());
+        }
+        CATEGORY_TABLE = List.copyOf(codes);
+    }
+
+    private SegmentWriter() {
+    }
+
+    /**
+     * ledgerSeq — до какого номера строки журнал учтён после этого сегмента (см. SegmentFormat).
+     */
+    static void write(Path file, List<BankTransaction> txs, long ledgerSeq) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        for (BankTransaction tx : txs) {
+            if (tx.getCounterparty() != null) {
+                dictionary.putIfAbsent(tx.getCounterparty(), dictionary.size());
+            }
+            if (tx.getDescription() != null) {
+                dictionary.putIfAbsent(tx.getDescription(), dictionary.size());
+            }
+            int day = (int) tx.getBookedAt().toLocalDate().toEpochDay();
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+        }
+
+        List<byte[]> categoryBytes = encode(CATEGORY_TABLE);
+        List<byte[]> dictionaryBytes = encode(dictionary.keySet());
+
+        int stringsSize = sizeOf(categoryBytes) + sizeOf(dictionaryBytes);
+        int recordsOffset = align8(HEADER_SIZE + stringsSize);
+        int total = recordsOffset + txs.size() * RECORD_SIZE;
+
+        ByteBuffer buf = ByteBuffer.allocate(total);
+        buf.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) RECORD_SIZE)
+                .putInt(txs.size())
+                .putInt(txs.isEmpty() ? 0 : minDay)
+                .putInt(txs.isEmpty() ? 0 : maxDay)
+                .putInt(categoryBytes.size())
+                .putInt(dictionaryBytes.size())
+                .putInt(recordsOffset)
+                .putLong(ledgerSeq);
+
+        putStrings(buf, categoryBytes);
+        putStrings(buf, dictionaryBytes);
+
+        buf.position(recordsOffset);
+        for (BankTransaction tx : txs) {
+            Integer category = tx.getCategoryCode() == null ? null : CATEGORY_INDEX.get(tx.getCategoryCode());
+            Integer merchant = tx.getCounterparty() == null ? null : dictionary.get(tx.getCounterparty());
+            Integer description = tx.getDescription() == null ? null : dictionary.get(tx.getDescription());
+            int flags = (tx.isSubscription() ? FLAG_SUBSCRIPTION : 0) | (tx.isRegular() ? FLAG_REGULAR : 0);
+
+            buf.putInt((int) tx.getBookedAt().toLocalDate().toEpochDay())
+                    .putLong(TransactionFingerprint.cents(tx.getAmount()))
+                    .putShort((short) (category == null ? NO_CATEGORY : category))
+                    .putInt(merchant == null ? NO_MERCHANT : merchant)
+                    .putShort((short) flags)
+                    .putInt(description == null ? NO_DESCRIPTION : description);
+        }
+        buf.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<byte[]> encode(Iterable<String> strings) {
+        List<byte[]> out = new ArrayList<>();
+        for (String s : strings) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (b.length > 0xFFFF) {
+                // ≤ 3 байта на символ; суррогатную пару не разрезаем
+                int cut = Character.isHighSurrogate(s.charAt(0x3FFE)) ? 0x3FFE : 0x3FFF;
+                b = s.substring(0, cut).getBytes(StandardCharsets.UTF_8);
+            }
+            out.add(b);
+        }
+        return out;
+    }
+
+    private static int sizeOf(List<byte[]> strings) {
+        int n = 0;
+        for (byte[] b : strings) {
+            n += 2 + b.length;
+        }
+        return n;
+    }
+
+    private static void putStrings(ByteBuffer buf, List<byte[]> strings) {
+        for (byte[] b : strings) {
+            buf.putShort((short) b.length).put(b);
+        }
+    }
+
+    private static int align8(int n) {
+        return (n + 7) & ~7;
+    }
+}
@@ -0,0 +1,55 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.dto.TransactionPageDto;
+import com.lifeflow.bank.dto.TransactionQueryRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drill-down по истории: AND / OR / NOT фильтры считаются операциями над битмапами
+ * (SegmentBitmapIndex), в транзакции превращается только запрошенная страница.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionQueryService {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final SegmentStore segmentStore;
+
+    private final Map<String, SegmentBitmapIndex> indexes = new ConcurrentHashMap<>();
+
+    public TransactionPageDto query(String username, TransactionQueryRequest req) {
+        long start = System.nanoTime();
+
+        SegmentBitmapIndex index = indexes.computeIfAbsent(
+                EnrolledAccounts.normalize(username), u -> new SegmentBitmapIndex());
+        index.catchUp(segmentStore.segments(username));
+
+        int page = req.page() == null ? 0 : Math.max(0, req.page());
+        int size = req.size() == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(1, req.size()), MAX_PAGE_SIZE);
+
+        RoaringBitmap rows = index.evaluate(req.filter());
+        // long: page * size в int переполняется на больших номерах страниц
+        var items = index.page(rows, (long) page * size, size);
+
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        log.info("TransactionQueryService: {} → {} rows in {} ms", username, rows.getLongCardinality(), millis);
+
+        return TransactionPageDto.builder()
+                .total(rows.getLongCardinality())
+                .page(page)
+                .size(size)
+                .items(items)
+                .queryMillis(millis)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.dto.TransactionSearchDto;
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Полнотекстовый поиск по истории ("koshi", "apple.com") через TrigramIndex.
+ *
+ * Индекс в памяти строится по сегментам (SegmentListener): при старте — общим проходом
+ * SegmentStore, дальше пополняется каждым новым сегментом. Журнал не читается.
+ */
+@Service
+@Slf4j
+public class TransactionSearchService implements SegmentListener {
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    private final Map<String, TrigramIndex> byUser = new ConcurrentHashMap<>();
+
+    @Override
+    public void onSegment(String username, SegmentReader segment) {
+        indexFor(username).add(segment);
+    }
+
+    public TransactionSearchDto search(String username, String query, boolean prefix, Integer limit) {
+        long start = System.nanoTime();
+        int max = limit == null ? DEFAULT_LIMIT : Math.min(Math.max(1, limit), MAX_LIMIT);
+
+        TrigramIndex index = byUser.get(EnrolledAccounts.normalize(username));
+        long[] total = {0};
+        List<BankTransaction> items = index == null ? List.of() : index.search(query, prefix, max, total);
+
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        log.info("TransactionSearchService: '{}' for {} → {} matches in {} ms", query, username, total[0], millis);
+
+        return TransactionSearchDto.builder()
+                .query(query)
+                .total(total[0])
+                .items(items)
+                .queryMillis(millis)
+                .build();
+    }
+
+    private TrigramIndex indexFor(String username) {
+        return byUser.computeIfAbsent(EnrolledAccounts.normalize(username), u -> new TrigramIndex());
+    }
+}
@@ -0,0 +1,118 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.model.BankTransaction;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Триграммный инвертированный индекс по описанию + контрагенту транзакций одного пользователя.
+ *
+ * Текст нормализуется (нижний регистр, без диакритики, всё кроме букв/цифр/.@&- → пробел)
+ * и обрамляется пробелами, так что триграммы вида " ko" помечают начало слова:
+ *  - substring "oshi"  → пересечение списков "osh" ∩ "shi";
+ *  - prefix    "kos"   → пересечение " ko" ∩ "kos" (только начала слов).
+ * Списки документов — RoaringBitmap, пересечение не зависит от длины истории линейно.
+ * Кандидаты после пересечения проверяются по нормализованному тексту (триграммы могут стоять не подряд).
+ *
+ * Документ — номер строки в сегментах пользователя (SegmentRows): в куче только списки, текст
+ * кандидатов и найденные транзакции читаются из отображённых сегментов.
+ */
+final class TrigramIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_TOKEN = Pattern.compile("[^\\p{L}\\p{N}.@&-]+");
+
+    private final SegmentRows rows = new SegmentRows();
+    private final Map<Long, RoaringBitmap> postings = new HashMap<>();
+
+    synchronized void add(SegmentReader seg) {
+        int base = rows.add(seg);
+        for (int i = 0, n = seg.size(); i < n; i++) {
+            String text = text(seg, i);
+            int row = base + i;
+            for (int k = 0; k + 3 <= text.length(); k++) {
+                postings.computeIfAbsent(trigram(text, k), t -> new RoaringBitmap()).add(row);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return rows.rowCount();
+    }
+
+    /**
+     * Найденные транзакции, новые первыми (не больше limit). total[0] — сколько совпало всего.
+     */
+    synchronized List<BankTransaction> search(String query, boolean prefix, int limit, long[] total) {
+        String q = normalize(query);
+        String needle = prefix ? " " + q : q;
+        if (needle.length() < 3) {
+            throw new IllegalArgumentException("Query is too short: '" + query + "'");
+        }
+
+        RoaringBitmap candidates = null;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            RoaringBitmap list = postings.get(trigram(needle, i));
+            if (list == null) {
+                total[0] = 0;
+                return List.of();
+            }
+            candidates = candidates == null ? list.clone() : RoaringBitmap.and(candidates, list);
+            if (candidates.isEmpty()) {
+                total[0] = 0;
+                return List.of();
+            }
+        }
+
+        // top-limit по дате среди проверенных кандидатов; ключ — (день << 32) | строка
+        PriorityQueue<Long> top = new PriorityQueue<>();
+        long matched = 0;
+        IntIterator it = candidates.getIntIterator();
+        while (it.hasNext()) {
+            int row = it.next();
+            if (!text(rows.segment(row), rows.indexInSegment(row)).contains(needle)) {
+                continue;
+            }
+            matched++;
+            top.add(((long) rows.epochDay(row) << 32) | (row & 0xFFFFFFFFL));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        total[0] = matched;
+
+        List<BankTransaction> out = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            out.add(rows.transaction((int) top.poll().longValue()));
+        }
+        return out.reversed();
+    }
+
+    private static String text(SegmentReader seg, int i) {
+        return " " + normalize(join(seg.description(i), seg.merchant(seg.merchantId(i)))) + " ";
+    }
+
+    static String normalize(String s) {
+        String noMarks = MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        return NON_TOKEN.matcher(noMarks.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static String join(String a, String b) {
+        if (a == null) return b == null ? "" : b;
+        if (b == null) return a;
+        return a + " " + b;
+    }
+}
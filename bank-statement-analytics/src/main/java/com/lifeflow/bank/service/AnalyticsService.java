@@ -1,18 +1,15 @@
 package com.lifeflow.bank.service;
 
+import com.lifeflow.bank.anomaly.SpendingAnomalyDetector;
 import com.lifeflow.bank.dto.AnalyticsSummaryDto;
-import com.lifeflow.bank.dto.CategoryAnalyticsDto;
-import com.lifeflow.bank.dto.SubscriptionDto;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import com.lifeflow.bank.metrics.PipelineStage;
 import com.lifeflow.bank.model.BankTransaction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.*;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -21,8 +18,17 @@ public class AnalyticsService {
 
     private final CategoryClassifier categoryClassifier;
     private final SubscriptionDetector subscriptionDetector;
+    private final SpendingAnomalyDetector anomalyDetector;
+    private final PipelineMetrics metrics;
 
     public AnalyticsSummaryDto analyze(List<BankTransaction> txs) {
+        return analyze(null, txs);
+    }
+
+    /**
+     * То же, плюс необычные траты выписки относительно истории пользователя (если username известен).
+     */
+    public AnalyticsSummaryDto analyze(String username, List<BankTransaction> txs) {
         log.info("Starting analytics on {} raw transactions", txs.size());
 
         txs.stream()
@@ -37,135 +43,54 @@ public class AnalyticsService {
                 ));
 
         // 1) категоризируем
-        txs.forEach(tx -> {
-            var cat = categoryClassifier.classify(tx);
-            tx.setCategoryCode(cat.getCode());          // <= из enum CategoryResult
-            tx.setCategoryName(cat.getDisplayName());   // <= красивое имя для фронта
+        metrics.record(PipelineStage.CLASSIFY, () -> {
+            categoryClassifier.classifyAll(txs);
+            return null;
         });
 
         // 2) ищем подписки
-        subscriptionDetector.markSubscriptions(txs);
+        metrics.record(PipelineStage.SUBSCRIPTIONS, () -> {
+            subscriptionDetector.markSubscriptions(txs);
+            return null;
+        });
 
         // 3) агрегаты
-        BigDecimal totalExp = sum(txs, a -> a.compareTo(BigDecimal.ZERO) < 0).abs();
-        BigDecimal totalInc = sum(txs, a -> a.compareTo(BigDecimal.ZERO) > 0);
-
-        Map<String, List<BankTransaction>> byCat = txs.stream()
-                .filter(t -> t.getAmount().compareTo(BigDecimal.ZERO) < 0)
-                .collect(Collectors.groupingBy(t ->
-                        t.getCategoryCode() != null ? t.getCategoryCode() : "UNC"));
-
-        List<CategoryAnalyticsDto> cats = new ArrayList<>();
-        for (var e : byCat.entrySet()) {
-            BigDecimal sum = e.getValue().stream()
-                    .map(BankTransaction::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add)
-                    .abs();
-
-            double pct = totalExp.signum() == 0
-                    ? 0
-                    : sum.multiply(BigDecimal.valueOf(100))
-                    .divide(totalExp, 2, RoundingMode.HALF_UP)
-                    .doubleValue();
-
-            String name = Optional.ofNullable(e.getValue().get(0).getCategoryName())
-                    .orElse("Без категории");
-
-            cats.add(CategoryAnalyticsDto.builder()
-                    .code(e.getKey())
-                    .name(name)
-                    .amount(sum)
-                    .percentage(pct)
-                    .build());
-        }
+        AnalyticsSummaryDto summary = metrics.record(PipelineStage.AGGREGATE, () -> aggregate(txs));
 
-        // Еда: продукты + доставка + кофе
-        BigDecimal foodExp = sumByCodes(cats,
-                "FOOD_GROCERIES",
-                "FOOD_DELIVERY",
-                "FOOD_COFFEE_SNACKS"
-        );
-
-        // Рестораны отдельно
-        BigDecimal restExp = sumByCodes(cats,
-                "FOOD_RESTAURANT"
-        );
-
-        // Подписки — по флагу isSubscription (его ставит SubscriptionDetector)
-        BigDecimal subsExp = cats.stream()
-                .filter(c -> c.code() != null && c.code().startsWith("SUBSCRIPTION_"))
-                .map(CategoryAnalyticsDto::amount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        List<SubscriptionDto> subsTop = buildSubsTop(txs);
-
-        String insight = "За период расходы " + totalExp +
-                ", доходы " + totalInc +
-                ". Больше всего трат в категории " +
-                cats.stream()
-                        .max(Comparator.comparing(CategoryAnalyticsDto::amount))
-                        .map(CategoryAnalyticsDto::name)
-                        .orElse("нет данных") + ".";
-
-        log.info("Analytics result: totalExpenses={}, totalIncome={}, categories={}",
-                totalExp, totalInc, cats.size());
-
-        return AnalyticsSummaryDto.builder()
-                .totalExpenses(totalExp)
-                .totalIncome(totalInc)
-                .restaurantExpenses(restExp)
-                .foodExpenses(foodExp)
-                .subscriptionsExpenses(subsExp)
-                .categories(cats)
-                .subscriptionsTop(subsTop)
-                .insight(insight)
+        // 4) аномалии — по состоянию детектора до записи этой выписки в журнал
+        return summary.toBuilder()
+                .anomalies(anomalyDetector.score(username, txs))
                 .build();
     }
 
-    private BigDecimal sum(List<BankTransaction> txs, Predicate<BigDecimal> filter) {
-        return txs.stream()
-                .map(BankTransaction::getAmount)
-                .filter(Objects::nonNull)
-                .filter(filter)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Только агрегаты — для уже категоризированных транзакций (например, из TransactionLedger).
+     */
+    public AnalyticsSummaryDto summarize(List<BankTransaction> txs) {
+        return metrics.record(PipelineStage.AGGREGATE, () -> aggregate(txs));
     }
 
-    // Новый helper: суммируем по нескольким кодам категорий
-    private BigDecimal sumByCodes(List<CategoryAnalyticsDto> cats, String... codes) {
-        if (codes == null || codes.length == 0) {
-            return BigDecimal.ZERO;
+    private AnalyticsSummaryDto aggregate(List<BankTransaction> txs) {
+        CategorySummaryBuilder builder = new CategorySummaryBuilder();
+        for (BankTransaction tx : txs) {
+            if (tx.getAmount() == null) {
+                continue;
+            }
+            long cents = TransactionFingerprint.cents(tx.getAmount());
+            if (cents < 0) {
+                builder.expense(tx.getCategoryCode(), tx.getCategoryName(), -cents);
+            } else if (cents > 0) {
+                builder.income(cents);
+            }
+            // Подписки — по флагу isSubscription (его ставит SubscriptionDetector)
+            if (tx.isSubscription()) {
+                builder.subscription(tx.getCounterparty(), Math.abs(cents));
+            }
         }
-        Set<String> allowed = new HashSet<>(Arrays.asList(codes));
-        return cats.stream()
-                .filter(c -> allowed.contains(c.code()))
-                .map(CategoryAnalyticsDto::amount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
+        AnalyticsSummaryDto summary = builder.build();
 
-    private List<SubscriptionDto> buildSubsTop(List<BankTransaction> txs) {
-        return txs.stream()
-                .filter(BankTransaction::isSubscription)
-                .collect(Collectors.groupingBy(
-                        t -> Optional.ofNullable(t.getCounterparty()).orElse("Unknown")
-                ))
-                .entrySet().stream()
-                .map(e -> {
-                    BigDecimal sum = e.getValue().stream()
-                            .map(BankTransaction::getAmount)
-                            .map(BigDecimal::abs)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    BigDecimal avg = sum.divide(
-                            BigDecimal.valueOf(e.getValue().size()),
-                            2, RoundingMode.HALF_UP
-                    );
-                    return SubscriptionDto.builder()
-                            .merchant(e.getKey())
-                            .avgAmount(avg)
-                            .occurrences(e.getValue().size())
-                            .build();
-                })
-                .sorted(Comparator.comparing(SubscriptionDto::avgAmount).reversed())
-                .limit(10)
-                .toList();
+        log.info("Analytics result: totalExpenses={}, totalIncome={}, categories={}",
+                summary.totalExpenses(), summary.totalIncome(), summary.categories().size());
+        return summary;
     }
-}
\ No newline at end of file
+}
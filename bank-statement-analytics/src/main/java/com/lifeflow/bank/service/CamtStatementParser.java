@@ -0,0 +1,255 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Выписка ISO 20022 CAMT.053 (BkToCstmrStmt) → транзакции.
+ *
+ * Разбор через StAX: документ читается одним проходом, в памяти — только текущая запись Ntry
+ * и стек имён элементов, так что размер выписки на память не влияет (в отличие от DOM).
+ * Namespace-версии (camt.053.001.02 ... .08) не различаем — смотрим только на local name.
+ *
+ *  Stmt/FrToDt/FrDtTm, ToDtTm       — период выписки
+ *  Ntry/Amt[@Ccy], CdtDbtInd         — сумма и знак (DBIT = расход)
+ *  Ntry/BookgDt/Dt|DtTm (ValDt)      — дата проводки
+ *  RltdPties/Cdtr|Dbtr/(Pty/)Nm      — контрагент (для расхода — получатель, для дохода — плательщик)
+ *  RmtInf/Ustrd, AddtlNtryInf        — описание
+ */
+@Component
+@Slf4j
+public class CamtStatementParser {
+
+    private static final XMLInputFactory XML_FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        // выписки приходят из почты — никаких DTD и внешних сущностей (XXE)
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return f;
+    }
+
+    /** Поля текущей записи Ntry. */
+    private static final class Entry {
+        BigDecimal amount;
+        String currency;
+        boolean debit;
+        LocalDate bookingDate;
+        LocalDate valueDate;
+        String creditorName;
+        String debtorName;
+        StringBuilder remittance;
+        String additionalInfo;
+    }
+
+    public TatraStatementParser.Result parse(InputStream xml) {
+        List<BankTransaction> txs = new ArrayList<>();
+        LocalDate from = null;
+        LocalDate to = null;
+
+        XMLStreamReader r = null;
+        try {
+            r = XML_FACTORY.createXMLStreamReader(xml);
+
+            Deque<String> path = new ArrayDeque<>();
+            Entry entry = null;
+
+            while (r.hasNext()) {
+                int ev = r.next();
+
+                if (ev == XMLStreamConstants.START_ELEMENT) {
+                    String name = r.getLocalName();
+                    String parent = path.peek();
+
+                    if ("Ntry".equals(name)) {
+                        entry = new Entry();
+                    } else if (entry == null && "FrToDt".equals(parent)) {
+                        // период: берём самый широкий, если в документе несколько Stmt
+                        LocalDate d = parseDate(r.getElementText());
+                        if ("FrDtTm".equals(name) || "FrDt".equals(name)) {
+                            from = from == null || d.isBefore(from) ? d : from;
+                        } else if ("ToDtTm".equals(name) || "ToDt".equals(name)) {
+                            to = to == null || d.isAfter(to) ? d : to;
+                        }
+                        continue; // getElementText уже съел закрывающий тег
+                    } else if (entry != null && readEntryField(r, name, parent, path, entry)) {
+                        continue;
+                    }
+
+                    path.push(name);
+
+                } else if (ev == XMLStreamConstants.END_ELEMENT) {
+                    String name = path.pop();
+                    if ("Ntry".equals(name) && entry != null) {
+                        BankTransaction tx = toTransaction(entry);
+                        if (tx != null) {
+                            txs.add(tx);
+                        }
+                        entry = null;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            log.error("CamtStatementParser: malformed CAMT.053 document", e);
+            throw new RuntimeException("CAMT.053 parse error", e);
+        } finally {
+            closeQuietly(r);
+        }
+
+        log.info("CamtStatementParser: parsed {} transactions, period {} - {}", txs.size(), from, to);
+
+        return TatraStatementParser.Result.builder()
+                .periodFrom(from)
+                .periodTo(to)
+                .transactions(txs)
+                .build();
+    }
+
+    /**
+     * true — элемент прочитан целиком (getElementText), в стек его класть не нужно.
+     */
+    private boolean readEntryField(XMLStreamReader r, String name, String parent,
+                                   Deque<String> path, Entry entry) throws XMLStreamException {
+        switch (name) {
+            case "Amt" -> {
+                // Amt есть и глубже (TxDtls/AmtDtls) — нужна только сумма самой записи
+                if (!"Ntry".equals(parent)) {
+                    return false;
+                }
+                entry.currency = r.getAttributeValue(null, "Ccy");
+                entry.amount = new BigDecimal(r.getElementText().trim());
+                return true;
+            }
+            case "CdtDbtInd" -> {
+                if (!"Ntry".equals(parent)) {
+                    return false;
+                }
+                entry.debit = "DBIT".equals(r.getElementText().trim());
+                return true;
+            }
+            case "Dt", "DtTm" -> {
+                if ("BookgDt".equals(parent)) {
+                    entry.bookingDate = parseDate(r.getElementText());
+                    return true;
+                }
+                if ("ValDt".equals(parent)) {
+                    entry.valueDate = parseDate(r.getElementText());
+                    return true;
+                }
+                return false;
+            }
+            case "Nm" -> {
+                String party = nearestParty(path);
+                if (party == null) {
+                    return false;
+                }
+                String value = r.getElementText().trim();
+                if ("Cdtr".equals(party)) {
+                    entry.creditorName = entry.creditorName == null ? value : entry.creditorName;
+                } else {
+                    entry.debtorName = entry.debtorName == null ? value : entry.debtorName;
+                }
+                return true;
+            }
+            case "Ustrd" -> {
+                String value = r.getElementText().trim();
+                if (entry.remittance == null) {
+                    entry.remittance = new StringBuilder(value);
+                } else {
+                    entry.remittance.append(' ').append(value);
+                }
+                return true;
+            }
+            case "AddtlNtryInf" -> {
+                entry.additionalInfo = r.getElementText().trim();
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Cdtr / Dbtr внутри RltdPties (в версии .08 имя лежит в Cdtr/Pty/Nm). Счета (CdtrAcct и т.п.) не берём.
+     */
+    private String nearestParty(Deque<String> path) {
+        boolean inRelatedParties = path.contains("RltdPties");
+        if (!inRelatedParties) {
+            return null;
+        }
+        for (String el : path) { // от ближайшего предка к корню
+            if ("Cdtr".equals(el) || "Dbtr".equals(el)) {
+                return el;
+            }
+            if ("RltdPties".equals(el)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private BankTransaction toTransaction(Entry e) {
+        LocalDate date = e.bookingDate != null ? e.bookingDate : e.valueDate;
+        if (e.amount == null || date == null) {
+            log.warn("CamtStatementParser: entry without amount or date, skipping");
+            return null;
+        }
+
+        String counterparty = e.debit ? e.creditorName : e.debtorName;
+        String description;
+        if (e.additionalInfo != null && e.remittance != null) {
+            description = e.additionalInfo + " " + e.remittance;
+        } else if (e.additionalInfo != null) {
+            description = e.additionalInfo;
+        } else if (e.remittance != null) {
+            description = e.remittance.toString();
+        } else {
+            description = counterparty;
+        }
+
+        return BankTransaction.builder()
+                .bookedAt(date.atStartOfDay().atOffset(ZoneOffset.UTC))
+                .amount(e.debit ? e.amount.negate() : e.amount)
+                .currency(e.currency != null ? e.currency : "EUR")
+                .description(description)
+                .counterparty(counterparty)
+                .subscription(false)
+                .regular(false)
+                .build();
+    }
+
+    /**
+     * ISODate (2025-10-01) или ISODateTime (2025-10-01T00:00:00+02:00) — нужна только дата.
+     */
+    private static LocalDate parseDate(String raw) {
+        String s = raw.trim();
+        return LocalDate.parse(s.length() > 10 ? s.substring(0, 10) : s);
+    }
+
+    private static void closeQuietly(XMLStreamReader r) {
+        if (r == null) {
+            return;
+        }
+        try {
+            r.close();
+        } catch (XMLStreamException ignored) {
+        }
+    }
+}
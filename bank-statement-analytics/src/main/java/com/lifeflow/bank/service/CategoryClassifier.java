@@ -1,17 +1,49 @@
 package com.lifeflow.bank.service;
 
+import com.lifeflow.bank.jfr.ClassifyEvent;
+import com.lifeflow.bank.merchant.MerchantKnowledgeBase;
 import com.lifeflow.bank.model.BankTransaction;
 import com.lifeflow.bank.model.CategoryResult;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Locale;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class CategoryClassifier {
 
+    private final MerchantKnowledgeBase merchantKb;
+
+    /**
+     * Категоризирует все транзакции выписки и проставляет categoryCode / categoryName.
+     */
+    public void classifyAll(List<BankTransaction> txs) {
+        ClassifyEvent event = new ClassifyEvent();
+        event.begin();
+
+        int other = 0;
+        for (BankTransaction tx : txs) {
+            CategoryResult cat = classify(tx);
+            tx.setCategoryCode(cat.getCode());          // <= из enum CategoryResult
+            tx.setCategoryName(cat.getDisplayName());   // <= красивое имя для фронта
+            if (cat == CategoryResult.OTHER) {
+                other++;
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.transactionCount = txs.size();
+            event.otherCount = other;
+            event.commit();
+        }
+    }
+
     public CategoryResult classify(BankTransaction tx) {
         // Собираем весь текст, по которому будем искать ключевые слова
         String text = ((tx.getDescription() == null ? "" : tx.getDescription()) + " " +
@@ -25,7 +57,13 @@ public class CategoryClassifier {
             return classifyIncome(text);
         }
 
-        // 2. Если <= 0 → расход → смотрим по категориям
+        // 2. Если <= 0 → расход. Сначала точное совпадение мерчанта по справочнику (если подключён)
+        int slot = merchantKb.lookup(tx.getCounterparty());
+        if (slot >= 0) {
+            return merchantKb.category(slot);
+        }
+
+        // 3. Иначе — ключевые слова по категориям
 
         // ======================
         // ЕДА / ПРОДУКТЫ / РЕСТОРАНЫ
@@ -0,0 +1,138 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.dto.CategoryAnalyticsDto;
+import com.lifeflow.bank.dto.SubscriptionDto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Общий последний шаг сводки: суммы по категориям и подпискам (в центах) → AnalyticsSummaryDto.
+ *
+ * Накапливать можно как угодно — по BankTransaction (AnalyticsService) или прямо по записям
+ * сегментов (SegmentAnalytics); проценты, «еда / рестораны / подписки», топ подписок и текст
+ * инсайта считаются здесь, в одном месте.
+ */
+public final class CategorySummaryBuilder {
+
+    public static final String UNCATEGORIZED = "UNC";
+
+    private static final String UNCATEGORIZED_NAME = "Без категории";
+    private static final Set<String> FOOD_CODES = Set.of("FOOD_GROCERIES", "FOOD_DELIVERY", "FOOD_COFFEE_SNACKS");
+    private static final String RESTAURANT_CODE = "FOOD_RESTAURANT";
+    private static final String SUBSCRIPTION_PREFIX = "SUBSCRIPTION_";
+    private static final int SUBSCRIPTIONS_TOP = 10;
+
+    /** Расход по категории: сумма центов и первое встретившееся имя. */
+    private static final class CategoryTotal {
+        long cents;
+        String name;
+    }
+
+    private long expenseCents;
+    private long incomeCents;
+    private final Map<String, CategoryTotal> expenseByCategory = new HashMap<>();
+    private final Map<String, long[]> subscriptionsByMerchant = new HashMap<>(); // [сумма |центов|, количество]
+
+    /**
+     * Расход (cents > 0 — модуль суммы). code == null — без категории.
+     */
+    public CategorySummaryBuilder expense(String code, String name, long cents) {
+        expenseCents += cents;
+        CategoryTotal total = expenseByCategory.computeIfAbsent(code == null ? UNCATEGORIZED : code, c -> new CategoryTotal());
+        total.cents += cents;
+        if (total.name == null) {
+            total.name = name;
+        }
+        return this;
+    }
+
+    public CategorySummaryBuilder income(long cents) {
+        incomeCents += cents;
+        return this;
+    }
+
+    /**
+     * Одно списание подписки (absCents — модуль суммы); merchant == null — «Unknown».
+     */
+    public CategorySummaryBuilder subscription(String merchant, long absCents) {
+        long[] acc = subscriptionsByMerchant.computeIfAbsent(merchant == null ? "Unknown" : merchant, m -> new long[2]);
+        acc[0] += absCents;
+        acc[1]++;
+        return this;
+    }
+
+    public AnalyticsSummaryDto build() {
+        BigDecimal totalExp = money(expenseCents);
+        BigDecimal totalInc = money(incomeCents);
+
+        List<CategoryAnalyticsDto> cats = new ArrayList<>(expenseByCategory.size());
+        BigDecimal foodExp = BigDecimal.ZERO;
+        BigDecimal restExp = BigDecimal.ZERO;
+        BigDecimal subsExp = BigDecimal.ZERO;
+        for (var e : expenseByCategory.entrySet()) {
+            String code = e.getKey();
+            BigDecimal sum = money(e.getValue().cents);
+            double pct = totalExp.signum() == 0
+                    ? 0
+                    : sum.multiply(BigDecimal.valueOf(100))
+                    .divide(totalExp, 2, RoundingMode.HALF_UP)
+                    .doubleValue();
+            cats.add(CategoryAnalyticsDto.builder()
+                    .code(code)
+                    .name(e.getValue().name != null ? e.getValue().name : UNCATEGORIZED_NAME)
+                    .amount(sum)
+                    .percentage(pct)
+                    .build());
+
+            // Еда: продукты + доставка + кофе; рестораны отдельно; подписки — по категориям SUBSCRIPTION_*
+            if (FOOD_CODES.contains(code)) {
+                foodExp = foodExp.add(sum);
+            } else if (RESTAURANT_CODE.equals(code)) {
+                restExp = restExp.add(sum);
+            } else if (code.startsWith(SUBSCRIPTION_PREFIX)) {
+                subsExp = subsExp.add(sum);
+            }
+        }
+
+        List<SubscriptionDto> subsTop = subscriptionsByMerchant.entrySet().stream()
+                .map(e -> SubscriptionDto.builder()
+                        .merchant(e.getKey())
+                        .avgAmount(money(e.getValue()[0]).divide(BigDecimal.valueOf(e.getValue()[1]), 2, RoundingMode.HALF_UP))
+                        .occurrences((int) e.getValue()[1])
+                        .build())
+                .sorted(Comparator.comparing(SubscriptionDto::avgAmount).reversed())
+                .limit(SUBSCRIPTIONS_TOP)
+                .toList();
+
+        String insight = "За период расходы " + totalExp +
+                ", доходы " + totalInc +
+                ". Больше всего трат в категории " +
+                cats.stream()
+                        .max(Comparator.comparing(CategoryAnalyticsDto::amount))
+                        .map(CategoryAnalyticsDto::name)
+                        .orElse("нет данных") + ".";
+
+        return AnalyticsSummaryDto.builder()
+                .totalExpenses(totalExp)
+                .totalIncome(totalInc)
+                .restaurantExpenses(restExp)
+                .foodExpenses(foodExp)
+                .subscriptionsExpenses(subsExp)
+                .categories(cats)
+                .subscriptionsTop(subsTop)
+                .insight(insight)
+                .build();
+    }
+
+    private static BigDecimal money(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
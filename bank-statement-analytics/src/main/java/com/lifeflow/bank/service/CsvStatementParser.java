@@ -0,0 +1,373 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CSV-экспорт выписки из интернет-банка → транзакции.
+ *
+ * Колонки ищутся по заголовку (словацкие и английские названия, без учёта регистра и диакритики),
+ * разделитель (; , или таб) — по первой строке. Файл читается построчно, целиком в память не грузится.
+ * Периода в CSV нет — берём min/max дату операций.
+ *
+ * Кодировка: lifeflow.csv.charset, если задана; иначе UTF-8 (с BOM или без), а если начало файла
+ * не декодируется как UTF-8 — windows-1250 (так выгружают словацкие и чешские интернет-банки).
+ */
+@Component
+@Slf4j
+public class CsvStatementParser {
+
+    private static final String[] DATE_COLUMNS = {
+            "datum zauctovania", "datum transakcie", "datum", "booking date", "date"
+    };
+    private static final String[] AMOUNT_COLUMNS = {
+            "suma", "ciastka", "amount"
+    };
+    private static final String[] DEBIT_COLUMNS = {"debet", "debit"};
+    private static final String[] CREDIT_COLUMNS = {"kredit", "credit"};
+    private static final String[] CURRENCY_COLUMNS = {"mena", "currency"};
+    private static final String[] COUNTERPARTY_COLUMNS = {
+            "nazov protistrany", "protistrana", "miesto platby", "obchodnik", "counterparty", "merchant", "payee"
+    };
+    private static final String[] DESCRIPTION_COLUMNS = {
+            "popis transakcie", "popis", "informacia pre prijemcu", "sprava pre prijemcu", "description", "poznamka"
+    };
+
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            DateTimeFormatter.ofPattern("d.M.yyyy"),
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("d/M/yyyy")
+    };
+
+    private static final Charset FALLBACK_CHARSET = Charset.forName("windows-1250");
+    /** Сколько байт начала файла проверяем на валидный UTF-8. */
+    private static final int SNIFF_BYTES = 64 * 1024;
+
+    /** Пусто — определять по содержимому. */
+    @Value("${lifeflow.csv.charset:}")
+    private String charset;
+
+    /** Индексы колонок, -1 — колонки нет. */
+    private record Columns(int date, int amount, int debit, int credit,
+                           int currency, int counterparty, int description) {
+    }
+
+    public TatraStatementParser.Result parse(InputStream csv) {
+        if (charset != null && !charset.isBlank()) {
+            return parse(csv, Charset.forName(charset.trim()));
+        }
+        BufferedInputStream in = new BufferedInputStream(csv, SNIFF_BYTES);
+        try {
+            return parse(in, detectCharset(in));
+        } catch (IOException e) {
+            log.error("CsvStatementParser: failed to read CSV", e);
+            throw new RuntimeException("CSV parse error", e);
+        }
+    }
+
+    public TatraStatementParser.Result parse(InputStream csv, Charset encoding) {
+        List<BankTransaction> txs = new ArrayList<>();
+        LocalDate from = null;
+        LocalDate to = null;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, encoding))) {
+            char delimiter = detectDelimiter(reader);
+
+            List<String> header = readRecord(reader, delimiter);
+            if (header == null) {
+                return emptyResult();
+            }
+            Columns cols = resolveColumns(header);
+            if (cols.date() < 0 || (cols.amount() < 0 && cols.debit() < 0 && cols.credit() < 0)) {
+                log.warn("CsvStatementParser: no date/amount columns in header {}", header);
+                return emptyResult();
+            }
+
+            List<String> row;
+            int line = 1;
+            while ((row = readRecord(reader, delimiter)) != null) {
+                line++;
+                BankTransaction tx = toTransaction(row, cols, line);
+                if (tx == null) {
+                    continue;
+                }
+                txs.add(tx);
+
+                LocalDate d = tx.getBookedAt().toLocalDate();
+                from = from == null || d.isBefore(from) ? d : from;
+                to = to == null || d.isAfter(to) ? d : to;
+            }
+        } catch (IOException e) {
+            log.error("CsvStatementParser: failed to read CSV", e);
+            throw new RuntimeException("CSV parse error", e);
+        }
+
+        log.info("CsvStatementParser: parsed {} transactions, period {} - {}", txs.size(), from, to);
+
+        return TatraStatementParser.Result.builder()
+                .periodFrom(from)
+                .periodTo(to)
+                .transactions(txs)
+                .build();
+    }
+
+    private BankTransaction toTransaction(List<String> row, Columns cols, int line) {
+        LocalDate date = parseDate(cell(row, cols.date()));
+        BigDecimal amount = cols.amount() >= 0
+                ? parseAmount(cell(row, cols.amount()))
+                : debitCredit(cell(row, cols.debit()), cell(row, cols.credit()));
+
+        if (date == null || amount == null) {
+            log.debug("CsvStatementParser: line {} has no date or amount, skipping", line);
+            return null;
+        }
+
+        String currency = cell(row, cols.currency());
+        String counterparty = cell(row, cols.counterparty());
+        String description = cell(row, cols.description());
+
+        return BankTransaction.builder()
+                .bookedAt(date.atStartOfDay().atOffset(ZoneOffset.UTC))
+                .amount(amount)
+                .currency(currency == null ? "EUR" : currency)
+                .description(description != null ? description : counterparty)
+                .counterparty(counterparty)
+                .subscription(false)
+                .regular(false)
+                .build();
+    }
+
+    // ===== Заголовок =====
+
+    private Columns resolveColumns(List<String> header) {
+        List<String> normalized = header.stream().map(CsvStatementParser::normalizeHeader).toList();
+        return new Columns(
+                find(normalized, DATE_COLUMNS),
+                find(normalized, AMOUNT_COLUMNS),
+                find(normalized, DEBIT_COLUMNS),
+                find(normalized, CREDIT_COLUMNS),
+                find(normalized, CURRENCY_COLUMNS),
+                find(normalized, COUNTERPARTY_COLUMNS),
+                find(normalized, DESCRIPTION_COLUMNS)
+        );
+    }
+
+    /** Кандидаты — в порядке приоритета; сначала точное совпадение, потом префикс. */
+    private static int find(List<String> header, String[] candidates) {
+        for (String c : candidates) {
+            int idx = header.indexOf(c);
+            if (idx >= 0) {
+                return idx;
+            }
+        }
+        for (String c : candidates) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith(c)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String normalizeHeader(String h) {
+        String s = Normalizer.normalize(h.replace("\uFEFF", "").trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        return s.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    /**
+     * UTF-8, если начало файла декодируется без ошибок (обрезанный на границе символ — не ошибка),
+     * иначе windows-1250. Поток возвращается на начало; BOM снимает normalizeHeader.
+     */
+    static Charset detectCharset(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_BYTES);
+        byte[] head = in.readNBytes(SNIFF_BYTES);
+        in.reset();
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer bytes = ByteBuffer.wrap(head);
+        CharBuffer chars = CharBuffer.allocate(1024);
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, head.length < SNIFF_BYTES);
+            if (result.isError()) {
+                return FALLBACK_CHARSET;
+            }
+            if (result.isUnderflow()) {
+                return StandardCharsets.UTF_8;
+            }
+            chars.clear();
+        }
+    }
+
+    private static char detectDelimiter(BufferedReader reader) throws IOException {
+        reader.mark(64 * 1024);
+        String first = reader.readLine();
+        reader.reset();
+        if (first == null) {
+            return ';';
+        }
+        int semicolons = count(first, ';');
+        int commas = count(first, ',');
+        int tabs = count(first, '\t');
+        if (tabs > semicolons && tabs > commas) {
+            return '\t';
+        }
+        return semicolons >= commas ? ';' : ',';
+    }
+
+    private static int count(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) n++;
+        }
+        return n;
+    }
+
+    // ===== Значения =====
+
+    private static String cell(List<String> row, int idx) {
+        if (idx < 0 || idx >= row.size()) {
+            return null;
+        }
+        String v = row.get(idx).trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    private static LocalDate parseDate(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        // "01.10.2025 12:34" / "2025-10-01T12:34" — время не нужно
+        String s = raw.split("[ T]")[0];
+        for (DateTimeFormatter f : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(s, f);
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * "-10,96", "10.96-", "1 234,56", "1,234.56", "1.234,56", "1,234" → BigDecimal.
+     * Есть оба разделителя — десятичный тот, что стоит последним. Один вид разделителя — десятичный,
+     * только если он встречается один раз и за ним не ровно три цифры (у сумм не больше двух знаков
+     * после запятой, так что "1,234" и "1.234" — это 1234, а не 1,234).
+     */
+    private static BigDecimal parseAmount(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String s = raw.replace(" ", "").replace("\u00A0", "").replace("EUR", "");
+        boolean negative = false;
+        if (s.endsWith("-")) {
+            negative = true;
+            s = s.substring(0, s.length() - 1);
+        }
+        int lastDot = s.lastIndexOf('.');
+        int lastComma = s.lastIndexOf(',');
+        if (lastDot >= 0 && lastComma >= 0) {
+            s = lastComma > lastDot
+                    ? s.replace(".", "").replace(',', '.')
+                    : s.replace(",", "");
+        } else if (lastDot >= 0 || lastComma >= 0) {
+            char sep = lastDot >= 0 ? '.' : ',';
+            int last = Math.max(lastDot, lastComma);
+            boolean grouping = s.indexOf(sep) != last || s.length() - last - 1 == 3;
+            s = grouping ? s.replace(String.valueOf(sep), "") : s.replace(sep, '.');
+        }
+        try {
+            BigDecimal v = new BigDecimal(s);
+            return negative ? v.negate() : v;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static BigDecimal debitCredit(String debit, String credit) {
+        BigDecimal d = parseAmount(debit);
+        if (d != null && d.signum() != 0) {
+            return d.abs().negate();
+        }
+        BigDecimal c = parseAmount(credit);
+        return c == null ? null : c.abs();
+    }
+
+    // ===== Чтение записей (RFC 4180: кавычки, "" внутри, переводы строк в кавычках) =====
+
+    private static List<String> readRecord(BufferedReader reader, char delimiter) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean any = false;
+
+        int ch;
+        while ((ch = reader.read()) != -1) {
+            any = true;
+            char c = (char) ch;
+
+            if (inQuotes) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+
+        if (!any) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static TatraStatementParser.Result emptyResult() {
+        return TatraStatementParser.Result.builder().transactions(List.of()).build();
+    }
+}
@@ -1,18 +1,33 @@
 package com.lifeflow.bank.service;
 
 import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.jfr.ImapFetchEvent;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import com.lifeflow.bank.metrics.PipelineStage;
+import com.lifeflow.bank.metrics.StageTimings;
 import com.lifeflow.bank.model.BankTransaction;
 import jakarta.mail.*;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.search.AndTerm;
+import jakarta.mail.search.ComparisonTerm;
 import jakarta.mail.search.FromTerm;
+import jakarta.mail.search.HeaderTerm;
+import jakarta.mail.search.ReceivedDateTerm;
+import jakarta.mail.search.SearchTerm;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -20,7 +35,20 @@ import java.util.*;
 public class EmailStatementService {
 
     private final PdfStatementService pdfStatementService;
+    private final StructuredStatementService structuredStatementService;
     private final AnalyticsService analyticsService;
+    private final PipelineMetrics metrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PipelineLimits limits;
+
+    /** Отправитель писем с выписками — и для IMAP SEARCH, и для офлайн-загрузки из архивов. */
+    public static final String TATRA_SENDER = "vypisy@tatrabanka.sk";
+
+    /** Дальше 20 лет назад по дате не ищем — дальше только поиск без горизонта. */
+    private static final int MAX_SEARCH_HORIZON_MONTHS = 240;
+
+    /** Письмо с вложением — multipart; IMAP SEARCH HEADER выполняется на сервере. */
+    private static final SearchTerm ATTACHMENT_TERM = new HeaderTerm("Content-Type", "multipart");
 
     // 2) Новый — под конкретного юзера
     public List<AnalyticsSummaryDto> fetchLastStatementsAndLogAnalytics(
@@ -29,67 +57,219 @@ public class EmailStatementService {
             int lastCount,
             String pdfPassword
     ) {
-        String host = "imap.gmail.com";
-        return fetchInternal(host, username, password, lastCount, pdfPassword);
+        return fetchStatements(username, password, lastCount, pdfPassword).summaries();
     }
 
-    // 3) Общая реализация
-    private List<AnalyticsSummaryDto> fetchInternal(
-            String imapHost,
+    /**
+     * То же, плюс отпечаток набора писем с того же SEARCH — для ETag без второй IMAP-сессии.
+     */
+    public FetchedStatements fetchStatements(String username, String password, int lastCount, String pdfPassword) {
+        try {
+            String host = "imap.gmail.com";
+            return limits.withImapConnection(() -> fetchInternal(host, username, password, lastCount, pdfPassword));
+        } catch (Exception e) {
+            log.error("EmailStatementService: error while fetching statements from email", e);
+            return FetchedStatements.empty();
+        }
+    }
+
+    /**
+     * То же самое, но ошибки IMAP пробрасываются — для раннеров, которым нужен retry.
+     */
+    public List<AnalyticsSummaryDto> refreshStatements(
             String username,
             String password,
             int lastCount,
             String pdfPassword
-    ) {
-        List<AnalyticsSummaryDto> result = new ArrayList<>();
+    ) throws MessagingException {
+        String host = "imap.gmail.com";
+        return limits.withImapConnection(() -> fetchInternal(host, username, password, lastCount, pdfPassword))
+                .summaries();
+    }
+
+    /**
+     * Отпечаток набора писем с выписками: папка, её UIDVALIDITY и UID писем-кандидатов
+     * (тот же SEARCH, что у полного прогона). Только SEARCH + FETCH UID — ничего не скачивается
+     * и не разбирается. Новая выписка или пересоздание папки меняют отпечаток.
+     * Нужен лишь для проверки If-None-Match; полный прогон снимает его сам (fetchStatements).
+     *
+     * null — писем нет или сервер не умеет UID (тогда условный ответ невозможен).
+     */
+    public String statementSetFingerprint(String username, String password, int lastCount) throws MessagingException {
+        String host = "imap.gmail.com";
+        return limits.withImapConnection(() -> fingerprintInternal(host, username, password, lastCount));
+    }
 
+    private String fingerprintInternal(String imapHost, String username, String password, int lastCount)
+            throws MessagingException {
         Properties props = new Properties();
         props.put("mail.store.protocol", "imaps");
-        props.put("mail.imaps.partialfetch", "true");
 
-        try {
-            Session session = Session.getInstance(props);
-            try (Store store = session.getStore("imaps")) {
-                log.info("EmailStatementService: connecting to IMAP {} as {}", imapHost, username);
+        Session session = Session.getInstance(props);
+        try (Store store = session.getStore("imaps")) {
+            metrics.record(PipelineStage.IMAP_CONNECT, () -> {
                 store.connect(imapHost, username, password);
+                return null;
+            });
+            Folder folder = metrics.record(PipelineStage.FOLDER_RESOLVE, () -> {
+                Folder resolved = resolveAllMailFolder(store);
+                resolved.open(Folder.READ_ONLY);
+                return resolved;
+            });
+            try {
+                if (!(folder instanceof UIDFolder) || folder.getMessageCount() == 0) {
+                    return null;
+                }
+                Message[] candidates = metrics.record(PipelineStage.SEARCH, () -> searchStatements(folder, lastCount)).found();
+                if (candidates.length == 0) {
+                    return null;
+                }
+                FetchProfile fp = new FetchProfile();
+                fp.add(UIDFolder.FetchProfileItem.UID);
+                folder.fetch(candidates, fp);
+                return statementSet(username, folder, candidates);
+            } finally {
+                folder.close(false);
+            }
+        }
+    }
 
-                Folder folder = resolveAllMailFolder(store);
-                log.info("EmailStatementService: using folder '{}'", folder.getFullName());
-                folder.open(Folder.READ_ONLY);
+    /**
+     * Папка/UIDVALIDITY/отсортированные UID кандидатов. UID уже должны быть получены FETCH'ем.
+     * null — сервер не умеет UID.
+     */
+    private String statementSet(String username, Folder folder, Message[] candidates) throws MessagingException {
+        if (!(folder instanceof UIDFolder uidFolder)) {
+            return null;
+        }
+        long[] uids = new long[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            uids[i] = uidFolder.getUID(candidates[i]);
+        }
+        Arrays.sort(uids);
 
-                int total = folder.getMessageCount();
-                if (total == 0) {
-                    log.info("EmailStatementService: folder '{}' is empty", folder.getFullName());
-                    folder.close(false);
-                    return result;
-                }
+        StringBuilder sb = new StringBuilder(folder.getFullName())
+                .append('/').append(uidFolder.getUIDValidity()).append('/');
+        for (long uid : uids) {
+            sb.append(uid).append(',');
+        }
+        log.info("EmailStatementService: statement set of {} in '{}' = {} candidates",
+                username, folder.getFullName(), uids.length);
+        return sb.toString();
+    }
 
-                Message[] candidateMessages;
+    /**
+     * Обработать одно уже полученное письмо (например, пришедшее через IMAP IDLE).
+     * Результат уходит в StatementIngestedEvent; null — в письме нет новой выписки.
+     */
+    public AnalyticsSummaryDto ingestMessage(String username, Message msg, String pdfPassword) {
+        return ingestMessage(username, msg, pdfPassword, new StatementDeduplicator());
+    }
 
-                try {
-                    FromTerm fromTerm = new FromTerm(new InternetAddress("vypisy@tatrabanka.sk"));
-                    log.info("EmailStatementService: IMAP SEARCH by sender 'vypisy@tatrabanka.sk'");
-                    candidateMessages = folder.search(fromTerm);
-                    log.info("EmailStatementService: IMAP SEARCH finished, found {} messages", candidateMessages.length);
-                } catch (MessagingException searchEx) {
-                    log.warn("EmailStatementService: IMAP SEARCH failed, fallback to manual scan", searchEx);
+    /**
+     * Для пачки писем (офлайн-загрузка): общий dedup отсекает копии одной выписки во всём архиве.
+     */
+    public AnalyticsSummaryDto ingestMessage(String username, Message msg, String pdfPassword, StatementDeduplicator dedup) {
+        ProcessedStatement processed = processMessage(msg, new FetchContext(username, pdfPassword, dedup));
+        return processed == null ? null : processed.summary();
+    }
 
-                    int windowSize = Math.min(2000, total);
-                    int start = total - windowSize + 1;
-                    if (start < 1) start = 1;
+    /**
+     * Письмо от отправителя выписок Tatra banky.
+     */
+    public boolean isStatementMessage(Message msg) {
+        String from = safeGetFrom(msg);
+        return from != null && from.toLowerCase(Locale.ROOT).contains(TATRA_SENDER);
+    }
 
-                    log.info("EmailStatementService: fallback scan, fetching messages {}..{} (total = {})",
-                            start, total, total);
-                    Message[] window = folder.getMessages(start, total);
+    // 3) Общая реализация
+    private FetchedStatements fetchInternal(
+            String imapHost,
+            String username,
+            String password,
+            int lastCount,
+            String pdfPassword
+    ) throws MessagingException {
+        Properties props = new Properties();
+        props.put("mail.store.protocol", "imaps");
+        props.put("mail.imaps.partialfetch", "true");
 
-                    candidateMessages = filterBySender(window, "vypisy@tatrabanka.sk");
-                    log.info("EmailStatementService: fallback scan finished, found {} messages", candidateMessages.length);
-                }
+        Session session = Session.getInstance(props);
+        try (Store store = session.getStore("imaps")) {
+            log.info("EmailStatementService: connecting to IMAP {} as {}", imapHost, username);
+            metrics.record(PipelineStage.IMAP_CONNECT, () -> {
+                store.connect(imapHost, username, password);
+                return null;
+            });
+
+            Folder folder = metrics.record(PipelineStage.FOLDER_RESOLVE, () -> {
+                Folder resolved = resolveAllMailFolder(store);
+                log.info("EmailStatementService: using folder '{}'", resolved.getFullName());
+                resolved.open(Folder.READ_ONLY);
+                return resolved;
+            });
+
+            int total = folder.getMessageCount();
+            if (total == 0) {
+                log.info("EmailStatementService: folder '{}' is empty", folder.getFullName());
+                folder.close(false);
+                return FetchedStatements.empty();
+            }
+
+            SearchWindow window;
+            boolean searched = true;
+
+            try {
+                window = metrics.record(PipelineStage.SEARCH, () -> searchStatements(folder, lastCount));
+            } catch (MessagingException searchEx) {
+                log.warn("EmailStatementService: IMAP SEARCH failed, fallback to manual scan", searchEx);
+                searched = false;
+
+                int windowSize = Math.min(2000, total);
+                int start = total - windowSize + 1;
+                if (start < 1) start = 1;
+
+                log.info("EmailStatementService: fallback scan, fetching messages {}..{} (total = {})",
+                        start, total, total);
+                int from = start;
+                Message[] scanned = metrics.record(PipelineStage.SEARCH, () -> {
+                    Message[] messages = folder.getMessages(from, total);
+                    return filterBySender(messages, TATRA_SENDER);
+                });
+                log.info("EmailStatementService: fallback scan finished, found {} messages", scanned.length);
+                window = new SearchWindow(scanned, 0);
+            }
 
-                if (candidateMessages.length == 0) {
-                    log.info("EmailStatementService: no messages found from 'vypisy@tatrabanka.sk'");
-                    folder.close(false);
-                    return result;
+            if (window.found().length == 0) {
+                log.info("EmailStatementService: no messages found from '{}'", TATRA_SENDER);
+                folder.close(false);
+                return FetchedStatements.empty();
+            }
+
+            FetchContext ctx = new FetchContext(username, pdfPassword, new StatementDeduplicator());
+            Coverage coverage = new Coverage();
+            Set<Integer> seen = new HashSet<>();
+            String statementSet = null;
+
+            // Окно, где писем хватает по счёту, может не покрыть lastCount месяцев: среди писем отправителя
+            // бывают уведомления без выписки. Тогда ищем дальше в прошлое и обрабатываем только новые письма.
+            for (boolean first = true; ; first = false) {
+                Message[] candidateMessages = Arrays.stream(window.found())
+                        .filter(m -> seen.add(m.getMessageNumber()))
+                        .toArray(Message[]::new);
+
+                // даты писем (и UID для отпечатка набора) одним FETCH, а не запросом на каждое письмо при сортировке
+                FetchProfile fp = new FetchProfile();
+                fp.add(FetchProfile.Item.ENVELOPE);
+                if (first && searched && folder instanceof UIDFolder) {
+                    fp.add(UIDFolder.FetchProfileItem.UID);
+                }
+                if (candidateMessages.length > 0) {
+                    folder.fetch(candidateMessages, fp);
+                }
+                if (first && searched) {
+                    // отпечаток — с первого окна, как у statementSetFingerprint; ручной скан даёт другой набор
+                    statementSet = statementSet(username, folder, candidateMessages);
                 }
 
                 Arrays.sort(candidateMessages, Comparator.comparing((Message m) -> {
@@ -100,48 +280,212 @@ public class EmailStatementService {
                     }
                 }, Comparator.nullsLast(Date::compareTo)).reversed());
 
-                int toProcess = Math.min(lastCount, candidateMessages.length);
-                log.info("EmailStatementService: will process {} latest Tatra statements (out of {})",
-                        toProcess, candidateMessages.length);
-
-                List<AnalyticsSummaryDto> summaries = Arrays.stream(candidateMessages)
-                        .limit(toProcess)
-                        .parallel()
-                        .map(msg -> {
-                            String subject = safeGetSubject(msg);
-                            try {
-                                log.info("EmailStatementService: processing statement (parallel): '{}'", subject);
-
-                                List<BankTransaction> txs = extractStatementTransactionsFromMessage(msg, pdfPassword);
-                                if (txs.isEmpty()) {
-                                    log.info("EmailStatementService: message '{}' has no PDF statement attachments", subject);
-                                    return null;
-                                }
-
-                                AnalyticsSummaryDto summary = analyticsService.analyze(txs);
-                                log.info("EmailStatementService: analytics for '{}': {}", subject, summary);
-                                return summary;
-                            } catch (Exception ex) {
-                                log.error("EmailStatementService: error while processing message '{}'", subject, ex);
-                                return null;
-                            }
-                        })
-                        .filter(Objects::nonNull)
-                        .toList();
-
-                result.addAll(summaries);
+                log.info("EmailStatementService: need {} latest Tatra statements (candidates: {})",
+                        lastCount, candidateMessages.length);
+                processUntilCovered(candidateMessages, lastCount, ctx, coverage);
 
-                folder.close(false);
+                if (coverage.covered() >= lastCount || window.wholeMailbox()) {
+                    break;
+                }
+                log.info("EmailStatementService: {} of {} months covered within {} months, searching further back",
+                        coverage.covered(), lastCount, window.monthsBack());
+                SearchWindow current = window;
+                window = metrics.record(PipelineStage.SEARCH, () -> widen(folder, current));
             }
-        } catch (Exception e) {
-            log.error("EmailStatementService: error while fetching statements from email", e);
+
+            folder.close(false);
+            List<AnalyticsSummaryDto> summaries = coverage.summaries;
+            return new FetchedStatements(
+                    summaries.size() > lastCount ? summaries.subList(0, lastCount) : summaries, statementSet);
         }
+    }
 
-        return result;
+    /**
+     * Обрабатываем письма (от новых к старым) пачками, пока выписки не покроют lastCount месяцев.
+     *
+     * Месяц берём из периода выписки (Obdobie od .. do ..). Письма без выписки
+     * (уведомления от того же отправителя) просто пропускаются, и берётся следующая пачка.
+     * Покрытие копится в coverage — следующее, более старое окно поиска продолжает с того же места.
+     */
+    private void processUntilCovered(Message[] sortedCandidates, int lastCount, FetchContext ctx, Coverage coverage) {
+        // воркеры parallel-стрима пишут время этапов в разбивку текущего запроса
+        StageTimings timings = StageTimings.current();
+
+        int offset = 0;
+        while (offset < sortedCandidates.length && coverage.covered() < lastCount) {
+            int batch = Math.min(lastCount - coverage.covered(), sortedCandidates.length - offset);
+            log.info("EmailStatementService: processing candidates {}..{} (parallel)", offset, offset + batch - 1);
+
+            List<ProcessedStatement> processed = Arrays.stream(sortedCandidates, offset, offset + batch)
+                    .parallel()
+                    .map(msg -> StageTimings.with(timings, () -> processMessage(msg, ctx)))
+                    .filter(Objects::nonNull)
+                    .toList();
+            offset += batch;
+
+            processed.forEach(coverage::add);
+        }
+
+        log.info("EmailStatementService: {} statements processed, months covered: {}, scanned {} of {} candidates",
+                coverage.summaries.size(), coverage.covered(), offset, sortedCandidates.length);
+    }
+
+    /**
+     * Серверный поиск: отправитель И получено не раньше горизонта И multipart (есть вложение).
+     *
+     * Горизонт считаем от lastCount (выписка приходит раз в месяц) и расширяем вдвое,
+     * пока писем не хватает. На ящике с выписками за 10 лет сервер вернёт
+     * только последние месяцы, а не всю историю. Хватает ли их по месяцам, видно только
+     * после разбора — тогда fetchInternal расширяет окно дальше (widen).
+     */
+    private SearchWindow searchStatements(Folder folder, int lastCount) throws MessagingException {
+        // +1 месяц: выписка за месяц M приходит в начале M+1
+        for (int monthsBack = lastCount + 1; monthsBack <= MAX_SEARCH_HORIZON_MONTHS; monthsBack *= 2) {
+            Message[] found = searchSince(folder, monthsBack);
+            if (found.length >= lastCount) {
+                return new SearchWindow(found, monthsBack);
+            }
+        }
+        return new SearchWindow(searchAll(folder), 0);
+    }
+
+    /**
+     * Следующее окно: горизонт вдвое дальше, за пределом MAX_SEARCH_HORIZON_MONTHS — весь ящик.
+     */
+    private SearchWindow widen(Folder folder, SearchWindow window) throws MessagingException {
+        int monthsBack = window.monthsBack() * 2;
+        if (monthsBack <= MAX_SEARCH_HORIZON_MONTHS) {
+            return new SearchWindow(searchSince(folder, monthsBack), monthsBack);
+        }
+        return new SearchWindow(searchAll(folder), 0);
+    }
+
+    private Message[] searchSince(Folder folder, int monthsBack) throws MessagingException {
+        Date horizon = Date.from(LocalDate.now()
+                .minusMonths(monthsBack)
+                .withDayOfMonth(1)
+                .atStartOfDay(ZoneOffset.UTC)
+                .toInstant());
+
+        SearchTerm term = new AndTerm(new SearchTerm[]{
+                new FromTerm(new InternetAddress(TATRA_SENDER)),
+                new ReceivedDateTerm(ComparisonTerm.GE, horizon),
+                ATTACHMENT_TERM
+        });
+
+        Message[] found = folder.search(term);
+        log.info("EmailStatementService: IMAP SEARCH from '{}' since {} ({} months) → {} messages",
+                TATRA_SENDER, horizon, monthsBack, found.length);
+        return found;
+    }
+
+    /**
+     * История короче горизонта — ищем без даты.
+     */
+    private Message[] searchAll(Folder folder) throws MessagingException {
+        InternetAddress sender = new InternetAddress(TATRA_SENDER);
+        Message[] found = folder.search(new AndTerm(new FromTerm(sender), ATTACHMENT_TERM));
+        if (found.length == 0) {
+            // не все серверы умеют SEARCH HEADER — тогда только по отправителю
+            found = folder.search(new FromTerm(sender));
+        }
+        log.info("EmailStatementService: IMAP SEARCH from '{}' without horizon → {} messages",
+                TATRA_SENDER, found.length);
+        return found;
     }
 
     // ---------- helpers ----------
 
+    /**
+     * Всё, что нужно для обработки писем одного прогона.
+     */
+    private record FetchContext(String username, String pdfPassword, StatementDeduplicator dedup) {
+    }
+
+    /**
+     * Сводка по одному письму + период выписки (periodTo == null, если периода в тексте не было).
+     */
+    private record ProcessedStatement(AnalyticsSummaryDto summary, LocalDate periodFrom, LocalDate periodTo) {
+    }
+
+    /**
+     * Результат серверного поиска. monthsBack == 0 — поиск без горизонта (или ручной скан), дальше некуда.
+     */
+    private record SearchWindow(Message[] found, int monthsBack) {
+
+        boolean wholeMailbox() {
+            return monthsBack == 0;
+        }
+    }
+
+    /**
+     * Сколько месяцев уже покрыто выписками одного прогона. Выписка без периода считается за месяц.
+     */
+    private static final class Coverage {
+        final List<AnalyticsSummaryDto> summaries = new ArrayList<>();
+        final Set<YearMonth> months = new HashSet<>();
+        int withoutPeriod;
+
+        void add(ProcessedStatement st) {
+            summaries.add(st.summary());
+            if (st.periodTo() != null) {
+                months.add(YearMonth.from(st.periodTo()));
+            } else {
+                withoutPeriod++;
+            }
+        }
+
+        int covered() {
+            return months.size() + withoutPeriod;
+        }
+    }
+
+    /**
+     * Одно письмо → одна сводка. null, если в письме нет выписки или она не разобралась.
+     */
+    private ProcessedStatement processMessage(Message msg, FetchContext ctx) {
+        String subject = safeGetSubject(msg);
+        try {
+            log.info("EmailStatementService: processing statement (parallel): '{}'", subject);
+
+            List<TatraStatementParser.Result> statements = extractStatementsFromMessage(msg, ctx.pdfPassword(), ctx.dedup());
+            List<BankTransaction> txs = statements.stream()
+                    .flatMap(r -> r.getTransactions().stream())
+                    .collect(Collectors.toCollection(ArrayList::new));
+            if (statements.isEmpty()) {
+                log.info("EmailStatementService: message '{}' has no new statement attachments", subject);
+                metrics.statementSkipped("no_pdf");
+                return null;
+            }
+            if (txs.isEmpty()) {
+                log.info("EmailStatementService: message '{}' has no new transactions", subject);
+                metrics.statementSkipped("no_transactions");
+                return null;
+            }
+
+            LocalDate periodFrom = statements.stream()
+                    .map(TatraStatementParser.Result::getPeriodFrom)
+                    .filter(Objects::nonNull)
+                    .min(Comparator.naturalOrder())
+                    .orElse(null);
+            LocalDate periodTo = statements.stream()
+                    .map(TatraStatementParser.Result::getPeriodTo)
+                    .filter(Objects::nonNull)
+                    .max(Comparator.naturalOrder())
+                    .orElse(null);
+
+            AnalyticsSummaryDto summary = analyticsService.analyze(ctx.username(), txs);
+            log.info("EmailStatementService: analytics for '{}' ({} - {}): {}", subject, periodFrom, periodTo, summary);
+
+            eventPublisher.publishEvent(new StatementIngestedEvent(ctx.username(), periodFrom, periodTo, txs, summary));
+            return new ProcessedStatement(summary, periodFrom, periodTo);
+        } catch (Exception ex) {
+            log.error("EmailStatementService: error while processing message '{}'", subject, ex);
+            metrics.statementSkipped("error");
+            return null;
+        }
+    }
+
     /**
      * Фолбэк-фильтр по отправителю, если IMAP SEARCH не сработал.
      */
@@ -218,14 +562,73 @@ public class EmailStatementService {
     }
 
     /**
-     * Достаём все PDF-вложения из письма и парсим их как Tatra-выписки.
+     * Достаём все вложения-выписки из письма и парсим по формату:
+     * PDF — через PDFBox и TatraStatementParser, CAMT.053 / CSV — потоковыми парсерами.
      */
-    private List<BankTransaction> extractStatementTransactionsFromMessage(
+    private List<TatraStatementParser.Result> extractStatementsFromMessage(
             Message msg,
-            String pdfPassword
+            String pdfPassword,
+            StatementDeduplicator dedup
     ) throws Exception {
-        List<BankTransaction> allTxs = new ArrayList<>();
+        List<TatraStatementParser.Result> statements = new ArrayList<>();
+
+        for (StatementAttachment attachment : downloadStatementAttachments(msg)) {
+            if (!dedup.claimContent(attachment.content())) {
+                log.info("EmailStatementService: '{}' is an exact copy of an already processed statement, skipping",
+                        attachment.fileName());
+                metrics.statementSkipped("duplicate_file");
+                continue;
+            }
+            try (InputStream is = new ByteArrayInputStream(attachment.content())) {
+                TatraStatementParser.Result parsed = attachment.format() == StatementFormat.PDF
+                        ? pdfStatementService.parseTatraStatement(is, pdfPassword, dedup)
+                        : structuredStatementService.parse(attachment.format(), is, dedup);
+                if (parsed == null) {
+                    log.info("EmailStatementService: '{}' covers an already processed period, skipping",
+                            attachment.fileName());
+                    continue;
+                }
+                log.info("EmailStatementService: parsed {} transactions from '{}'",
+                        parsed.getTransactions().size(), attachment.fileName());
+                statements.add(parsed);
+            }
+        }
+
+        return statements;
+    }
+
+    private record StatementAttachment(String fileName, StatementFormat format, byte[] content) {
+    }
 
+    /**
+     * Скачиваем письмо и его вложения-выписки (PDF, XML, CSV) целиком (этап download), парсинг — отдельно.
+     */
+    private List<StatementAttachment> downloadStatementAttachments(Message msg) throws Exception {
+        List<StatementAttachment> attachments = new ArrayList<>();
+
+        ImapFetchEvent event = new ImapFetchEvent();
+        event.begin();
+
+        // один замер DOWNLOAD на письмо: структура (getContent) + байты всех вложений
+        long downloadStart = System.nanoTime();
+        try {
+            readAttachments(msg, attachments);
+        } finally {
+            metrics.recordNanos(PipelineStage.DOWNLOAD, System.nanoTime() - downloadStart);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.messageSize = Math.max(msg.getSize(), 0);
+            event.attachmentCount = attachments.size();
+            event.attachmentBytes = attachments.stream().mapToLong(a -> a.content().length).sum();
+            event.commit();
+        }
+
+        return attachments;
+    }
+
+    private void readAttachments(Message msg, List<StatementAttachment> attachments) throws Exception {
         Object content = msg.getContent();
         if (content instanceof Multipart multipart) {
             int count = multipart.getCount();
@@ -238,25 +641,26 @@ public class EmailStatementService {
                 }
 
                 String decodedName = MimeUtility.decodeText(fileName);
-                String lowerName = decodedName.toLowerCase(Locale.ROOT);
 
-                if (!lowerName.endsWith(".pdf")) {
+                StatementFormat format = StatementFormat.detect(decodedName, bp.getContentType());
+                if (format == null) {
                     continue;
                 }
 
-                log.info("EmailStatementService: found PDF attachment '{}'", decodedName);
-                try (InputStream is = bp.getInputStream()) {
-                    // 🔴 ВАЖНО: тут нужно, чтобы PdfStatementService умел принимать пароль
-                    List<BankTransaction> txs = pdfStatementService.parseTatraStatementPdf(is, pdfPassword);
-                    log.info("EmailStatementService: parsed {} transactions from '{}'",
-                            txs.size(), decodedName);
-                    allTxs.addAll(txs);
+                log.info("EmailStatementService: found {} attachment '{}'", format, decodedName);
+                byte[] bytes;
+                try (InputStream raw = bp.getInputStream()) {
+                    bytes = raw.readAllBytes();
+                }
+                metrics.attachmentDownloaded(bytes.length);
+                if (format.confirm(bytes) == null) {
+                    log.info("EmailStatementService: '{}' is XML without the camt.053 namespace, skipping", decodedName);
+                    continue;
                 }
+                attachments.add(new StatementAttachment(decodedName, format, bytes));
             }
         } else {
             log.debug("EmailStatementService: message content is not Multipart, skipping attachments");
         }
-
-        return allTxs;
     }
-}
\ No newline at end of file
+}
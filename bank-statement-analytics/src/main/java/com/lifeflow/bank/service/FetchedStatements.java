@@ -0,0 +1,20 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+
+import java.util.List;
+
+/**
+ * Результат прогона по ящику: сводки выписок и отпечаток набора писем-кандидатов,
+ * снятый с того же SEARCH (см. EmailStatementService.statementSetFingerprint).
+ * statementSet == null — писем нет, ошибка IMAP или сервер не умеет UID.
+ */
+public record FetchedStatements(
+        List<AnalyticsSummaryDto> summaries,
+        String statementSet
+) {
+
+    public static FetchedStatements empty() {
+        return new FetchedStatements(List.of(), null);
+    }
+}
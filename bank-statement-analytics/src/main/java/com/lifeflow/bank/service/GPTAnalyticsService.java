@@ -1,6 +1,13 @@
 package com.lifeflow.bank.service;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lifeflow.bank.jfr.GptCallEvent;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import com.lifeflow.bank.metrics.PipelineStage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.MediaType;
@@ -8,12 +15,14 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSink;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
-import java.util.Map;
 
 
 @Service
@@ -25,8 +34,11 @@ public class GPTAnalyticsService {
     private String apiKey;
 
     private final ObjectMapper objectMapper;
+    private final PipelineMetrics metrics;
 
     private static final String GPT_URL = "https://api.openai.com/v1/chat/completions";
+    private static final String MODEL = "gpt-4.1-mini";
+    private static final MediaType JSON = MediaType.parse("application/json");
 
     private final OkHttpClient client = new OkHttpClient();
 
@@ -97,38 +109,34 @@ Rules:
 - Tone: friendly, concise, professional.
 """;
 
+    /**
+     * Версия промпта и модели — входит в ETag AI-аналитики: поменялся промпт → старые ответы не «свежие».
+     */
+    public static final String PROMPT_VERSION = RequestCoalescer.sha256(MODEL + '\u0000' + PROMPT).substring(0, 16);
+
     public String generateAnalytics(Object summariesJson) {
         try {
-            // summariesJson — это уже List<AnalyticsSummaryDto> из контроллера
+            // summariesJson — это уже List<AnalyticsSummaryDto> из контроллера.
+            // В API content — строка, так что сводки сериализуются в текст один раз и пишутся в тело как строка
             String jsonInput = objectMapper.writeValueAsString(summariesJson);
             log.info("GPTAnalyticsService: sending {} chars to GPT", jsonInput.length());
 
-            // Собираем body как объект, а не руками строкой
-            Map<String, Object> systemMessage = new HashMap<>();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", PROMPT);
-
-            Map<String, Object> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", jsonInput);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "gpt-4.1-mini");
-            requestBody.put("messages", List.of(systemMessage, userMessage));
-            requestBody.put("temperature", 0);
-
-            String bodyJson = objectMapper.writeValueAsString(requestBody);
-
-            MediaType JSON = MediaType.parse("application/json");
-            RequestBody requestBodyOk = RequestBody.create(bodyJson, JSON);
+            ChatRequestBody requestBody = new ChatRequestBody(jsonInput);
 
             Request request = new Request.Builder()
                     .url(GPT_URL)
                     .addHeader("Authorization", "Bearer " + apiKey)
-                    .post(requestBodyOk)
+                    .post(requestBody)
                     .build();
 
+            GptCallEvent event = new GptCallEvent();
+            event.months = summariesJson instanceof List<?> list ? list.size() : 1;
+            event.begin();
+
+            long gptStart = System.nanoTime();
             try (Response response = client.newCall(request).execute()) {
+                event.bytesSent = requestBody.bytesWritten;
+                event.statusCode = response.code();
                 if (!response.isSuccessful()) {
                     String errorBody = response.body() != null ? response.body().string() : "";
                     throw new IllegalStateException(
@@ -136,15 +144,17 @@ Rules:
                     );
                 }
 
-                String responseJson = response.body().string();
-
-                String result = objectMapper.readTree(responseJson)
-                        .get("choices").get(0)
-                        .get("message").get("content")
-                        .asText();
+                String result;
+                try (JsonParser parser = objectMapper.getFactory().createParser(response.body().byteStream())) {
+                    result = readMessageContent(parser);
+                    event.bytesReceived = parser.currentLocation().getByteOffset();
+                }
 
                 log.info("GPTAnalyticsService: got response {} chars", result.length());
                 return result;
+            } finally {
+                metrics.recordNanos(PipelineStage.GPT, System.nanoTime() - gptStart);
+                event.commit();
             }
 
         } catch (Exception e) {
@@ -152,4 +162,98 @@ Rules:
             throw new RuntimeException("GPT analytics failed", e);
         }
     }
+
+    /**
+     * Тело chat/completions пишется JsonGenerator'ом прямо в sink OkHttp — без Map'ов и без строки всего тела.
+     * Повторяемое: OkHttp может вызвать writeTo ещё раз при ретрае.
+     */
+    private final class ChatRequestBody extends RequestBody {
+
+        private final String userContent;
+        private volatile long bytesWritten;
+
+        ChatRequestBody(String userContent) {
+            this.userContent = userContent;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            CountingOutputStream out = new CountingOutputStream(sink.outputStream());
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // sink закрывает сам OkHttp
+                gen.writeStartObject();
+                gen.writeStringField("model", MODEL);
+                gen.writeNumberField("temperature", 0);
+                gen.writeArrayFieldStart("messages");
+                writeMessage(gen, "system", PROMPT);
+                writeMessage(gen, "user", userContent);
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+            bytesWritten = out.count;
+        }
+    }
+
+    private static void writeMessage(JsonGenerator gen, String role, String content) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("role", role);
+        gen.writeStringField("content", content);
+        gen.writeEndObject();
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * choices[0].message.content потоковым парсером: ненужные поля пропускаются (skipChildren),
+     * дерево ответа не строится, а после content остаток ответа не читается вовсе.
+     */
+    static String readMessageContent(JsonParser p) throws IOException {
+        if (p.nextToken() == JsonToken.START_OBJECT
+                && seekField(p, "choices") && p.currentToken() == JsonToken.START_ARRAY
+                && p.nextToken() == JsonToken.START_OBJECT
+                && seekField(p, "message") && p.currentToken() == JsonToken.START_OBJECT
+                && seekField(p, "content") && p.currentToken() == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+        throw new IllegalStateException("GPT response has no choices[0].message.content");
+    }
+
+    /**
+     * Ищет поле в текущем объекте (парсер стоит на START_OBJECT или на поле внутри него).
+     * true — парсер стоит на значении поля; false — объект закончился.
+     */
+    private static boolean seekField(JsonParser p, String name) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (name.equals(field)) {
+                return true;
+            }
+            p.skipChildren();
+        }
+        return false;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.config.PdfExtractionProperties;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Извлечение текста длинной выписки по диапазонам страниц в несколько потоков.
+ *
+ * PDDocument не потокобезопасен, поэтому каждый поток открывает свою копию документа
+ * (loader — та же расшифровка, что и у основного документа) и гоняет свой PDFTextStripper
+ * по setStartPage/setEndPage. Первый диапазон обрабатывается в вызывающем потоке на уже открытом документе.
+ * Куски склеиваются в порядке страниц:
+ *  - TEXT: операция, начатая на одной странице и продолженная на следующей, склеивается
+ *    так же, как при последовательном getText — парсер видит одну непрерывную ленту строк;
+ *  - LAYOUT: строки продолжения в начале диапазона (leadingLines) дописываются к последней операции
+ *    предыдущего диапазона, если та не закрыта концом таблицы — результат тот же, что и в одном потоке.
+ *
+ * Короткие выписки (меньше parallelMinPages) извлекаются как раньше, в одном потоке.
+ *
+ * Каждая копия — это повторная расшифровка на отдельном ядре, поэтому доп. потоки идут в тот же лимит
+ * lifeflow.pipeline.max-pdf-decodes: вызывающий уже держит слот (PipelineLimits.withPdfDecode), остальные
+ * берутся без ожидания, сколько свободно. Нет свободных — диапазоны не режем, извлекаем в одном потоке.
+ */
+@Component
+@Slf4j
+public class PageParallelExtractor {
+
+    /** Меньше страниц на поток нет смысла: повторное открытие документа дороже. */
+    private static final int MIN_PAGES_PER_WORKER = 4;
+
+    @FunctionalInterface
+    private interface RangeTask<R> {
+        R apply(PDDocument doc, int startPage, int endPage) throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final PdfExtractionProperties properties;
+    private final TatraStatementParser parser;
+    private final PipelineLimits limits;
+
+    public PageParallelExtractor(@Qualifier("pdfPageExecutor") ExecutorService executor,
+                                 PdfExtractionProperties properties,
+                                 TatraStatementParser parser,
+                                 PipelineLimits limits) {
+        this.executor = executor;
+        this.properties = properties;
+        this.parser = parser;
+        this.limits = limits;
+    }
+
+    public String text(PDDocument doc,
+                       PipelineMetrics.StageCallable<PDDocument, IOException> loader) throws IOException {
+        List<String> chunks = perRange(doc, loader, (d, start, end) -> {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(start);
+            stripper.setEndPage(end);
+            return stripper.getText(d);
+        });
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+
+        StringBuilder text = new StringBuilder(chunks.stream().mapToInt(String::length).sum() + chunks.size());
+        for (String chunk : chunks) {
+            text.append(chunk);
+            // страница могла кончиться без перевода строки — не даём склеиться двум строкам
+            if (!chunk.isEmpty() && chunk.charAt(chunk.length() - 1) != '\n') {
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    public TatraLayoutExtractor.Extraction layout(PDDocument doc,
+                                                  PipelineMetrics.StageCallable<PDDocument, IOException> loader) throws IOException {
+        List<TatraLayoutExtractor.Extraction> chunks = perRange(doc, loader,
+                (d, start, end) -> TatraLayoutExtractor.extract(d, properties.layout(), parser, start, end));
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        return stitch(chunks);
+    }
+
+    /**
+     * Склейка диапазонов по порядку страниц: операция, чей блок перешёл через границу диапазона,
+     * получает строки из leadingLines следующего диапазона.
+     */
+    static TatraLayoutExtractor.Extraction stitch(List<TatraLayoutExtractor.Extraction> chunks) {
+        List<TatraLayoutExtractor.TableRow> rows = new ArrayList<>();
+        int charCount = 0;
+        boolean open = false;
+        for (TatraLayoutExtractor.Extraction chunk : chunks) {
+            if (open && !rows.isEmpty() && !chunk.leadingLines().isEmpty()) {
+                int last = rows.size() - 1;
+                rows.set(last, rows.get(last).withMoreLines(chunk.leadingLines()));
+            }
+            rows.addAll(chunk.rows());
+            charCount += chunk.charCount();
+            // диапазон без операций продолжает (или закрывает) операцию предыдущего
+            open = chunk.rows().isEmpty() ? open && chunk.endsOpen() : chunk.endsOpen();
+        }
+        // период — в шапке первой страницы
+        TatraLayoutExtractor.Extraction first = chunks.stream()
+                .filter(c -> c.periodFrom() != null)
+                .findFirst()
+                .orElse(chunks.get(0));
+        return new TatraLayoutExtractor.Extraction(first.periodFrom(), first.periodTo(), rows, charCount,
+                chunks.get(0).leadingLines(), open);
+    }
+
+    private <R> List<R> perRange(PDDocument doc,
+                                 PipelineMetrics.StageCallable<PDDocument, IOException> loader,
+                                 RangeTask<R> task) throws IOException {
+        int pages = doc.getNumberOfPages();
+        int wanted = workersFor(pages);
+        int extra = wanted <= 1 ? 0 : limits.tryAcquirePdfDecodes(wanted - 1);
+        try {
+            if (extra == 0) {
+                return List.of(task.apply(doc, 1, pages));
+            }
+            return splitRanges(doc, loader, task, pages, 1 + extra);
+        } finally {
+            limits.releasePdfDecodes(extra);
+        }
+    }
+
+    private <R> List<R> splitRanges(PDDocument doc,
+                                    PipelineMetrics.StageCallable<PDDocument, IOException> loader,
+                                    RangeTask<R> task, int pages, int workers) throws IOException {
+        int perWorker = (pages + workers - 1) / workers;
+        log.info("PageParallelExtractor: {} pages → {} ranges of up to {} pages", pages, workers, perWorker);
+
+        List<Future<R>> futures = new ArrayList<>(workers - 1);
+        for (int start = 1 + perWorker; start <= pages; start += perWorker) {
+            int from = start;
+            int to = Math.min(pages, start + perWorker - 1);
+            futures.add(executor.submit(() -> {
+                try (PDDocument copy = loader.call()) {
+                    return task.apply(copy, from, to);
+                }
+            }));
+        }
+
+        List<R> results = new ArrayList<>(workers);
+        try {
+            results.add(task.apply(doc, 1, Math.min(pages, perWorker)));
+            for (Future<R> f : futures) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting pages", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Page range extraction failed", e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return results;
+    }
+
+    private int workersFor(int pages) {
+        if (pages < properties.parallelMinPages()) {
+            return 1;
+        }
+        return Math.max(1, Math.min(properties.effectivePageWorkers(), pages / MIN_PAGES_PER_WORKER));
+    }
+}
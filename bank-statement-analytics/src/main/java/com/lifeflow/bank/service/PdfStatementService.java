@@ -1,13 +1,17 @@
 package com.lifeflow.bank.service;
 
+import com.lifeflow.bank.config.PdfExtractionProperties;
+import com.lifeflow.bank.jfr.PdfDecodeEvent;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import com.lifeflow.bank.metrics.PipelineStage;
 import com.lifeflow.bank.model.BankTransaction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -18,19 +22,93 @@ import java.util.List;
 public class PdfStatementService {
 
     private final TatraStatementParser parser;
+    private final PipelineMetrics metrics;
+    private final PipelineLimits limits;
+    private final PdfExtractionProperties extraction;
+    private final PageParallelExtractor pageExtractor;
 
     /**
-     * Расшифровать PDF и распарсить транзакции. Ничего не сохраняем.
+     * Результат извлечения: либо полный текст (режим TEXT), либо строки таблицы (режим LAYOUT).
+     */
+    private record Extracted(String text, TatraLayoutExtractor.Extraction table) {
+        int length() {
+            return table != null ? table.charCount() : text.length();
+        }
+    }
+
+    /**
+     * Расшифровать PDF и распарсить транзакции. Сам сервис ничего не сохраняет —
+     * в журнал (TransactionLedger) выписки попадают через StatementIngestedEvent.
      */
     public List<BankTransaction> parseTatraStatementPdf(InputStream pdfStream, String pdfPassword) {
-        try (PDDocument doc = load(pdfStream, pdfPassword)) {
+        return parseTatraStatement(pdfStream, pdfPassword).getTransactions();
+    }
+
+    /**
+     * То же, но вместе с периодом выписки (Obdobie od .. do ..).
+     */
+    public TatraStatementParser.Result parseTatraStatement(InputStream pdfStream, String pdfPassword) {
+        return parseTatraStatement(pdfStream, pdfPassword, null);
+    }
+
+    /**
+     * С отсевом дублей: если период выписки уже покрыт, транзакции не разбираем
+     * и возвращаем null. Повторы транзакций из других выписок убираются.
+     */
+    public TatraStatementParser.Result parseTatraStatement(InputStream pdfStream,
+                                                           String pdfPassword,
+                                                           StatementDeduplicator dedup) {
+        // байты нужны повторно: длинную выписку каждый поток извлечения открывает сам
+        byte[] pdf = readAll(pdfStream);
+        // расшифровка + извлечение текста грузят CPU — общий лимит на узел
+        return limits.withPdfDecode(() -> decodeAndParse(() -> load(pdf, pdfPassword), dedup));
+    }
+
+    /**
+     * PDF из файла на диске (загрузки через multipart): PDFBox читает файл напрямую,
+     * не копируя его целиком в память, как для InputStream.
+     */
+    public TatraStatementParser.Result parseTatraStatement(File pdfFile, String pdfPassword) {
+        return limits.withPdfDecode(() -> decodeAndParse(() -> load(pdfFile, pdfPassword), null));
+    }
+
+    private TatraStatementParser.Result decodeAndParse(PipelineMetrics.StageCallable<PDDocument, IOException> loader,
+                                                       StatementDeduplicator dedup) {
+        PdfDecodeEvent decodeEvent = new PdfDecodeEvent();
+        decodeEvent.begin();
+
+        try (PDDocument doc = metrics.record(PipelineStage.PDF_LOAD, loader)) {
 
             log.info("PDF loaded (encrypted={}, pages={})", doc.isEncrypted(), doc.getNumberOfPages());
 
-            String text = new PDFTextStripper().getText(doc);
+            Extracted extracted = extract(doc, loader);
+
+            decodeEvent.end();
+            if (decodeEvent.shouldCommit()) {
+                decodeEvent.pageCount = doc.getNumberOfPages();
+                decodeEvent.passwordProtected = doc.isEncrypted();
+                decodeEvent.textLength = extracted.length();
+                decodeEvent.commit();
+            }
+
+            TatraStatementParser.Result parsed = metrics.record(PipelineStage.PARSE, () -> extracted.table() != null
+                    ? parser.parseLayout(extracted.table())
+                    : parser.parse(extracted.text()));
+
+            if (dedup == null) {
+                metrics.statementParsed(parsed.getTransactions().size());
+                return parsed;
+            }
+            // период занимаем только после удачного разбора: битая первая копия не отсекает целую вторую
+            if (!dedup.claimPeriod(parsed.getPeriodFrom(), parsed.getPeriodTo())) {
+                metrics.statementSkipped("duplicate_period");
+                return null;
+            }
+            metrics.statementParsed(parsed.getTransactions().size());
 
-            TatraStatementParser.Result parsed = parser.parse(text);
-            return parsed.getTransactions();
+            return parsed.toBuilder()
+                    .transactions(dedup.retainNew(parsed.getTransactions()))
+                    .build();
 
         } catch (IOException e) {
             log.error("Failed to process PDF", e);
@@ -38,12 +116,44 @@ public class PdfStatementService {
         }
     }
 
-    private PDDocument load(InputStream is, String password) throws IOException {
+    private Extracted extract(PDDocument doc,
+                              PipelineMetrics.StageCallable<PDDocument, IOException> loader) throws IOException {
+        if (extraction.mode() == PdfExtractionProperties.Mode.LAYOUT) {
+            TatraLayoutExtractor.Extraction table = metrics.record(PipelineStage.TEXT_EXTRACT,
+                    () -> pageExtractor.layout(doc, loader));
+            if (!table.rows().isEmpty()) {
+                return new Extracted(null, table);
+            }
+            log.warn("PdfStatementService: layout extraction found no transaction rows, falling back to full text");
+        }
+        String text = metrics.record(PipelineStage.TEXT_EXTRACT, () -> pageExtractor.text(doc, loader));
+        return new Extracted(text, null);
+    }
+
+    private byte[] readAll(InputStream is) {
+        try {
+            return is.readAllBytes();
+        } catch (IOException e) {
+            log.error("Failed to read PDF", e);
+            throw new RuntimeException("PDF read error", e);
+        }
+    }
+
+    private PDDocument load(byte[] pdf, String password) throws IOException {
+        if (password == null || password.isBlank()) {
+            log.warn("User PDF password is empty → opening without password");
+            return PDDocument.load(pdf);
+        }
+        log.info("Opening PDF with password of length {}", password.length());
+        return PDDocument.load(pdf, password);
+    }
+
+    private PDDocument load(File file, String password) throws IOException {
         if (password == null || password.isBlank()) {
             log.warn("User PDF password is empty → opening without password");
-            return PDDocument.load(is);
+            return PDDocument.load(file);
         }
         log.info("Opening PDF with password of length {}", password.length());
-        return PDDocument.load(is, password);
+        return PDDocument.load(file, password);
     }
 }
\ No newline at end of file
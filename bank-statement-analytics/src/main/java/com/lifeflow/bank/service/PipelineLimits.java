@@ -0,0 +1,87 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.config.PipelineProperties;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Глобальные ограничители на узел: одновременные IMAP-сессии и одновременные расшифровки PDF.
+ *
+ * Общие для API, фоновых раннеров и загрузок — ночное обновление не должно
+ * открыть сотню соединений к Gmail или занять все ядра PDFBox-ом.
+ */
+@Component
+@Slf4j
+public class PipelineLimits {
+
+    private final Semaphore imapConnections;
+    private final Semaphore pdfDecodes;
+
+    public PipelineLimits(PipelineProperties properties, MeterRegistry registry) {
+        this.imapConnections = new Semaphore(properties.maxImapConnections(), true);
+        this.pdfDecodes = new Semaphore(properties.effectivePdfDecodes(), true);
+
+        Gauge.builder("lifeflow.bank.limits.imap.waiting", imapConnections, Semaphore::getQueueLength)
+                .description("Threads waiting for an IMAP connection slot")
+                .register(registry);
+        Gauge.builder("lifeflow.bank.limits.pdf.waiting", pdfDecodes, Semaphore::getQueueLength)
+                .description("Threads waiting for a PDF decode slot")
+                .register(registry);
+
+        log.info("PipelineLimits: maxImapConnections={}, maxPdfDecodes={}",
+                properties.maxImapConnections(), properties.effectivePdfDecodes());
+    }
+
+    public <T, E extends Exception> T withImapConnection(PipelineMetrics.StageCallable<T, E> body) throws E {
+        return withPermit(imapConnections, body);
+    }
+
+    public <T, E extends Exception> T withPdfDecode(PipelineMetrics.StageCallable<T, E> body) throws E {
+        return withPermit(pdfDecodes, body);
+    }
+
+    /**
+     * Дополнительные слоты расшифровки — без ожидания, сколько из wanted свободно сейчас (с учётом очереди).
+     * Для потоков, которые открывают свою копию уже расшифрованного документа (PageParallelExtractor):
+     * они тоже грузят ядро, поэтому идут в тот же лимит. Вернуть — releasePdfDecodes(granted).
+     */
+    public int tryAcquirePdfDecodes(int wanted) {
+        int granted = 0;
+        try {
+            // tryAcquire(0, ...) соблюдает честную очередь, tryAcquire() — нет
+            while (granted < wanted && pdfDecodes.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                granted++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return granted;
+    }
+
+    public void releasePdfDecodes(int permits) {
+        if (permits > 0) {
+            pdfDecodes.release(permits);
+        }
+    }
+
+    private static <T, E extends Exception> T withPermit(Semaphore semaphore,
+                                                         PipelineMetrics.StageCallable<T, E> body) throws E {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a pipeline slot", e);
+        }
+        try {
+            return body.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight для тяжёлых запросов аналитики.
+ *
+ * Если одинаковый запрос (тот же ящик, тот же lastCount, те же пароли) уже выполняется,
+ * новый вызов не открывает свою IMAP-сессию и не платит за свой GPT-запрос,
+ * а ждёт результат уже идущего вычисления. Запись удаляется сразу после завершения,
+ * так что это не кэш — следующий запрос после завершения считается заново.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RequestCoalescer {
+
+    public record Key(String username, int lastCount, String credentialsHash) {
+    }
+
+    private final PipelineMetrics metrics;
+
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Ключ строится из хэша паролей, а не из самих паролей: сами секреты в map не держим.
+     * Пароль от Gmail тоже входит в хэш — иначе запрос с неверным паролем
+     * мог бы «прицепиться» к чужому успешному вычислению.
+     */
+    public static Key key(String username, int lastCount, String password, String pdfPassword) {
+        return new Key(EnrolledAccounts.normalize(username), lastCount, hashCredentials(password, pdfPassword));
+    }
+
+    public static String hashCredentials(String password, String pdfPassword) {
+        return sha256(password + '\u0000' + pdfPassword);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Key key, Supplier<T> computation) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            log.info("RequestCoalescer: joining in-flight computation for {} (lastCount={})",
+                    key.username(), key.lastCount());
+            metrics.cacheHit("coalesced");
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        try {
+            T value = computation.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException re) {
+            return re;
+        }
+        if (cause instanceof Error err) {
+            throw err;
+        }
+        return e;
+    }
+
+    public static String sha256(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Отсев повторных и пересекающихся выписок в рамках одного прогона.
+ *
+ * Повторно присланные выписки, пересланные копии и одно и то же письмо в нескольких папках
+ * раньше парсились и считались дважды. Порядок проверок — от дешёвой к дорогой:
+ *  1) тот же PDF байт-в-байт — отбрасываем до расшифровки;
+ *  2) период выписки уже покрыт — отбрасываем до учёта транзакций; период занимает только
+ *     успешно разобранная выписка, иначе битая первая копия отсекла бы целую вторую;
+ *  3) после разбора убираем транзакции, которые уже пришли из другой выписки (по отпечатку).
+ *
+ * Создаётся на один прогон, методы потокобезопасны (выписки обрабатываются параллельно).
+ */
+@Slf4j
+public class StatementDeduplicator {
+
+    private record Period(LocalDate from, LocalDate to) {
+        boolean covers(LocalDate otherFrom, LocalDate otherTo) {
+            return !from.isAfter(otherFrom) && !to.isBefore(otherTo);
+        }
+    }
+
+    private final Set<String> contentHashes = new HashSet<>();
+    private final List<Period> claimedPeriods = new ArrayList<>();
+    private final Map<Long, Integer> acceptedFingerprints = new HashMap<>();
+
+    /**
+     * false — точно такой же файл уже был.
+     */
+    public synchronized boolean claimContent(byte[] content) {
+        return contentHashes.add(sha256(content));
+    }
+
+    /**
+     * false — период [from, to] уже целиком покрыт ранее принятой выпиской.
+     * Выписки без периода не отсекаем — их ловит проверка по транзакциям.
+     */
+    public synchronized boolean claimPeriod(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            return true;
+        }
+        for (Period p : claimedPeriods) {
+            if (p.covers(from, to)) {
+                log.info("StatementDeduplicator: period {} - {} already covered by {} - {}", from, to, p.from(), p.to());
+                return false;
+            }
+        }
+        claimedPeriods.add(new Period(from, to));
+        return true;
+    }
+
+    /**
+     * Оставляет только транзакции, которых ещё не было в других выписках.
+     *
+     * Повторы внутри одной выписки сохраняются: если в ней 2 одинаковых кофе,
+     * а в ранее принятой — 1, то из этой выписки останется 1.
+     */
+    public synchronized List<BankTransaction> retainNew(List<BankTransaction> statementTxs) {
+        Map<Long, Integer> seenInStatement = new HashMap<>();
+        List<BankTransaction> out = new ArrayList<>(statementTxs.size());
+
+        for (BankTransaction tx : statementTxs) {
+            long fp = TransactionFingerprint.of(tx);
+            int occurrence = seenInStatement.merge(fp, 1, Integer::sum);
+            if (occurrence > acceptedFingerprints.getOrDefault(fp, 0)) {
+                out.add(tx);
+            }
+        }
+        seenInStatement.forEach((fp, count) -> acceptedFingerprints.merge(fp, count, Math::max));
+
+        int dropped = statementTxs.size() - out.size();
+        if (dropped > 0) {
+            log.info("StatementDeduplicator: dropped {} duplicate transactions (of {})", dropped, statementTxs.size());
+        }
+        return out;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return new String(digest, StandardCharsets.ISO_8859_1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
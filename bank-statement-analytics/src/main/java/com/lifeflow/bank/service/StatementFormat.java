@@ -0,0 +1,69 @@
+package com.lifeflow.bank.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Формат вложения с выпиской. Структурированные форматы (CAMT.053, CSV) разбираются
+ * потоково и без PDFBox — если банк их присылает, это самый дешёвый путь.
+ */
+public enum StatementFormat {
+    PDF,
+    CAMT053,
+    CSV;
+
+    /** Namespace корневого элемента выписки: urn:iso:std:iso:20022:tech:xsd:camt.053.001.xx */
+    private static final byte[] CAMT053_NAMESPACE =
+            "urn:iso:std:iso:20022:tech:xsd:camt.053".getBytes(StandardCharsets.US_ASCII);
+    /** Объявление namespace стоит на корневом элементе — дальше начала документа не ищем. */
+    private static final int SNIFF_BYTES = 8 * 1024;
+
+    /**
+     * Формат по имени файла, при неоднозначности — по MIME-типу части письма.
+     * null — вложение не похоже на выписку. Для XML это только кандидат — см. confirm.
+     */
+    public static StatementFormat detect(String fileName, String contentType) {
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+
+        if (name.endsWith(".pdf") || type.startsWith("application/pdf")) {
+            return PDF;
+        }
+        if (name.endsWith(".xml") || type.startsWith("application/xml") || type.startsWith("text/xml")) {
+            return CAMT053;
+        }
+        if (name.endsWith(".csv") || type.startsWith("text/csv")) {
+            return CSV;
+        }
+        return null;
+    }
+
+    /**
+     * Уточнение по содержимому: XML считается CAMT.053, только если в начале документа объявлен
+     * namespace camt.053 (camt.052/054, pain.001 и прочий XML — не выписка). null — не выписка.
+     */
+    public StatementFormat confirm(byte[] content) {
+        if (this != CAMT053) {
+            return this;
+        }
+        return indexOf(content, Math.min(content.length, SNIFF_BYTES), CAMT053_NAMESPACE) >= 0 ? this : null;
+    }
+
+    private static int indexOf(byte[] haystack, int limit, byte[] needle) {
+        for (int i = 0; i + needle.length <= limit; i++) {
+            if (startsWith(haystack, i, needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] haystack, int at, byte[] needle) {
+        for (int k = 0; k < needle.length; k++) {
+            if (haystack[at + k] != needle[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
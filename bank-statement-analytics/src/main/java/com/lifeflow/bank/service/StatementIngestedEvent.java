@@ -0,0 +1,36 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.model.BankTransaction;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Публикуется после того, как выписка пользователя скачана, разобрана и посчитана.
+ *
+ * Сюда подписываются хранилища и индексы — сам конвейер о них ничего не знает.
+ * periodFrom / periodTo могут быть null, если в выписке не нашлось строки периода.
+ */
+public record StatementIngestedEvent(
+        String username,
+        LocalDate periodFrom,
+        LocalDate periodTo,
+        List<BankTransaction> transactions,
+        AnalyticsSummaryDto summary
+) {
+
+    /**
+     * Месяц выписки: по периоду, а без него — по самой поздней операции.
+     */
+    public YearMonth month() {
+        if (periodTo != null) {
+            return YearMonth.from(periodTo);
+        }
+        return transactions.stream()
+                .map(tx -> YearMonth.from(tx.getBookedAt()))
+                .max(YearMonth::compareTo)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,77 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Готовые месячные сводки для подключённых ящиков (по одной на месяц).
+ *
+ * Заполняется фоновыми раннерами через StatementIngestedEvent, чтобы API-запрос
+ * отдавал уже посчитанные месяцы, а не гонял IMAP + PDF на каждый вызов.
+ * Храним только подключённые ящики — иначе память росла бы с каждым пользователем API.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StatementSummaryStore {
+
+    private final EnrolledAccounts enrolledAccounts;
+
+    private final Map<String, NavigableMap<YearMonth, AnalyticsSummaryDto>> byUser = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onStatementIngested(StatementIngestedEvent event) {
+        if (event.username() == null || !enrolledAccounts.isEnrolled(event.username())) {
+            return;
+        }
+        YearMonth month = event.month();
+        if (month == null) {
+            return;
+        }
+        byUser.computeIfAbsent(EnrolledAccounts.normalize(event.username()), u -> new ConcurrentSkipListMap<>())
+                .put(month, event.summary());
+        log.info("StatementSummaryStore: stored {} for {}", month, event.username());
+    }
+
+    /**
+     * lastCount последних месяцев (от новых к старым) или пустой список,
+     * если месяцев в хранилище меньше, чем просят.
+     */
+    public List<AnalyticsSummaryDto> latest(String username, int lastCount) {
+        NavigableMap<YearMonth, AnalyticsSummaryDto> months = byUser.get(EnrolledAccounts.normalize(username));
+        if (months == null || months.size() < lastCount) {
+            return List.of();
+        }
+        List<AnalyticsSummaryDto> out = new ArrayList<>(lastCount);
+        for (AnalyticsSummaryDto summary : months.descendingMap().values()) {
+            if (out.size() == lastCount) {
+                break;
+            }
+            out.add(summary);
+        }
+        return out;
+    }
+
+    public YearMonth latestMonth(String username) {
+        NavigableMap<YearMonth, AnalyticsSummaryDto> months = byUser.get(EnrolledAccounts.normalize(username));
+        return months == null || months.isEmpty() ? null : months.lastKey();
+    }
+
+    public List<YearMonth> months(String username) {
+        NavigableMap<YearMonth, AnalyticsSummaryDto> months = byUser.get(EnrolledAccounts.normalize(username));
+        return months == null ? List.of() : months.keySet().stream().sorted(Comparator.reverseOrder()).toList();
+    }
+}
@@ -0,0 +1,106 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.dto.UploadedStatementDto;
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Выписки, загруженные напрямую (без Gmail): multipart → временный файл → PDF → аналитика.
+ *
+ * Multipart уже пишется Tomcat-ом на диск (spring.servlet.multipart.file-size-threshold: 0),
+ * сюда файл переезжает через transferTo, и PDFBox читает его с диска — в памяти файлы не копятся.
+ * Файлы обрабатываются параллельно на statementUploadExecutor (ограниченный пул).
+ */
+@Service
+@Slf4j
+public class StatementUploadService {
+
+    private final PdfStatementService pdfStatementService;
+    private final AnalyticsService analyticsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService executor;
+
+    public StatementUploadService(PdfStatementService pdfStatementService,
+                                  AnalyticsService analyticsService,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Qualifier("statementUploadExecutor") ExecutorService executor) {
+        this.pdfStatementService = pdfStatementService;
+        this.analyticsService = analyticsService;
+        this.eventPublisher = eventPublisher;
+        this.executor = executor;
+    }
+
+    /**
+     * username — только проверенный (AccountAuthInterceptor) или null: тогда загрузка ничего не сохраняет,
+     * иначе выписки попадают в хранилища пользователя (StatementIngestedEvent).
+     */
+    public List<UploadedStatementDto> analyzeUploads(List<MultipartFile> files, String pdfPassword, String username) {
+        List<CompletableFuture<UploadedStatementDto>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            // transferTo — в потоке запроса, пока multipart ещё жив
+            Path tmp = stage(file);
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> analyzeFile(file.getOriginalFilename(), tmp, pdfPassword, username), executor));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    private Path stage(MultipartFile file) {
+        try {
+            Path tmp = Files.createTempFile("statement-", ".pdf");
+            file.transferTo(tmp);
+            return tmp;
+        } catch (Exception e) {
+            log.error("StatementUploadService: failed to store upload '{}'", file.getOriginalFilename(), e);
+            return null;
+        }
+    }
+
+    private UploadedStatementDto analyzeFile(String fileName, Path tmp, String pdfPassword, String username) {
+        if (tmp == null) {
+            return UploadedStatementDto.builder().fileName(fileName).error("Failed to store upload").build();
+        }
+        try {
+            TatraStatementParser.Result parsed = pdfStatementService.parseTatraStatement(tmp.toFile(), pdfPassword);
+            List<BankTransaction> txs = parsed.getTransactions();
+            AnalyticsSummaryDto summary = analyticsService.analyze(username, txs);
+            log.info("StatementUploadService: '{}' → {} transactions", fileName, txs.size());
+
+            if (username != null && !username.isBlank() && !txs.isEmpty()) {
+                eventPublisher.publishEvent(new StatementIngestedEvent(
+                        username, parsed.getPeriodFrom(), parsed.getPeriodTo(), txs, summary));
+            }
+
+            return UploadedStatementDto.builder()
+                    .fileName(fileName)
+                    .periodFrom(parsed.getPeriodFrom())
+                    .periodTo(parsed.getPeriodTo())
+                    .transactionsCount(txs.size())
+                    .summary(summary)
+                    .build();
+        } catch (Exception e) {
+            log.warn("StatementUploadService: failed to analyze '{}'", fileName, e);
+            return UploadedStatementDto.builder()
+                    .fileName(fileName)
+                    .error(e.getMessage())
+                    .build();
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
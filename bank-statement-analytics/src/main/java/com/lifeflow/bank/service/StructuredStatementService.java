@@ -0,0 +1,50 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import com.lifeflow.bank.metrics.PipelineStage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+
+/**
+ * Выписки в структурированных форматах (CAMT.053, CSV): потоковый разбор без PDFBox.
+ * Отсев дублей — как у PDF: сначала период, потом повторы транзакций.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StructuredStatementService {
+
+    private final CamtStatementParser camtParser;
+    private final CsvStatementParser csvParser;
+    private final PipelineMetrics metrics;
+
+    /**
+     * null — период выписки уже покрыт (только при dedup != null).
+     */
+    public TatraStatementParser.Result parse(StatementFormat format, InputStream in, StatementDeduplicator dedup) {
+        TatraStatementParser.Result parsed = metrics.record(PipelineStage.PARSE, () -> switch (format) {
+            case CAMT053 -> camtParser.parse(in);
+            case CSV -> csvParser.parse(in);
+            case PDF -> throw new IllegalArgumentException("PDF statements go through PdfStatementService");
+        });
+
+        if (dedup == null) {
+            metrics.statementParsed(parsed.getTransactions().size());
+            return parsed;
+        }
+
+        // период занимаем только после удачного разбора: упавшая копия не отсекает следующую
+        if (!dedup.claimPeriod(parsed.getPeriodFrom(), parsed.getPeriodTo())) {
+            metrics.statementSkipped("duplicate_period");
+            return null;
+        }
+        metrics.statementParsed(parsed.getTransactions().size());
+
+        return parsed.toBuilder()
+                .transactions(dedup.retainNew(parsed.getTransactions()))
+                .build();
+    }
+}
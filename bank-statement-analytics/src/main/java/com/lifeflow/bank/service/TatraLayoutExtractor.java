@@ -0,0 +1,361 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.config.PdfExtractionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Табличный режим извлечения: глифы (TextPosition) раскладываются по колонкам выписки Tatra
+ * по их x-координате, строки — по y. Полный текст страницы не собирается.
+ *
+ *  | дата | описание ............................ | сумма | знак |
+ *
+ * Строка с датой в колонке даты открывает операцию, строки ниже с текстом только в колонке описания —
+ * её продолжение (Miesto platby, Príjemca, Suma ...). Всё до первой операции — шапка (из неё берём
+ * только период).
+ *
+ * Операция закрывается только следующей строкой с датой или концом таблицы (Konečný zostatok, Spolu).
+ * Подвал страницы (Strana, Tatra banka, a.s.), вертикальный разрыв или посторонняя строка лишь
+ * приостанавливают её до следующей страницы: блок, перенесённый на новую страницу, дописывается
+ * к той же операции (шапка новой страницы пропускается).
+ *
+ * При извлечении диапазона страниц (PageParallelExtractor) строки продолжения в начале диапазона,
+ * которым не к чему прицепиться, возвращаются в Extraction.leadingLines — их дописывают
+ * к последней операции предыдущего диапазона.
+ *
+ * Не бин: PDFTextStripper хранит состояние, экземпляр — на один документ.
+ */
+@Slf4j
+public final class TatraLayoutExtractor extends PDFTextStripper {
+
+    public record TableRow(LocalDate date,
+                           String description,
+                           String amount,
+                           String sign,
+                           List<String> blockLines) {
+
+        /** Та же операция с дописанными строками блока (продолжение с другой страницы). */
+        public TableRow withMoreLines(List<String> lines) {
+            List<String> block = new ArrayList<>(blockLines.size() + lines.size());
+            block.addAll(blockLines);
+            block.addAll(lines);
+            return new TableRow(date, description, amount, sign, block);
+        }
+    }
+
+    /**
+     * leadingLines — продолжение операции с предыдущих страниц, найденное до первой строки с датой;
+     * endsOpen — последняя операция (или, если операций нет, leadingLines) не закрыта концом таблицы
+     * и может продолжаться на следующих страницах.
+     */
+    public record Extraction(LocalDate periodFrom,
+                             LocalDate periodTo,
+                             List<TableRow> rows,
+                             int charCount,
+                             List<String> leadingLines,
+                             boolean endsOpen) {
+    }
+
+    private static final Pattern DATE = Pattern.compile("^\\d{2}\\.\\d{2}\\.\\d{4}$");
+    /** STRICT: 31.02.2025 — ошибка, а не тихое 28.02.2025. */
+    private static final DateTimeFormatter DATE_FMT =
+            DateTimeFormatter.ofPattern("dd.MM.uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    /** Строки, после которых таблица операций заканчивается. */
+    private static final List<String> TABLE_END_MARKERS = List.of(
+            "konečný zostatok", "konecny zostatok", "spolu"
+    );
+
+    /** Подвал и шапка каждой страницы: операцию не закрывают, но и в её блок не попадают. */
+    private static final List<String> PAGE_MARKERS = List.of(
+            "strana ", "tatra banka, a.s.", "výpis z účtu", "vypis z uctu", "iban"
+    );
+
+    private static final int DATE_COL = 0;
+    private static final int DESCRIPTION_COL = 1;
+    private static final int AMOUNT_COL = 2;
+    private static final int SIGN_COL = 3;
+
+    private final PdfExtractionProperties.Layout layout;
+    private final TatraStatementParser parser;
+
+    private final List<TextPosition> pageGlyphs = new ArrayList<>();
+    private final List<TableRow> rows = new ArrayList<>();
+
+    private LocalDate periodFrom;
+    private LocalDate periodTo;
+    private int charCount;
+
+    // открытая операция
+    private String[] openHead;
+    private List<String> openBlock;
+    private float lastTableRowY;
+
+    /** Продолжение до первой строки с датой: операция началась до этого диапазона страниц. */
+    private final List<String> leadingLines = new ArrayList<>();
+    /** leadingLines ещё может расти: не было ни строки с датой, ни конца таблицы. */
+    private boolean leadingOpen = true;
+    /** Открытый блок не принимает строки до конца страницы (подвал, разрыв, посторонняя строка). */
+    private boolean blockSuspended;
+    /** Ещё не было ни одной строки таблицы на этой странице — разрыв от прошлой строки не считаем. */
+    private boolean pageStart = true;
+
+    private TatraLayoutExtractor(PdfExtractionProperties.Layout layout, TatraStatementParser parser) throws IOException {
+        this.layout = layout;
+        this.parser = parser;
+    }
+
+    public static Extraction extract(PDDocument doc,
+                                     PdfExtractionProperties.Layout layout,
+                                     TatraStatementParser parser) throws IOException {
+        return extract(doc, layout, parser, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Только страницы [startPage, endPage] (нумерация с 1) — для параллельного извлечения.
+     */
+    public static Extraction extract(PDDocument doc,
+                                     PdfExtractionProperties.Layout layout,
+                                     TatraStatementParser parser,
+                                     int startPage,
+                                     int endPage) throws IOException {
+        TatraLayoutExtractor extractor = new TatraLayoutExtractor(layout, parser);
+        extractor.setStartPage(startPage);
+        extractor.setEndPage(endPage);
+        extractor.writeText(doc, Writer.nullWriter());
+
+        boolean endsOpen = extractor.openHead != null || (extractor.rows.isEmpty() && extractor.leadingOpen);
+        extractor.closeOpenRow();
+        return new Extraction(extractor.periodFrom, extractor.periodTo, extractor.rows, extractor.charCount,
+                extractor.leadingLines, endsOpen);
+    }
+
+    /**
+     * Вместо накопления текста (как в PDFTextStripper) просто собираем глифы страницы.
+     */
+    @Override
+    protected void processTextPosition(TextPosition text) {
+        pageGlyphs.add(text);
+    }
+
+    /**
+     * Открытую операцию не закрываем: её блок может продолжиться на следующей странице.
+     */
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+        try {
+            processPage();
+        } finally {
+            pageGlyphs.clear();
+            pageStart = true;
+        }
+    }
+
+    private void processPage() {
+        if (pageGlyphs.isEmpty()) {
+            return;
+        }
+        pageGlyphs.sort(Comparator.comparing(TextPosition::getYDirAdj).thenComparing(TextPosition::getXDirAdj));
+
+        List<TextPosition> line = new ArrayList<>();
+        float lineY = pageGlyphs.get(0).getYDirAdj();
+        float lineHeight = Math.max(pageGlyphs.get(0).getHeightDir(), 1f);
+
+        for (TextPosition t : pageGlyphs) {
+            if (t.getYDirAdj() - lineY > lineHeight * 0.5f) {
+                handleLine(line, lineY, lineHeight);
+                line.clear();
+                lineY = t.getYDirAdj();
+                lineHeight = Math.max(t.getHeightDir(), 1f);
+            }
+            line.add(t);
+        }
+        handleLine(line, lineY, lineHeight);
+    }
+
+    private void handleLine(List<TextPosition> line, float y, float height) {
+        if (line.isEmpty()) {
+            return;
+        }
+        String[] cells = toCells(line);
+
+        if (DATE.matcher(cells[DATE_COL]).matches()) {
+            closeOpenRow();
+            openHead = cells;
+            openBlock = new ArrayList<>();
+            leadingOpen = false;
+            blockSuspended = false;
+            pageStart = false;
+            lastTableRowY = y;
+            charCount += length(cells);
+            return;
+        }
+
+        String full = join(cells);
+        if (full.isEmpty()) {
+            return;
+        }
+
+        // из шапки нужен только период
+        if (periodFrom == null) {
+            TatraStatementParser.Result period = parser.parsePeriod(full);
+            if (period.getPeriodFrom() != null) {
+                periodFrom = period.getPeriodFrom();
+                periodTo = period.getPeriodTo();
+                return;
+            }
+        }
+
+        if (startsWithAny(full, TABLE_END_MARKERS)) {
+            closeOpenRow();
+            leadingOpen = false;
+            return;
+        }
+
+        if (isContinuation(cells, full, y, height)) {
+            (openHead != null ? openBlock : leadingLines).add(full);
+            blockSuspended = false;
+            pageStart = false;
+            lastTableRowY = y;
+            charCount += full.length();
+            return;
+        }
+
+        // подвал, юридический текст, посторонняя строка: до конца страницы блок больше не растёт;
+        // строки шапки новой страницы (до первой строки таблицы) блок не приостанавливают
+        if (!pageStart) {
+            blockSuspended = true;
+        }
+    }
+
+    /**
+     * Текст только в колонке описания, есть куда дописать, и строка — не подвал/шапка страницы.
+     * На той же странице — не дальше maxRowGap от предыдущей строки блока; на новой странице — первая
+     * такая строка продолжает блок с прошлой страницы.
+     */
+    private boolean isContinuation(String[] cells, String full, float y, float height) {
+        boolean descriptionOnly = cells[DATE_COL].isEmpty() && cells[AMOUNT_COL].isEmpty() && cells[SIGN_COL].isEmpty();
+        if (!descriptionOnly || (openHead == null && !leadingOpen) || startsWithAny(full, PAGE_MARKERS)) {
+            return false;
+        }
+        if (pageStart) {
+            return true;
+        }
+        return !blockSuspended && y - lastTableRowY <= height * layout.maxRowGap();
+    }
+
+    private void closeOpenRow() {
+        if (openHead == null) {
+            return;
+        }
+        try {
+            rows.add(new TableRow(
+                    LocalDate.parse(openHead[DATE_COL], DATE_FMT),
+                    openHead[DESCRIPTION_COL],
+                    openHead[AMOUNT_COL],
+                    openHead[SIGN_COL],
+                    openBlock
+            ));
+        } catch (DateTimeParseException e) {
+            // похоже на дату, но такого дня нет (31.02.2025) — операцию пропускаем, а не всю выписку
+            log.warn("TatraLayoutExtractor: invalid date '{}' in row '{}', row dropped",
+                    openHead[DATE_COL], openHead[DESCRIPTION_COL]);
+        } finally {
+            openHead = null;
+            openBlock = null;
+        }
+    }
+
+    /**
+     * Глифы строки → 4 колонки по x / ширине страницы. Пробел вставляем по зазору между глифами.
+     */
+    private String[] toCells(List<TextPosition> line) {
+        line.sort(Comparator.comparing(TextPosition::getXDirAdj));
+
+        StringBuilder[] cells = new StringBuilder[4];
+        float[] cellEnd = new float[4];
+        TextPosition[] lastGlyph = new TextPosition[4];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new StringBuilder();
+        }
+
+        for (TextPosition t : line) {
+            float x = t.getXDirAdj();
+            int col = column(x / t.getPageWidth());
+
+            // «жирный» шрифт иногда рисуется двойным выводом одного глифа со сдвигом — пропускаем дубль
+            TextPosition prev = lastGlyph[col];
+            if (prev != null && prev.getUnicode().equals(t.getUnicode())
+                    && Math.abs(prev.getXDirAdj() - x) < t.getWidthDirAdj() * 0.5f) {
+                continue;
+            }
+
+            if (cells[col].length() > 0) {
+                float space = t.getWidthOfSpace();
+                float gap = Float.isNaN(space) || space <= 0 ? t.getWidthDirAdj() * 0.3f : space * 0.5f;
+                if (x - cellEnd[col] > gap) {
+                    cells[col].append(' ');
+                }
+            }
+            cells[col].append(t.getUnicode());
+            cellEnd[col] = x + t.getWidthDirAdj();
+            lastGlyph[col] = t;
+        }
+
+        String[] out = new String[4];
+        for (int i = 0; i < cells.length; i++) {
+            out[i] = cells[i].toString().trim();
+        }
+        return out;
+    }
+
+    private int column(float xFraction) {
+        if (xFraction < layout.dateColumnEnd()) return DATE_COL;
+        if (xFraction < layout.amountColumnStart()) return DESCRIPTION_COL;
+        if (xFraction < layout.signColumnStart()) return AMOUNT_COL;
+        return SIGN_COL;
+    }
+
+    private static boolean startsWithAny(String text, List<String> markers) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (String marker : markers) {
+            if (lower.startsWith(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String join(String[] cells) {
+        StringBuilder sb = new StringBuilder();
+        for (String c : cells) {
+            if (c.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static int length(String[] cells) {
+        int n = 0;
+        for (String c : cells) {
+            n += c.length();
+        }
+        return n;
+    }
+}
@@ -1,5 +1,6 @@
 package com.lifeflow.bank.service;
 
+import com.lifeflow.bank.jfr.StatementParseEvent;
 import com.lifeflow.bank.model.BankTransaction;
 import lombok.Builder;
 import lombok.Value;
@@ -21,7 +22,7 @@ import java.util.regex.Pattern;
 public class TatraStatementParser {
 
     @Value
-    @Builder
+    @Builder(toBuilder = true)
     public static class Result {
         LocalDate periodFrom;
         LocalDate periodTo;
@@ -63,18 +64,36 @@ public class TatraStatementParser {
     private static final Pattern SUMA_PATTERN =
             Pattern.compile("(?i)suma\\s*:?\\s*([0-9]+[.,][0-9]{2})(-?)");
 
+    /** Колонка суммы в табличном режиме: "10.96", "10,96-", "1 234.56". */
+    private static final Pattern COLUMN_AMOUNT =
+            Pattern.compile("^(\\d{1,3}(?:[ \\u00A0]?\\d{3})*[.,]\\d{2})\\s*(-?)$");
+
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
+    /**
+     * Только период выписки (дешёвый поиск одним регэкспом, без разбора транзакций).
+     * Пустой Result с null-датами, если строки "Obdobie od .. do .." нет.
+     */
+    public Result parsePeriod(String text) {
+        Matcher pm = PERIOD_PATTERN.matcher(text);
+        if (!pm.find()) {
+            return Result.builder().transactions(List.of()).build();
+        }
+        return Result.builder()
+                .periodFrom(LocalDate.parse(pm.group(1), DATE_FMT))
+                .periodTo(LocalDate.parse(pm.group(2), DATE_FMT))
+                .transactions(List.of())
+                .build();
+    }
+
     public Result parse(String text) {
-        LocalDate from = null;
-        LocalDate to = null;
+        StatementParseEvent event = new StatementParseEvent();
+        event.begin();
 
         // 1) Период выписки (если есть)
-        Matcher pm = PERIOD_PATTERN.matcher(text);
-        if (pm.find()) {
-            from = LocalDate.parse(pm.group(1), DATE_FMT);
-            to = LocalDate.parse(pm.group(2), DATE_FMT);
-        }
+        Result period = parsePeriod(text);
+        LocalDate from = period.getPeriodFrom();
+        LocalDate to = period.getPeriodTo();
 
         List<BankTransaction> txs = new ArrayList<>();
         String[] lines = text.split("\\R+");
@@ -95,24 +114,11 @@ public class TatraStatementParser {
 
             String description = line;
 
-            BigDecimal amount = null;
-            boolean isExpense = false;
-
-            String merchant = null;   // Miesto platby: ...
-            String receiver = null;   // Príjemca:
-            String payer = null;      // Platiteľ:
-
             // --- 2.1. Пытаемся взять сумму и знак прямо из головы
+            BigDecimal headAmount = null;
             Matcher headAmountMatcher = TX_HEAD_WITH_AMOUNT.matcher(line);
             if (headAmountMatcher.find()) {
-                String rawAmount = headAmountMatcher.group(2); // 10.96, 670.00
-                String minusFlag = headAmountMatcher.group(3); // "-" или ""
-
-                String normalized = rawAmount.replace(',', '.');
-                BigDecimal value = new BigDecimal(normalized);
-
-                isExpense = "-".equals(minusFlag);
-                amount = isExpense ? value.negate() : value;
+                headAmount = signedAmount(headAmountMatcher.group(2), headAmountMatcher.group(3));
             }
 
             // --- 2.2. Собираем блок строк до следующей операции, чтобы:
@@ -133,95 +139,159 @@ public class TatraStatementParser {
                 }
 
                 blockLines.add(next);
-
-                String lower = next.toLowerCase();
-
-                if (lower.startsWith("miesto platby")) {
-                    merchant = next;
-                } else if (lower.startsWith("príjemca") || lower.startsWith("prijemca")) {
-                    receiver = next;
-                } else if (lower.startsWith("platiteľ") || lower.startsWith("platitel")) {
-                    payer = next;
-                }
             }
 
             // продвигаем i до конца блока
             i = j - 1;
 
-            // --- 2.3. Если сумму из головы не получили — ищем Suma: ... в блоке
-            if (amount == null) {
-                BigDecimal sumaValue = null;
-                String sumaMinus = null;
-
-                for (String blk : blockLines) {
-                    Matcher sm = SUMA_PATTERN.matcher(blk);
-                    if (sm.find()) {
-                        String raw = sm.group(1);      // "2.20", "48.00"
-                        sumaMinus = sm.group(2);       // "-" или ""
-                        String normalized = raw.replace(',', '.');
-                        sumaValue = new BigDecimal(normalized);
-                        break; // берём первую Suma в блоке
-                    }
-                }
+            BankTransaction tx = buildTransaction(bookedAt, description, headAmount, blockLines);
+            if (tx != null) {
+                txs.add(tx);
+            }
+        }
 
-                if (sumaValue == null) {
-                    // не нашли сумму ни в голове, ни в Suma — пропускаем
-                    log.warn("No amount found for tx head '{}', skipping", description);
-                    continue;
-                }
+        return finish(event, text.length(), from, to, txs);
+    }
 
-                // --- 2.4. Определяем знак по контексту блока
-                String blockTextLower = String.join(" ", blockLines).toLowerCase();
-
-                boolean hasOdoslana = blockTextLower.contains("odoslaná platba")
-                        || blockTextLower.contains("odoslana platba");
-                boolean hasPrijata = blockTextLower.contains("prijatá platba")
-                        || blockTextLower.contains("prijata platba");
-                boolean hasVisaDirect = blockTextLower.contains("visa direct");
-                boolean hasVklad = blockTextLower.contains("vklad hotovosti");
-                boolean hasVyber = blockTextLower.contains("výber z bankomatu")
-                        || blockTextLower.contains("vyber z bankomatu");
-
-                if ("-".equals(sumaMinus)) {
-                    // если в Suma явно стоит "-", то это расход
-                    isExpense = true;
-                } else if (hasOdoslana || hasVyber) {
-                    // Odoslaná platba / Výber z bankomatu — всегда расход
-                    isExpense = true;
-                } else if (hasPrijata || hasVisaDirect || hasVklad) {
-                    // Prijatá platba / Visa Direct / Vklad hotovosti — всегда доход
-                    isExpense = false;
-                } else {
-                    // запасной вариант: если нет "-", считаем доходом
-                    isExpense = false;
-                }
+    /**
+     * Транзакции из строк таблицы, собранных по координатам глифов (TatraLayoutExtractor).
+     * Сумма и знак уже лежат в своих колонках — регэкспы по всей строке не нужны;
+     * эвристики по блоку остаются только для строк, где колонка суммы пуста.
+     */
+    public Result parseLayout(TatraLayoutExtractor.Extraction extraction) {
+        StatementParseEvent event = new StatementParseEvent();
+        event.begin();
+
+        List<BankTransaction> txs = new ArrayList<>(extraction.rows().size());
+        for (TatraLayoutExtractor.TableRow row : extraction.rows()) {
+            OffsetDateTime bookedAt = row.date().atStartOfDay().atOffset(ZoneOffset.UTC);
+
+            BigDecimal headAmount = null;
+            Matcher am = COLUMN_AMOUNT.matcher(row.amount());
+            if (am.matches()) {
+                String minus = am.group(2).isEmpty() ? row.sign() : am.group(2);
+                headAmount = signedAmount(am.group(1), minus);
+            }
 
-                amount = isExpense ? sumaValue.negate() : sumaValue;
+            String description = row.date().format(DATE_FMT) + " " + row.description();
+            BankTransaction tx = buildTransaction(bookedAt, description, headAmount, row.blockLines());
+            if (tx != null) {
+                txs.add(tx);
             }
+        }
 
-            // --- 2.5. Выбираем контрагента
-            String counterparty = merchant;
-            if (counterparty == null) {
-                if (amount.signum() < 0 && receiver != null) {
-                    counterparty = receiver;
-                } else if (amount.signum() > 0 && payer != null) {
-                    counterparty = payer;
+        return finish(event, extraction.charCount(), extraction.periodFrom(), extraction.periodTo(), txs);
+    }
+
+    /**
+     * Общая часть обоих режимов: сумма из блока (если её нет в голове), знак по контексту, контрагент.
+     * null — суммы нет ни в голове, ни в блоке.
+     */
+    private BankTransaction buildTransaction(OffsetDateTime bookedAt,
+                                             String description,
+                                             BigDecimal headAmount,
+                                             List<String> blockLines) {
+        String merchant = null;   // Miesto platby: ...
+        String receiver = null;   // Príjemca:
+        String payer = null;      // Platiteľ:
+
+        for (String next : blockLines) {
+            String lower = next.toLowerCase();
+
+            if (lower.startsWith("miesto platby")) {
+                merchant = next;
+            } else if (lower.startsWith("príjemca") || lower.startsWith("prijemca")) {
+                receiver = next;
+            } else if (lower.startsWith("platiteľ") || lower.startsWith("platitel")) {
+                payer = next;
+            }
+        }
+
+        BigDecimal amount = headAmount;
+
+        // --- 2.3. Если сумму из головы не получили — ищем Suma: ... в блоке
+        if (amount == null) {
+            BigDecimal sumaValue = null;
+            String sumaMinus = null;
+
+            for (String blk : blockLines) {
+                Matcher sm = SUMA_PATTERN.matcher(blk);
+                if (sm.find()) {
+                    String raw = sm.group(1);      // "2.20", "48.00"
+                    sumaMinus = sm.group(2);       // "-" или ""
+                    String normalized = raw.replace(',', '.');
+                    sumaValue = new BigDecimal(normalized);
+                    break; // берём первую Suma в блоке
                 }
             }
 
-            BankTransaction tx = BankTransaction.builder()
-                    .bookedAt(bookedAt)
-                    .amount(amount)
-                    .currency("EUR")
-                    .description(description)
-                    .counterparty(counterparty)
-                    .subscription(false)
-                    .regular(false)
-                    .build();
-
-            txs.add(tx);
+            if (sumaValue == null) {
+                // не нашли сумму ни в голове, ни в Suma — пропускаем
+                log.warn("No amount found for tx head '{}', skipping", description);
+                return null;
+            }
+
+            // --- 2.4. Определяем знак по контексту блока
+            String blockTextLower = String.join(" ", blockLines).toLowerCase();
+
+            boolean hasOdoslana = blockTextLower.contains("odoslaná platba")
+                    || blockTextLower.contains("odoslana platba");
+            boolean hasPrijata = blockTextLower.contains("prijatá platba")
+                    || blockTextLower.contains("prijata platba");
+            boolean hasVisaDirect = blockTextLower.contains("visa direct");
+            boolean hasVklad = blockTextLower.contains("vklad hotovosti");
+            boolean hasVyber = blockTextLower.contains("výber z bankomatu")
+                    || blockTextLower.contains("vyber z bankomatu");
+
+            boolean isExpense;
+            if ("-".equals(sumaMinus)) {
+                // если в Suma явно стоит "-", то это расход
+                isExpense = true;
+            } else if (hasOdoslana || hasVyber) {
+                // Odoslaná platba / Výber z bankomatu — всегда расход
+                isExpense = true;
+            } else if (hasPrijata || hasVisaDirect || hasVklad) {
+                // Prijatá platba / Visa Direct / Vklad hotovosti — всегда доход
+                isExpense = false;
+            } else {
+                // запасной вариант: если нет "-", считаем доходом
+                isExpense = false;
+            }
+
+            amount = isExpense ? sumaValue.negate() : sumaValue;
+        }
+
+        // --- 2.5. Выбираем контрагента
+        String counterparty = merchant;
+        if (counterparty == null) {
+            if (amount.signum() < 0 && receiver != null) {
+                counterparty = receiver;
+            } else if (amount.signum() > 0 && payer != null) {
+                counterparty = payer;
+            }
         }
 
+        return BankTransaction.builder()
+                .bookedAt(bookedAt)
+                .amount(amount)
+                .currency("EUR")
+                .description(description)
+                .counterparty(counterparty)
+                .subscription(false)
+                .regular(false)
+                .build();
+    }
+
+    private static BigDecimal signedAmount(String rawAmount, String minusFlag) {
+        BigDecimal value = new BigDecimal(rawAmount.replaceAll("[ \\u00A0]", "").replace(',', '.'));
+        return "-".equals(minusFlag) ? value.negate() : value;
+    }
+
+    private Result finish(StatementParseEvent event,
+                          int textLength,
+                          LocalDate from,
+                          LocalDate to,
+                          List<BankTransaction> txs) {
         // 3) Для контроля — считаем DB/CR как в конце выписки
         BigDecimal db = txs.stream()
                 .map(BankTransaction::getAmount)
@@ -239,10 +309,19 @@ public class TatraStatementParser {
                 txs.size(), from, to, db, cr
         );
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.textLength = textLength;
+            event.transactionCount = txs.size();
+            event.periodFrom = from == null ? null : from.toString();
+            event.periodTo = to == null ? null : to.toString();
+            event.commit();
+        }
+
         return Result.builder()
                 .periodFrom(from)
                 .periodTo(to)
                 .transactions(txs)
                 .build();
     }
-}
\ No newline at end of file
+}
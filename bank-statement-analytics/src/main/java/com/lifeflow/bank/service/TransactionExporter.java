@@ -0,0 +1,151 @@
+package com.lifeflow.bank.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lifeflow.bank.ledger.TransactionLedger;
+import com.lifeflow.bank.model.BankTransaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Потоковая выгрузка истории из журнала в CSV / NDJSON.
+ *
+ * Каждая строка пишется в выходной поток сразу после чтения из курсора журнала,
+ * списка транзакций нет — память не зависит от длины выгрузки.
+ * Буфер периодически сбрасывается, чтобы клиент получал данные чанками, а не в конце.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionExporter {
+
+    private static final int FLUSH_EVERY = 1000;
+    private static final String FORMULA_START = "=+-@\t\r";
+
+    private static final String CSV_HEADER =
+            "date,amount,currency,category_code,category_name,counterparty,description,subscription,regular";
+
+    private final TransactionLedger ledger;
+    private final ObjectMapper objectMapper;
+
+    public long writeCsv(String username, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        w.write(CSV_HEADER);
+        w.write('\n');
+
+        long[] rows = {0};
+        try {
+            ledger.stream(username, from, to, tx -> {
+                try {
+                    w.write(tx.getBookedAt().toLocalDate().toString());
+                    w.write(',');
+                    w.write(tx.getAmount().toPlainString());
+                    w.write(',');
+                    csv(w, tx.getCurrency());
+                    w.write(',');
+                    csv(w, tx.getCategoryCode());
+                    w.write(',');
+                    csv(w, tx.getCategoryName());
+                    w.write(',');
+                    csv(w, tx.getCounterparty());
+                    w.write(',');
+                    csv(w, tx.getDescription());
+                    w.write(',');
+                    w.write(Boolean.toString(tx.isSubscription()));
+                    w.write(',');
+                    w.write(Boolean.toString(tx.isRegular()));
+                    w.write('\n');
+                    if (++rows[0] % FLUSH_EVERY == 0) {
+                        w.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        w.flush();
+
+        log.info("TransactionExporter: exported {} rows as CSV for {}", rows[0], username);
+        return rows[0];
+    }
+
+    public long writeNdjson(String username, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        long[] rows = {0};
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(null); // перевод строки пишем сами — после каждой записи, включая последнюю
+            try {
+                ledger.stream(username, from, to, tx -> {
+                    try {
+                        writeJson(gen, tx);
+                        gen.writeRaw('\n');
+                        if (++rows[0] % FLUSH_EVERY == 0) {
+                            gen.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            gen.flush();
+        }
+
+        log.info("TransactionExporter: exported {} rows as NDJSON for {}", rows[0], username);
+        return rows[0];
+    }
+
+    private static void writeJson(JsonGenerator gen, BankTransaction tx) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("date", tx.getBookedAt().toLocalDate().toString());
+        gen.writeFieldName("amount");
+        gen.writeNumber(tx.getAmount());
+        gen.writeStringField("currency", tx.getCurrency());
+        gen.writeStringField("categoryCode", tx.getCategoryCode());
+        gen.writeStringField("categoryName", tx.getCategoryName());
+        gen.writeStringField("counterparty", tx.getCounterparty());
+        gen.writeStringField("description", tx.getDescription());
+        gen.writeBooleanField("subscription", tx.isSubscription());
+        gen.writeBooleanField("regular", tx.isRegular());
+        gen.writeEndObject();
+    }
+
+    /**
+     * RFC 4180: в кавычки, если есть запятая, кавычка или перевод строки.
+     * Текст, который Excel / LibreOffice приняли бы за формулу (=, +, -, @, таб, CR в начале), —
+     * с апострофом впереди: описание и контрагент приходят из выписки, то есть от третьих лиц.
+     */
+    static void csv(Writer w, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && FORMULA_START.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+}
@@ -0,0 +1,65 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.model.BankTransaction;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * Компактный 64-битный отпечаток транзакции: дата + сумма в центах + контрагент.
+ *
+ * Одна и та же операция в двух копиях выписки даёт одинаковый отпечаток.
+ * Две честные одинаковые операции в один день (два кофе) тоже совпадут —
+ * поэтому сравнивать нужно с учётом количества повторов, см. StatementDeduplicator.
+ */
+public final class TransactionFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private TransactionFingerprint() {
+    }
+
+    public static long of(BankTransaction tx) {
+        long epochDay = tx.getBookedAt() == null ? 0 : tx.getBookedAt().toLocalDate().toEpochDay();
+        long h = FNV_OFFSET;
+        h = mix(h, epochDay);
+        h = mix(h, cents(tx.getAmount()));
+        h = mix(h, normalize(tx.getCounterparty()));
+        return h;
+    }
+
+    public static long cents(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static String normalize(String counterparty) {
+        if (counterparty == null) {
+            return "";
+        }
+        return counterparty.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT);
+    }
+
+    private static long mix(long h, long value) {
+        for (int i = 0; i < 8; i++) {
+            h ^= (value >>> (i * 8)) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long h, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            h ^= c & 0xff;
+            h *= FNV_PRIME;
+            h ^= c >>> 8;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,31 @@
+package com.lifeflow.bank.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Когда пользователь последний раз ходил в API аналитики.
+ * Фоновые раннеры обновляют сначала тех, кто был активен недавно.
+ */
+@Component
+public class UserActivityTracker {
+
+    private final Map<String, Instant> lastSeen = new ConcurrentHashMap<>();
+
+    public void touch(String username) {
+        if (username != null) {
+            lastSeen.put(username.trim().toLowerCase(Locale.ROOT), Instant.now());
+        }
+    }
+
+    /**
+     * null — пользователь с момента старта узла не заходил.
+     */
+    public Instant lastSeen(String username) {
+        return username == null ? null : lastSeen.get(username.trim().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,130 @@
+package com.lifeflow.bank.warmup;
+
+import com.lifeflow.bank.model.BankTransaction;
+import com.lifeflow.bank.service.AnalyticsService;
+import com.lifeflow.bank.service.PdfStatementService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Прогрев PDF-конвейера после старта.
+ *
+ * Первая выписка после рестарта заметно медленнее: PDFBox строит кэш шрифтов
+ * (FontMapperImpl сканирует системные шрифты), грузит крипто-провайдеры,
+ * а регэкспы TatraStatementParser и PDFTextStripper ещё холодные.
+ * Здесь мы в фоне собираем синтетическую зашифрованную выписку Tatra и прогоняем её
+ * через PdfStatementService → AnalyticsService. Пока прогрев не закончился,
+ * health-индикатор "warmup" держит readiness в OUT_OF_SERVICE.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PdfWarmupService {
+
+    private static final String STATEMENT_RESOURCE = "warmup/tatra-statement.txt";
+    private static final String WARMUP_PASSWORD = "warmup";
+
+    private final PdfStatementService pdfStatementService;
+    private final AnalyticsService analyticsService;
+    private final WarmupHealthIndicator healthIndicator;
+
+    @Value("${lifeflow.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lifeflow.warmup.iterations:3}")
+    private int iterations;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            healthIndicator.markSkipped();
+            return;
+        }
+
+        Thread worker = new Thread(this::runWarmup, "pdf-warmup");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void runWarmup() {
+        long start = System.nanoTime();
+        healthIndicator.markStarted();
+        try {
+            // 1) кэш шрифтов PDFBox — самая долгая часть холодного старта
+            FontMappers.instance().getFontBoxFont("Helvetica", null);
+
+            // 2) полный путь: расшифровка → текст → парсер → аналитика
+            byte[] pdf = buildEncryptedStatement();
+            int parsed = 0;
+            for (int i = 0; i < Math.max(1, iterations); i++) {
+                List<BankTransaction> txs = pdfStatementService.parseTatraStatementPdf(
+                        new ByteArrayInputStream(pdf), WARMUP_PASSWORD);
+                analyticsService.analyze(txs);
+                parsed = txs.size();
+            }
+
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            log.info("PdfWarmupService: warm-up finished in {} ms ({} transactions per pass)", ms, parsed);
+            healthIndicator.markFinished(ms, parsed);
+        } catch (Exception e) {
+            // Прогрев — оптимизация: если он упал, узел всё равно должен принимать трафик
+            log.warn("PdfWarmupService: warm-up failed, continuing cold", e);
+            healthIndicator.markFailed(e);
+        }
+    }
+
+    /**
+     * Синтетическая выписка в формате Tatra, зашифрованная паролем (AES-256, как у банка).
+     */
+    private byte[] buildEncryptedStatement() throws IOException {
+        List<String> lines;
+        try (InputStream is = new ClassPathResource(STATEMENT_RESOURCE).getInputStream()) {
+            lines = new String(is.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+
+        try (PDDocument doc = new PDDocument()) {
+            PDPage page = new PDPage();
+            doc.addPage(page);
+
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                cs.beginText();
+                cs.setFont(PDType1Font.HELVETICA, 9);
+                cs.setLeading(11);
+                cs.newLineAtOffset(40, 760);
+                for (String line : lines) {
+                    cs.showText(line);
+                    cs.newLine();
+                }
+                cs.endText();
+            }
+
+            StandardProtectionPolicy policy =
+                    new StandardProtectionPolicy(WARMUP_PASSWORD, WARMUP_PASSWORD, new AccessPermission());
+            policy.setEncryptionKeyLength(256);
+            doc.protect(policy);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+}
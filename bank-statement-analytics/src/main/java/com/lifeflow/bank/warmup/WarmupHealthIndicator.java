@@ -0,0 +1,57 @@
+package com.lifeflow.bank.warmup;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Состояние прогрева PDF-конвейера (health-компонент "warmup").
+ *
+ * Входит в группу readiness (см. application.yml), поэтому балансировщик
+ * не пускает трафик на узел, пока прогрев не закончился.
+ * Ошибка прогрева узел не блокирует — просто первая выписка будет холодной.
+ */
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private enum State { PENDING, RUNNING, DONE, FAILED, SKIPPED }
+
+    private volatile State state = State.PENDING;
+    private volatile long durationMs;
+    private volatile int transactions;
+    private volatile String error;
+
+    void markStarted() {
+        state = State.RUNNING;
+    }
+
+    void markFinished(long durationMs, int transactions) {
+        this.durationMs = durationMs;
+        this.transactions = transactions;
+        state = State.DONE;
+    }
+
+    void markFailed(Exception e) {
+        this.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        state = State.FAILED;
+    }
+
+    void markSkipped() {
+        state = State.SKIPPED;
+    }
+
+    @Override
+    public Health health() {
+        State current = state;
+        return switch (current) {
+            case PENDING, RUNNING -> Health.outOfService().withDetail("state", current).build();
+            case DONE -> Health.up()
+                    .withDetail("state", current)
+                    .withDetail("durationMs", durationMs)
+                    .withDetail("transactions", transactions)
+                    .build();
+            case FAILED -> Health.up().withDetail("state", current).withDetail("error", error).build();
+            case SKIPPED -> Health.up().withDetail("state", current).build();
+        };
+    }
+}
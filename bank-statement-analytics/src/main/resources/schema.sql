@@ -0,0 +1,47 @@
+-- Журнал транзакций по пользователям (TransactionLedger).
+-- Ключ — отпечаток транзакции + номер повтора внутри выписки: повторная загрузка той же
+-- или пересекающейся выписки не создаёт дублей.
+
+CREATE TABLE IF NOT EXISTS bank_transaction (
+    username      VARCHAR(320)  NOT NULL,
+    fingerprint   BIGINT        NOT NULL,
+    occurrence    INT           NOT NULL,
+    booked_on     DATE          NOT NULL,
+    amount        DECIMAL(15,2) NOT NULL,
+    currency      VARCHAR(3),
+    category_code VARCHAR(64),
+    category_name VARCHAR(128),
+    merchant      VARCHAR(512),
+    description   VARCHAR(2048),
+    subscription  BOOLEAN       NOT NULL DEFAULT FALSE,
+    regular       BOOLEAN       NOT NULL DEFAULT FALSE,
+    ingested_at   TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (username, fingerprint, occurrence)
+);
+
+-- диапазон дат по пользователю
+CREATE INDEX IF NOT EXISTS ix_bank_transaction_user_date
+    ON bank_transaction (username, booked_on);
+
+-- категория за период
+CREATE INDEX IF NOT EXISTS ix_bank_transaction_user_category_date
+    ON bank_transaction (username, category_code, booked_on);
+
+-- траты по мерчанту
+CREATE INDEX IF NOT EXISTS ix_bank_transaction_user_merchant
+    ON bank_transaction (username, merchant);
+
+-- порядковый номер записи: производные хранилища (сегменты .lfseg) помнят, до какого номера
+-- журнал у них уже учтён, и при старте дочитывают только строки после него
+ALTER TABLE bank_transaction ADD COLUMN IF NOT EXISTS seq BIGINT GENERATED BY DEFAULT AS IDENTITY;
+
+CREATE INDEX IF NOT EXISTS ix_bank_transaction_user_seq
+    ON bank_transaction (username, seq);
+
+-- месяцы, которыми пользователь уже учтён в распределении трат (SpendingPercentiles):
+-- повторная выписка того же месяца не попадает в скетчи дважды
+CREATE TABLE IF NOT EXISTS percentile_contribution (
+    username VARCHAR(320) NOT NULL,
+    month    VARCHAR(7)   NOT NULL,   -- "2025-03"
+    PRIMARY KEY (username, month)
+);
@@ -0,0 +1,71 @@
+package com.lifeflow.bank.anomaly;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunningStatsTest {
+
+    @Test
+    void meanAndStddevMatchTwoPassComputation() {
+        Random random = new Random(7);
+        double[] xs = new double[10_000];
+        RunningStats stats = new RunningStats();
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 1e6 + random.nextGaussian() * 3; // большое среднее — наивная сумма квадратов теряет точность
+            stats.add(xs[i], i);
+        }
+
+        double mean = 0;
+        for (double x : xs) mean += x;
+        mean /= xs.length;
+        double ss = 0;
+        for (double x : xs) ss += (x - mean) * (x - mean);
+        double stddev = Math.sqrt(ss / (xs.length - 1));
+
+        assertEquals(xs.length, stats.count());
+        assertEquals(mean, stats.mean(), 1e-6);
+        assertEquals(stddev, stats.stddev(), 1e-6);
+    }
+
+    @Test
+    void gapsAreDaysBetweenConsecutiveSpends() {
+        RunningStats stats = new RunningStats();
+        int[] days = {100, 130, 160, 191, 221};
+        for (int day : days) {
+            stats.add(0, day);
+        }
+
+        assertEquals(4, stats.gapCount());
+        assertEquals(30.25, stats.gapMean(), 1e-9);
+        assertEquals(0.5, stats.gapStddev(), 1e-9);
+        assertEquals(9, stats.daysSinceLast(230));
+    }
+
+    @Test
+    void earlierDatesDoNotProduceNegativeGaps() {
+        RunningStats stats = new RunningStats();
+        stats.add(0, 200);
+        stats.add(0, 150); // выписка за прошлый месяц пришла позже
+
+        assertEquals(0, stats.gapCount());
+        assertEquals(-1, stats.daysSinceLast(199));
+        assertEquals(0, stats.daysSinceLast(200));
+        stats.add(0, 210);
+        assertEquals(1, stats.gapCount());
+        assertEquals(10, stats.gapMean(), 1e-9);
+    }
+
+    @Test
+    void emptyAndSingleSampleHaveZeroSpread() {
+        RunningStats stats = new RunningStats();
+        assertEquals(0.0, stats.stddev());
+        assertEquals(-1, stats.daysSinceLast(1));
+        stats.add(2.5, 1);
+        assertEquals(2.5, stats.mean());
+        assertEquals(0.0, stats.stddev());
+        assertEquals(0.0, stats.gapStddev());
+    }
+}
@@ -0,0 +1,58 @@
+package com.lifeflow.bank.anomaly;
+
+import com.lifeflow.bank.dto.SpendingAnomalyDto;
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpendingAnomalyDetectorTest {
+
+    private final SpendingAnomalyDetector detector = new SpendingAnomalyDetector();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(detector, "zThreshold", 3.5);
+        ReflectionTestUtils.setField(detector, "minSamples", 5);
+        ReflectionTestUtils.setField(detector, "maxMerchantsPerUser", 256);
+        ReflectionTestUtils.setField(detector, "recentPerUser", 100);
+    }
+
+    @Test
+    void scoreSeesEarlierTransactionsOfTheSameStatement() {
+        // выписка в обратном порядке дат: оценка всё равно идёт по дате
+        List<BankTransaction> statement = new ArrayList<>();
+        statement.add(tx(LocalDate.of(2025, 3, 20), "-300.00", "Bistro"));
+        for (int day = 1; day <= 5; day++) {
+            statement.add(tx(LocalDate.of(2025, 3, day), "-3.00", "Bistro"));
+        }
+
+        List<SpendingAnomalyDto> anomalies = detector.score("user@x.sk", statement);
+
+        assertEquals(1, anomalies.size());
+        SpendingAnomalyDto anomaly = anomalies.get(0);
+        assertEquals(SpendingAnomalyDetector.AMOUNT_MERCHANT, anomaly.kind());
+        assertEquals(LocalDate.of(2025, 3, 20), anomaly.date());
+        assertEquals(new BigDecimal("3.00"), anomaly.typical());
+
+        // черновая копия не попадает в состояние детектора
+        assertEquals(anomalies, detector.score("user@x.sk", statement));
+        assertTrue(detector.recent("user@x.sk", LocalDate.MIN, LocalDate.MAX).isEmpty());
+    }
+
+    private static BankTransaction tx(LocalDate date, String amount, String merchant) {
+        return BankTransaction.builder()
+                .bookedAt(date.atStartOfDay().atOffset(ZoneOffset.UTC))
+                .amount(new BigDecimal(amount))
+                .counterparty(merchant)
+                .build();
+    }
+}
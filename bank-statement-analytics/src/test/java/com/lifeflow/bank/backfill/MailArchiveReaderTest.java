@@ -0,0 +1,92 @@
+package com.lifeflow.bank.backfill;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailArchiveReaderTest {
+
+    private static final String SENDER = "vypisy@tatrabanka.sk";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mboxIsSplitOnFromLinesAndFilteredBySender() throws IOException {
+        Path mbox = dir.resolve("inbox.mbox");
+        Files.writeString(mbox, ""
+                + "From vypisy@tatrabanka.sk Mon Jan  6 10:00:00 2025\n"
+                + "From: Tatra banka <VYPISY@tatrabanka.sk>\n"
+                + "Subject: Vypis 1\n"
+                + "\n"
+                + "body one\n"
+                + ">From the archive: quoted line stays in the body\n"
+                + "From someone@example.com Tue Jan  7 10:00:00 2025\n"
+                + "From: someone@example.com\n"
+                + "\n"
+                + "mentions vypisy@tatrabanka.sk only in the body\n"
+                + "From vypisy@tatrabanka.sk Wed Feb  5 10:00:00 2025\n"
+                + "Subject: Vypis 2\n"
+                + "From: vypisy@tatrabanka.sk\n"
+                + "\n"
+                + "body two\n", StandardCharsets.US_ASCII);
+
+        List<String> messages = read(mbox);
+
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0).startsWith("From: Tatra banka"));
+        assertTrue(messages.get(0).contains(">From the archive"));
+        assertFalse(messages.get(0).contains("someone@example.com"));
+        assertTrue(messages.get(1).startsWith("Subject: Vypis 2"));
+        assertTrue(messages.get(1).endsWith("body two\n"));
+    }
+
+    @Test
+    void fromInsideLineIsNotABoundary() throws IOException {
+        Path mbox = dir.resolve("one.mbox");
+        Files.writeString(mbox, ""
+                + "From vypisy@tatrabanka.sk Mon Jan  6 10:00:00 2025\n"
+                + "From: vypisy@tatrabanka.sk\n"
+                + "\n"
+                + "text From here is not an envelope\n", StandardCharsets.US_ASCII);
+
+        List<String> messages = read(mbox);
+
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0).contains("text From here"));
+    }
+
+    @Test
+    void maildirYieldsOneMessagePerFile() throws IOException {
+        Path maildir = dir.resolve("Maildir");
+        Files.createDirectories(maildir.resolve("cur"));
+        Files.createDirectories(maildir.resolve("new"));
+        Files.writeString(maildir.resolve("cur/1"), "From: vypisy@tatrabanka.sk\n\nA\n");
+        Files.writeString(maildir.resolve("new/2"), "From: other@example.com\n\nB\n");
+
+        List<String> messages = read(maildir);
+
+        assertEquals(List.of("From: vypisy@tatrabanka.sk\n\nA\n"), messages);
+    }
+
+    private List<String> read(Path path) throws IOException {
+        List<String> out = new ArrayList<>();
+        new MailArchiveReader(SENDER).read(path, buf -> out.add(text(buf)));
+        return out;
+    }
+
+    private static String text(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
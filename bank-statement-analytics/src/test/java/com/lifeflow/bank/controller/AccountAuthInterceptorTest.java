@@ -0,0 +1,67 @@
+package com.lifeflow.bank.controller;
+
+import com.lifeflow.bank.autorun.EnrolledAccounts;
+import com.lifeflow.bank.config.EmailAutorunProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountAuthInterceptorTest {
+
+    private final EnrolledAccounts accounts = new EnrolledAccounts(new EmailAutorunProperties(
+            false, 12, List.of(new EmailAutorunProperties.Account("Jana@Gmail.com", "app-pass", "pdf-pass"))));
+
+    @Test
+    void matchingCredentialsExposeNormalizedUsername() {
+        MockHttpServletRequest request = request("jana@gmail.com", "app-pass", "pdf-pass");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(new AccountAuthInterceptor(accounts, true).preHandle(request, response, null));
+        assertEquals("jana@gmail.com", request.getAttribute(AccountAuthInterceptor.USERNAME));
+    }
+
+    @Test
+    void bareUsernameParamIsRejected() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/analytics/history");
+        request.setParameter("username", "jana@gmail.com");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(new AccountAuthInterceptor(accounts, true).preHandle(request, response, null));
+        assertEquals(401, response.getStatus());
+        assertNull(request.getAttribute(AccountAuthInterceptor.USERNAME));
+    }
+
+    @Test
+    void wrongPdfPasswordIsRejected() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(new AccountAuthInterceptor(accounts, true)
+                .preHandle(request("jana@gmail.com", "app-pass", "wrong"), response, null));
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void optionalModePassesAnonymousButNotBadCredentials() {
+        AccountAuthInterceptor optional = new AccountAuthInterceptor(accounts, false);
+        MockHttpServletRequest anonymous = new MockHttpServletRequest("POST", "/api/analytics/upload");
+
+        assertTrue(optional.preHandle(anonymous, new MockHttpServletResponse(), null));
+        assertNull(anonymous.getAttribute(AccountAuthInterceptor.USERNAME));
+        assertFalse(optional.preHandle(request("jana@gmail.com", "guess", "pdf-pass"), new MockHttpServletResponse(), null));
+    }
+
+    private static MockHttpServletRequest request(String username, String password, String pdfPassword) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/analytics/history");
+        String token = Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Basic " + token);
+        request.addHeader(AccountAuthInterceptor.PDF_PASSWORD_HEADER, pdfPassword);
+        return request;
+    }
+}
@@ -0,0 +1,47 @@
+package com.lifeflow.bank.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdminAuthInterceptorTest {
+
+    @Test
+    void matchingBearerTokenPasses() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(new AdminAuthInterceptor("s3cret").preHandle(request("Bearer s3cret"), response, null));
+    }
+
+    @Test
+    void missingOrWrongTokenIsRejected() {
+        AdminAuthInterceptor interceptor = new AdminAuthInterceptor("s3cret");
+        MockHttpServletResponse anonymous = new MockHttpServletResponse();
+        MockHttpServletResponse wrong = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(request(null), anonymous, null));
+        assertEquals(401, anonymous.getStatus());
+        assertNotNull(anonymous.getHeader(HttpHeaders.WWW_AUTHENTICATE));
+        assertFalse(interceptor.preHandle(request("Bearer s3cre"), wrong, null));
+        assertEquals(401, wrong.getStatus());
+    }
+
+    @Test
+    void unsetTokenDisablesAdminEndpoints() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(new AdminAuthInterceptor("").preHandle(request("Bearer "), response, null));
+        assertEquals(404, response.getStatus());
+    }
+
+    private static MockHttpServletRequest request(String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/admin/merchants/uncategorized");
+        if (authorization != null) {
+            request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,62 @@
+package com.lifeflow.bank.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AiAnalyticsControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void appendsMonthsCountAndKeepsGptFieldsAsIs() throws IOException {
+        String ai = "{\"summary\":\"Траты выросли\",\"tips\":[\"a\",{\"n\":1.5}],\"empty\":{}}";
+
+        String body = splice(ai, 6, null);
+
+        assertEquals("{\"summary\":\"Траты выросли\",\"tips\":[\"a\",{\"n\":1.5}],\"empty\":{},\"monthsCount\":6}", body);
+    }
+
+    @Test
+    void serverValuesReplaceSameNamedGptFields() throws IOException {
+        Map<String, Double> timings = new LinkedHashMap<>();
+        timings.put("gpt", 812.5);
+
+        JsonNode node = objectMapper.readTree(splice(
+                "{\"monthsCount\":{\"nested\":[1,2]},\"timings\":\"fake\",\"summary\":\"x\"}", 3, timings));
+
+        assertEquals(3, node.get("monthsCount").asInt());
+        assertEquals(812.5, node.get("timings").get("gpt").asDouble(), 0.0);
+        assertEquals("x", node.get("summary").asText());
+        assertEquals(3, node.size());
+    }
+
+    @Test
+    void timingsFieldFromGptIsKeptWithoutDebug() throws IOException {
+        JsonNode node = objectMapper.readTree(splice("{\"timings\":\"model\"}", 1, null));
+
+        assertEquals("model", node.get("timings").asText());
+        assertEquals(1, node.get("monthsCount").asInt());
+    }
+
+    @Test
+    void nonObjectOrBrokenJsonIsRejected() {
+        assertThrows(JsonProcessingException.class, () -> splice("[1,2]", 1, null));
+        assertThrows(JsonProcessingException.class, () -> splice("Sorry, I cannot help", 1, null));
+        assertThrows(JsonProcessingException.class, () -> splice("{\"a\":1} {\"b\":2}", 1, null));
+        assertThrows(JsonProcessingException.class, () -> splice("{\"a\":", 1, null));
+    }
+
+    private String splice(String ai, int monthsCount, Map<String, Double> timings) throws IOException {
+        return new String(AiAnalyticsController.spliceMonthsCount(objectMapper, ai, monthsCount, timings),
+                StandardCharsets.UTF_8);
+    }
+}
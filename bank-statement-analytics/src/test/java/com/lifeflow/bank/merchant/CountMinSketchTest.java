@@ -0,0 +1,55 @@
+package com.lifeflow.bank.merchant;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimateNeverUnderCountsAndStaysWithinErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+
+        // Zipf-подобный поток: немного частых мерчантов и длинный хвост
+        for (int i = 0; i < 50_000; i++) {
+            int rank = (int) Math.floor(Math.pow(5_000, random.nextDouble()));
+            long key = MerchantKey.hash("merchant-" + rank);
+            sketch.add(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        long bound = sketch.errorBound();
+        int withinBound = 0;
+        for (Map.Entry<Long, Long> e : exact.entrySet()) {
+            long estimate = sketch.estimate(e.getKey());
+            assertTrue(estimate >= e.getValue(), "count-min never under-counts");
+            if (estimate - e.getValue() <= bound) {
+                withinBound++;
+            }
+        }
+        assertEquals(50_000, sketch.total());
+        // гарантия — с вероятностью 1 − e^(−4) ≈ 98 % на ключ
+        assertTrue(withinBound >= exact.size() * 0.98, withinBound + " of " + exact.size());
+    }
+
+    @Test
+    void addReturnsCurrentEstimate() {
+        CountMinSketch sketch = new CountMinSketch(64, 3);
+        long key = MerchantKey.hash("bolt");
+
+        assertEquals(1, sketch.add(key));
+        assertEquals(2, sketch.add(key));
+        assertEquals(2, sketch.estimate(key));
+    }
+
+    @Test
+    void widthMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(1000, 4));
+    }
+}
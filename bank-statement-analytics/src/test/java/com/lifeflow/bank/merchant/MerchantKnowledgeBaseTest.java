@@ -0,0 +1,110 @@
+package com.lifeflow.bank.merchant;
+
+import com.lifeflow.bank.model.CategoryResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerchantKnowledgeBaseTest {
+
+    private static final CategoryResult[] CATEGORIES = {
+            CategoryResult.FOOD_GROCERIES, CategoryResult.FOOD_RESTAURANT,
+            CategoryResult.TRANSPORT_FUEL, CategoryResult.HOUSING_UTILS
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyCompiledKeyIsFoundWithItsCategoryAndMcc() throws Exception {
+        List<String> names = new ArrayList<>();
+        StringBuilder tsv = new StringBuilder("# name\tcategory\tmcc\n\n");
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String name = "merchant " + Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + " " + i;
+            names.add(name);
+            tsv.append(name).append('\t').append(CATEGORIES[i % CATEGORIES.length].getCode())
+                    .append('\t').append(i % 10_000).append('\n');
+        }
+
+        MerchantKnowledgeBase kb = compileAndLoad(tsv.toString());
+
+        assertEquals(names.size(), kb.size());
+        for (int i = 0; i < names.size(); i++) {
+            int slot = kb.find(MerchantKey.hash(names.get(i)));
+            assertTrue(slot >= 0, names.get(i));
+            assertEquals(CATEGORIES[i % CATEGORIES.length], kb.category(slot));
+            assertEquals(i % 10_000, kb.mcc(slot));
+        }
+        int unknown = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (kb.find(MerchantKey.hash("not in table " + i)) >= 0) {
+                unknown++;
+            }
+        }
+        assertEquals(0, unknown);
+    }
+
+    @Test
+    void lookupNormalizesAndPrefersLongestPrefix() throws Exception {
+        MerchantKnowledgeBase kb = compileAndLoad("""
+                Lidl\tFOOD_GROCERIES\t5411
+                Lidl Košice\tFOOD_RESTAURANT\t5812
+                Slovnaft\tTRANSPORT_FUEL\t5541
+                """);
+
+        assertEquals(CategoryResult.FOOD_RESTAURANT, kb.category(kb.lookup("LIDL KOSICE 1234")));
+        assertEquals(CategoryResult.FOOD_GROCERIES, kb.category(kb.lookup("Lidl Bratislava")));
+        assertEquals(CategoryResult.TRANSPORT_FUEL, kb.category(kb.lookup("Miesto platby: SLOVNAFT, a.s.")));
+        assertEquals(-1, kb.lookup("Tesco"));
+        assertEquals(-1, kb.lookup("Lid"));
+        assertEquals(MerchantKey.hash("INTERSPAR  Košice"), MerchantKey.hash("interspar kosice"));
+    }
+
+    @Test
+    void unknownCategoryIsRejectedByCompiler() throws IOException {
+        Path tsv = dir.resolve("bad.tsv");
+        Files.writeString(tsv, "Lidl\tNOT_A_CATEGORY\n", StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> MerchantKbCompiler.compile(tsv, dir.resolve("bad" + MerchantKbFormat.EXTENSION)));
+    }
+
+    @Test
+    void foreignFileIsNotLoaded() throws Exception {
+        Path file = dir.resolve("foreign" + MerchantKbFormat.EXTENSION);
+        Files.write(file, new byte[64]);
+
+        MerchantKnowledgeBase kb = load(file);
+
+        assertFalse(kb.isLoaded());
+        assertEquals(-1, kb.lookup("Lidl"));
+    }
+
+    private MerchantKnowledgeBase compileAndLoad(String tsvContent) throws Exception {
+        Path tsv = dir.resolve("merchants.tsv");
+        Path out = dir.resolve("merchants" + MerchantKbFormat.EXTENSION);
+        Files.writeString(tsv, tsvContent, StandardCharsets.UTF_8);
+        MerchantKbCompiler.compile(tsv, out);
+        MerchantKnowledgeBase kb = load(out);
+        assertTrue(kb.isLoaded());
+        return kb;
+    }
+
+    private static MerchantKnowledgeBase load(Path file) throws ReflectiveOperationException {
+        MerchantKnowledgeBase kb = new MerchantKnowledgeBase();
+        Field path = MerchantKnowledgeBase.class.getDeclaredField("path");
+        path.setAccessible(true);
+        path.set(kb, file.toString());
+        kb.load();
+        return kb;
+    }
+}
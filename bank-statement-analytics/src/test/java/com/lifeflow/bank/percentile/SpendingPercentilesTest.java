@@ -0,0 +1,104 @@
+package com.lifeflow.bank.percentile;
+
+import com.lifeflow.bank.dto.AnalyticsSummaryDto;
+import com.lifeflow.bank.dto.CategoryAnalyticsDto;
+import com.lifeflow.bank.dto.CategoryPercentileDto;
+import com.lifeflow.bank.service.StatementIngestedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpendingPercentilesTest {
+
+    private static final YearMonth MARCH = YearMonth.of(2025, 3);
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + dir.getFileName() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbc.execute("""
+                CREATE TABLE IF NOT EXISTS percentile_contribution (
+                    username VARCHAR(320) NOT NULL,
+                    month    VARCHAR(7)   NOT NULL,
+                    PRIMARY KEY (username, month)
+                )""");
+    }
+
+    @Test
+    void userIsCountedOncePerMonth() throws Exception {
+        SpendingPercentiles percentiles = percentiles();
+        percentiles.onStatementIngested(event("a@x.sk", "100.00"));
+        percentiles.onStatementIngested(event("A@x.sk", "900.00")); // тот же ящик, повторная выписка
+        percentiles.onStatementIngested(event("b@x.sk", "300.00"));
+
+        assertEquals(2, groceries(percentiles, "200.00").users());
+    }
+
+    @Test
+    void sketchesAndMarkersSurviveRestart() throws Exception {
+        SpendingPercentiles before = percentiles();
+        before.onStatementIngested(event("a@x.sk", "100.00"));
+        before.onStatementIngested(event("b@x.sk", "300.00"));
+        before.persist();
+        CategoryPercentileDto expected = groceries(before, "200.00");
+
+        SpendingPercentiles after = percentiles();
+        after.load();
+        after.onStatementIngested(event("a@x.sk", "5000.00")); // уже учтён до рестарта
+
+        CategoryPercentileDto actual = groceries(after, "200.00");
+        assertEquals(2, actual.users());
+        assertEquals(expected.percentile(), actual.percentile());
+        assertEquals(expected.median(), actual.median());
+        assertEquals(List.of("a@x.sk", "b@x.sk"),
+                jdbc.queryForList("SELECT username FROM percentile_contribution ORDER BY username", String.class));
+    }
+
+    private SpendingPercentiles percentiles() throws ReflectiveOperationException {
+        SpendingPercentiles p = new SpendingPercentiles(jdbc);
+        set(p, "storageDir", dir.toString());
+        set(p, "compression", 100.0);
+        set(p, "retainedMonths", 24);
+        return p;
+    }
+
+    private static CategoryPercentileDto groceries(SpendingPercentiles percentiles, String amount) {
+        return percentiles.percentiles(MARCH, summary(amount)).stream()
+                .filter(p -> p.code().equals("FOOD_GROCERIES"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static StatementIngestedEvent event(String username, String groceries) {
+        return new StatementIngestedEvent(username, MARCH.atDay(1), MARCH.atEndOfMonth(), List.of(), summary(groceries));
+    }
+
+    private static AnalyticsSummaryDto summary(String groceries) {
+        return AnalyticsSummaryDto.builder()
+                .categories(List.of(CategoryAnalyticsDto.builder()
+                        .code("FOOD_GROCERIES")
+                        .amount(new BigDecimal(groceries))
+                        .build()))
+                .build();
+    }
+
+    private static void set(Object target, String field, Object value) throws ReflectiveOperationException {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
@@ -0,0 +1,126 @@
+package com.lifeflow.bank.percentile;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TDigestTest {
+
+    private static final double[] QUANTILES = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+
+    @Test
+    void quantileAndCdfFollowUniformDistribution() {
+        TDigest digest = new TDigest(100);
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            digest.add(random.nextDouble() * 1000);
+        }
+
+        assertEquals(100_000, digest.size());
+        for (double q : QUANTILES) {
+            // ошибка по рангу: у хвостов — доли процента, в середине — до пары процентов
+            double tolerance = Math.max(0.002, Math.min(q, 1 - q) * 0.03);
+            assertEquals(1000 * q, digest.quantile(q), 1000 * tolerance, "q=" + q);
+            assertEquals(q, digest.cdf(1000 * q), tolerance, "cdf at q=" + q);
+        }
+        assertEquals(0.0, digest.cdf(-1));
+        assertEquals(1.0, digest.cdf(1001));
+    }
+
+    @Test
+    void quantileMatchesExactRanksOfSkewedData() {
+        TDigest digest = new TDigest(100);
+        double[] xs = lognormal(50_000, 2);
+        for (double x : xs) {
+            digest.add(x);
+        }
+        Arrays.sort(xs);
+
+        for (double q : QUANTILES) {
+            double estimate = digest.quantile(q);
+            // сравниваем по рангу: доля точных значений ниже оценки ≈ q
+            double rank = rankOf(xs, estimate);
+            assertEquals(q, rank, Math.max(0.002, Math.min(q, 1 - q) * 0.03), "q=" + q);
+        }
+    }
+
+    @Test
+    void mergedDigestsMatchOneDigestOverAllData() {
+        double[] xs = lognormal(60_000, 3);
+        TDigest whole = new TDigest(100);
+        TDigest[] parts = new TDigest[12];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new TDigest(100);
+        }
+        for (int i = 0; i < xs.length; i++) {
+            whole.add(xs[i]);
+            parts[i % parts.length].add(xs[i]);
+        }
+        TDigest merged = new TDigest(100);
+        for (TDigest part : parts) {
+            merged.merge(part);
+        }
+        Arrays.sort(xs);
+
+        assertEquals(whole.size(), merged.size());
+        for (double q : QUANTILES) {
+            double tolerance = Math.max(0.002, Math.min(q, 1 - q) * 0.03);
+            assertEquals(q, rankOf(xs, merged.quantile(q)), tolerance, "merged q=" + q);
+            assertEquals(whole.cdf(xs[(int) (q * xs.length)]), merged.cdf(xs[(int) (q * xs.length)]), tolerance, "cdf q=" + q);
+        }
+    }
+
+    @Test
+    void serializedDigestAnswersTheSame() throws IOException {
+        TDigest digest = new TDigest(100);
+        for (double x : lognormal(10_000, 4)) {
+            digest.add(x);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        digest.writeTo(new DataOutputStream(bytes));
+        TDigest copy = TDigest.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(digest.size(), copy.size());
+        assertEquals(digest.compression(), copy.compression());
+        for (double q : QUANTILES) {
+            assertEquals(digest.quantile(q), copy.quantile(q), 1e-9);
+            assertEquals(digest.cdf(digest.quantile(q)), copy.cdf(digest.quantile(q)), 1e-9);
+        }
+    }
+
+    @Test
+    void emptyAndSingleValue() {
+        TDigest digest = new TDigest(100);
+        assertEquals(0, digest.size());
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+
+        digest.add(42);
+        assertEquals(42.0, digest.quantile(0.01));
+        assertEquals(42.0, digest.quantile(0.99));
+        assertEquals(0.0, digest.cdf(41));
+        assertEquals(1.0, digest.cdf(43));
+    }
+
+    private static double[] lognormal(int n, long seed) {
+        Random random = new Random(seed);
+        double[] xs = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = Math.exp(3 + random.nextGaussian());
+        }
+        return xs;
+    }
+
+    private static double rankOf(double[] sorted, double x) {
+        int i = Arrays.binarySearch(sorted, x);
+        return (i >= 0 ? i : -i - 1) / (double) sorted.length;
+    }
+}
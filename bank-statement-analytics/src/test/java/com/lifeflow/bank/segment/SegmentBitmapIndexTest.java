@@ -0,0 +1,102 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.dto.TransactionFilterDto;
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.lifeflow.bank.segment.SegmentRoundTripTest.tx;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentBitmapIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private final SegmentBitmapIndex index = new SegmentBitmapIndex();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // второй сегмент — выписка за более ранний месяц, загруженная позже
+        SegmentReader march = segment(1, List.of(
+                tx(LocalDate.of(2025, 3, 2), "-10.00", "FOOD_GROCERIES", "Lidl", false, false),      // 0
+                tx(LocalDate.of(2025, 3, 15), "-9.99", "SUBSCRIPTION_MEDIA", "Netflix", true, true),  // 1
+                tx(LocalDate.of(2025, 3, 20), "2000.00", "INCOME_SALARY", "Employer", false, true)    // 2
+        ));
+        SegmentReader february = segment(2, List.of(
+                tx(LocalDate.of(2025, 2, 10), "-25.00", "FOOD_RESTAURANT", "Bistro", false, false),   // 3
+                tx(LocalDate.of(2025, 2, 28), "-4.50", "FOOD_GROCERIES", "LIDL Kosice", false, false) // 4
+        ));
+        index.catchUp(List.of(march, february));
+    }
+
+    @Test
+    void andIntersectsTerms() {
+        RoaringBitmap rows = index.evaluate(filter(List.of(category("FOOD_*"), month("2025-03")), null, null));
+        assertArrayEquals(new int[]{0}, rows.toArray());
+    }
+
+    @Test
+    void orUnitesTerms() {
+        RoaringBitmap rows = index.evaluate(filter(null, List.of(category("FOOD_RESTAURANT"), flag("subscription")), null));
+        assertArrayEquals(new int[]{1, 3}, rows.toArray());
+    }
+
+    @Test
+    void notComplementsAgainstAllRows() {
+        RoaringBitmap rows = index.evaluate(filter(null, null, category("FOOD_*")));
+        assertArrayEquals(new int[]{1, 2}, rows.toArray());
+    }
+
+    @Test
+    void merchantMatchesCaseInsensitiveSubstringAcrossSegments() {
+        RoaringBitmap rows = index.evaluate(new TransactionFilterDto(null, null, null, null, "lidl", null, null, null, null));
+        assertArrayEquals(new int[]{0, 4}, rows.toArray());
+    }
+
+    @Test
+    void pageIsNewestBookingDateFirstRegardlessOfWriteOrder() {
+        RoaringBitmap rows = index.evaluate(null);
+
+        List<LocalDate> dates = index.page(rows, 0, 5).stream()
+                .map(t -> t.getBookedAt().toLocalDate())
+                .toList();
+        assertEquals(List.of(LocalDate.of(2025, 3, 20), LocalDate.of(2025, 3, 15), LocalDate.of(2025, 3, 2),
+                LocalDate.of(2025, 2, 28), LocalDate.of(2025, 2, 10)), dates);
+
+        List<BankTransaction> second = index.page(rows, 2, 2);
+        assertEquals(LocalDate.of(2025, 3, 2), second.get(0).getBookedAt().toLocalDate());
+        assertEquals(LocalDate.of(2025, 2, 28), second.get(1).getBookedAt().toLocalDate());
+        assertTrue(index.page(rows, 5, 2).isEmpty());
+        assertTrue(index.page(rows, (long) Integer.MAX_VALUE * 500, 500).isEmpty());
+    }
+
+    private SegmentReader segment(int n, List<BankTransaction> txs) throws IOException {
+        Path file = dir.resolve(String.format("%08d", n) + SegmentFormat.EXTENSION);
+        SegmentWriter.write(file, txs, n);
+        return SegmentReader.open(file);
+    }
+
+    private static TransactionFilterDto filter(List<TransactionFilterDto> and, List<TransactionFilterDto> or, TransactionFilterDto not) {
+        return new TransactionFilterDto(and, or, not, null, null, null, null, null, null);
+    }
+
+    private static TransactionFilterDto category(String code) {
+        return new TransactionFilterDto(null, null, null, code, null, null, null, null, null);
+    }
+
+    private static TransactionFilterDto month(String month) {
+        return new TransactionFilterDto(null, null, null, null, null, month, null, null, null);
+    }
+
+    private static TransactionFilterDto flag(String flag) {
+        return new TransactionFilterDto(null, null, null, null, null, null, null, null, flag);
+    }
+}
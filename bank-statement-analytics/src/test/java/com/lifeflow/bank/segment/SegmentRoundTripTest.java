@@ -0,0 +1,117 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentRoundTripTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyFieldSurvivesWriteAndMap() throws IOException {
+        List<BankTransaction> txs = List.of(
+                tx(LocalDate.of(2025, 1, 5), "-12.34", "FOOD_GROCERIES", "Lidl", "Platba kartou LIDL KOSICE"),
+                tx(LocalDate.of(2025, 1, 7), "1500.00", "INCOME_SALARY", "Employer s.r.o.", false, true),
+                tx(LocalDate.of(2025, 2, 1), "-9.99", "SUBSCRIPTION_MEDIA", "Netflix", true, true),
+                tx(LocalDate.of(2025, 2, 3), "-3.50", null, null, false, false),
+                tx(LocalDate.of(2025, 2, 4), "-1.00", "FOOD_GROCERIES", "Lidl", false, false)
+        );
+        Path file = dir.resolve("00000001" + SegmentFormat.EXTENSION);
+
+        SegmentWriter.write(file, txs, 42L);
+        SegmentReader seg = SegmentReader.open(file);
+
+        assertEquals(5, seg.size());
+        assertEquals(42L, seg.ledgerSeq());
+        assertEquals(LocalDate.of(2025, 1, 5).toEpochDay(), seg.minEpochDay());
+        assertEquals(LocalDate.of(2025, 2, 4).toEpochDay(), seg.maxEpochDay());
+        assertEquals(4, seg.dictionarySize()); // Lidl один раз + одно описание
+
+        for (int i = 0; i < txs.size(); i++) {
+            BankTransaction tx = txs.get(i);
+            assertEquals(tx.getBookedAt().toLocalDate().toEpochDay(), seg.epochDay(i));
+            assertEquals(tx.getAmount().movePointRight(2).longValueExact(), seg.cents(i));
+            assertEquals(tx.getCategoryCode(), seg.categoryCode(seg.categoryIndex(i)));
+            assertEquals(tx.getCounterparty(), seg.merchant(seg.merchantId(i)));
+            assertEquals(tx.getDescription(), seg.description(i));
+            assertEquals(tx.isSubscription(), seg.subscription(i));
+            assertEquals(tx.isRegular(), seg.regular(i));
+        }
+        assertEquals(-1, seg.categoryIndex(3));
+        assertEquals(-1, seg.merchantId(3));
+        assertEquals(seg.merchantId(0), seg.merchantId(4));
+    }
+
+    @Test
+    void overlongDescriptionIsNotCutInsideASurrogatePair() throws IOException {
+        String emoji = "\uD83D\uDE00";
+        Path file = dir.resolve("00000001" + SegmentFormat.EXTENSION);
+        SegmentWriter.write(file, List.of(
+                tx(LocalDate.of(2025, 3, 10), "-1.00", "OTHER", "A", emoji.repeat(20_000))), 1L);
+        SegmentReader seg = SegmentReader.open(file);
+
+        assertEquals(emoji.repeat(0x3FFE / 2), seg.description(0));
+    }
+
+    @Test
+    void overlapsUsesTheDayRangeFromTheHeader() throws IOException {
+        Path file = dir.resolve("00000001" + SegmentFormat.EXTENSION);
+        SegmentWriter.write(file, List.of(
+                tx(LocalDate.of(2025, 3, 10), "-1.00", "OTHER", "A", false, false),
+                tx(LocalDate.of(2025, 3, 20), "-2.00", "OTHER", "B", false, false)), 1L);
+        SegmentReader seg = SegmentReader.open(file);
+
+        assertTrue(seg.overlaps(LocalDate.of(2025, 3, 20).toEpochDay(), LocalDate.of(2025, 4, 1).toEpochDay()));
+        assertFalse(seg.overlaps(LocalDate.of(2025, 3, 21).toEpochDay(), LocalDate.of(2025, 4, 1).toEpochDay()));
+        assertFalse(seg.overlaps(LocalDate.of(2025, 1, 1).toEpochDay(), LocalDate.of(2025, 3, 9).toEpochDay()));
+    }
+
+    @Test
+    void foreignAndTruncatedFilesAreRejected() throws IOException {
+        Path file = dir.resolve("00000001" + SegmentFormat.EXTENSION);
+        SegmentWriter.write(file, List.of(tx(LocalDate.of(2025, 3, 10), "-1.00", "OTHER", "A", false, false)), 1L);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path truncated = dir.resolve("truncated" + SegmentFormat.EXTENSION);
+        Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> SegmentReader.open(truncated));
+
+        Path foreign = dir.resolve("foreign" + SegmentFormat.EXTENSION);
+        Files.write(foreign, new byte[SegmentFormat.HEADER_SIZE]);
+        assertThrows(IOException.class, () -> SegmentReader.open(foreign));
+    }
+
+    static BankTransaction tx(LocalDate date, String amount, String category, String merchant, String description) {
+        return BankTransaction.builder()
+                .bookedAt(date.atStartOfDay().atOffset(ZoneOffset.UTC))
+                .amount(new BigDecimal(amount))
+                .categoryCode(category)
+                .counterparty(merchant)
+                .description(description)
+                .build();
+    }
+
+    static BankTransaction tx(LocalDate date, String amount, String category, String merchant,
+                              boolean subscription, boolean regular) {
+        return BankTransaction.builder()
+                .bookedAt(date.atStartOfDay().atOffset(ZoneOffset.UTC))
+                .amount(new BigDecimal(amount))
+                .categoryCode(category)
+                .counterparty(merchant)
+                .subscription(subscription)
+                .regular(regular)
+                .build();
+    }
+}
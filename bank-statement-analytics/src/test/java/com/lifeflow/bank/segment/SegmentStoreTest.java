@@ -0,0 +1,41 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.ledger.TransactionsAppendedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.lifeflow.bank.segment.SegmentRoundTripTest.tx;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loginsThatDifferOnlyInSpecialCharactersKeepSeparateHistories() {
+        SegmentStore store = new SegmentStore(null, List.of());
+        ReflectionTestUtils.setField(store, "storageDir", dir.toString());
+
+        store.onTransactionsAppended(new TransactionsAppendedEvent("a+b@x.sk",
+                List.of(tx(LocalDate.of(2025, 1, 5), "-12.34", "FOOD_GROCERIES", "Lidl", false, false)), 0L, 1L));
+        store.onTransactionsAppended(new TransactionsAppendedEvent("a_b@x.sk",
+                List.of(tx(LocalDate.of(2025, 1, 6), "-3.50", "OTHER", "Kiosk", false, false)), 0L, 1L));
+
+        assertNotEquals(SegmentStore.dirName("a+b@x.sk"), SegmentStore.dirName("a_b@x.sk"));
+        assertEquals("Lidl", merchantOfOnlyRecord(store.segments("a+b@x.sk")));
+        assertEquals("Kiosk", merchantOfOnlyRecord(store.segments("a_b@x.sk")));
+    }
+
+    private static String merchantOfOnlyRecord(List<SegmentReader> segments) {
+        assertEquals(1, segments.size());
+        SegmentReader seg = segments.get(0);
+        assertEquals(1, seg.size());
+        return seg.merchant(seg.merchantId(0));
+    }
+}
@@ -0,0 +1,39 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.dto.TransactionPageDto;
+import com.lifeflow.bank.dto.TransactionQueryRequest;
+import com.lifeflow.bank.ledger.TransactionsAppendedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.lifeflow.bank.segment.SegmentRoundTripTest.tx;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionQueryServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pageFarBeyondTheResultIsEmptyInsteadOfOverflowing() {
+        SegmentStore store = new SegmentStore(null, List.of());
+        ReflectionTestUtils.setField(store, "storageDir", dir.toString());
+        store.onTransactionsAppended(new TransactionsAppendedEvent("user@x.sk", List.of(
+                tx(LocalDate.of(2025, 3, 2), "-10.00", "FOOD_GROCERIES", "Lidl", false, false),
+                tx(LocalDate.of(2025, 3, 15), "-9.99", "SUBSCRIPTION_MEDIA", "Netflix", true, true)), 0L, 1L));
+        TransactionQueryService service = new TransactionQueryService(store);
+
+        // Integer.MAX_VALUE * 500 в int — отрицательное смещение
+        TransactionPageDto page = service.query("user@x.sk", new TransactionQueryRequest(null, Integer.MAX_VALUE, 500));
+
+        assertEquals(2, page.total());
+        assertEquals(Integer.MAX_VALUE, page.page());
+        assertTrue(page.items().isEmpty());
+        assertEquals(2, service.query("user@x.sk", new TransactionQueryRequest(null, 0, 500)).items().size());
+    }
+}
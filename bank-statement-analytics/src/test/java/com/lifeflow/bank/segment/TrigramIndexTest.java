@@ -0,0 +1,81 @@
+package com.lifeflow.bank.segment;
+
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.lifeflow.bank.segment.SegmentRoundTripTest.tx;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private final TrigramIndex index = new TrigramIndex();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index.add(segment(1, List.of(
+                tx(LocalDate.of(2025, 1, 3), "-8.40", "FOOD_RESTAURANT", "Koshi Sushi", "Platba kartou KOŠICE"),
+                tx(LocalDate.of(2025, 1, 9), "-2.99", "SUBSCRIPTION_MEDIA", "Apple.com/bill", "Platba kartou"),
+                tx(LocalDate.of(2025, 1, 20), "-12.00", "FOOD_RESTAURANT", "Takoshima", null)
+        )));
+        index.add(segment(2, List.of(
+                tx(LocalDate.of(2025, 2, 14), "-9.10", "FOOD_RESTAURANT", "Koshi Sushi", null)
+        )));
+    }
+
+    @Test
+    void substringMatchesInsideWords() {
+        long[] total = {0};
+        List<BankTransaction> found = index.search("oshi", false, 10, total);
+
+        assertEquals(3, total[0]);
+        assertEquals(List.of("Koshi Sushi", "Takoshima", "Koshi Sushi"),
+                found.stream().map(BankTransaction::getCounterparty).toList());
+        assertEquals(LocalDate.of(2025, 2, 14), found.get(0).getBookedAt().toLocalDate());
+    }
+
+    @Test
+    void prefixMatchesOnlyWordStarts() {
+        long[] total = {0};
+        List<BankTransaction> found = index.search("kos", true, 10, total);
+
+        // "Koshi" и "KOŠICE" (без диакритики) начинают слово, "Takoshima" — нет
+        assertEquals(2, total[0]);
+        assertTrue(found.stream().noneMatch(t -> "Takoshima".equals(t.getCounterparty())));
+    }
+
+    @Test
+    void limitKeepsNewestAndTotalCountsAll() {
+        long[] total = {0};
+        List<BankTransaction> found = index.search("sushi", false, 1, total);
+
+        assertEquals(2, total[0]);
+        assertEquals(1, found.size());
+        assertEquals(LocalDate.of(2025, 2, 14), found.get(0).getBookedAt().toLocalDate());
+    }
+
+    @Test
+    void candidatesAreVerifiedAgainstText() {
+        long[] total = {0};
+        // все триграммы есть в "apple.com/bill", но не подряд
+        assertTrue(index.search("applbill", false, 10, total).isEmpty());
+        assertEquals(0, total[0]);
+        assertEquals(1, index.search("apple.com", false, 10, total).size());
+        assertThrows(IllegalArgumentException.class, () -> index.search("a", false, 10, total));
+    }
+
+    private SegmentReader segment(int n, List<BankTransaction> txs) throws IOException {
+        Path file = dir.resolve(String.format("%08d", n) + SegmentFormat.EXTENSION);
+        SegmentWriter.write(file, txs, n);
+        return SegmentReader.open(file);
+    }
+}
@@ -0,0 +1,87 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CamtStatementParserTest {
+
+    private static final String CAMT = ""
+            + "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:camt.053.001.02\">\n"
+            + " <BkToCstmrStmt><Stmt>\n"
+            + "  <FrToDt><FrDtTm>2025-10-01T00:00:00+02:00</FrDtTm><ToDtTm>2025-10-31T23:59:59+01:00</ToDtTm></FrToDt>\n"
+            + "  <Ntry>\n"
+            + "   <Amt Ccy=\"EUR\">12.30</Amt><CdtDbtInd>DBIT</CdtDbtInd>\n"
+            + "   <BookgDt><Dt>2025-10-03</Dt></BookgDt>\n"
+            + "   <NtryDtls><TxDtls>\n"
+            + "    <AmtDtls><TxAmt><Amt Ccy=\"EUR\">99.99</Amt></TxAmt></AmtDtls>\n"
+            + "    <RltdPties><Dbtr><Nm>Ján Novák</Nm></Dbtr><Cdtr><Nm>Žabka Košice</Nm></Cdtr></RltdPties>\n"
+            + "    <RmtInf><Ustrd>Nákup</Ustrd></RmtInf>\n"
+            + "   </TxDtls></NtryDtls>\n"
+            + "  </Ntry>\n"
+            + "  <Ntry>\n"
+            + "   <Amt Ccy=\"EUR\">1500.00</Amt><CdtDbtInd>CRDT</CdtDbtInd>\n"
+            + "   <ValDt><DtTm>2025-10-10T08:00:00</DtTm></ValDt>\n"
+            + "   <NtryDtls><TxDtls>\n"
+            + "    <RltdPties><Dbtr><Pty><Nm>Employer s.r.o.</Nm></Pty></Dbtr><Cdtr><Nm>Ján Novák</Nm></Cdtr></RltdPties>\n"
+            + "   </TxDtls></NtryDtls>\n"
+            + "   <AddtlNtryInf>Mzda 10/2025</AddtlNtryInf>\n"
+            + "  </Ntry>\n"
+            + " </Stmt></BkToCstmrStmt>\n"
+            + "</Document>\n";
+
+    @Test
+    void debitIsNegativeAndCounterpartyIsCreditor() {
+        TatraStatementParser.Result result = parse(CAMT);
+        BankTransaction purchase = result.getTransactions().get(0);
+
+        assertEquals(new BigDecimal("-12.30"), purchase.getAmount());
+        assertEquals("EUR", purchase.getCurrency());
+        assertEquals(LocalDate.of(2025, 10, 3), purchase.getBookedAt().toLocalDate());
+        assertEquals("Žabka Košice", purchase.getCounterparty());
+        assertEquals("Nákup", purchase.getDescription());
+    }
+
+    @Test
+    void creditIsPositiveAndCounterpartyIsDebtor() {
+        BankTransaction salary = parse(CAMT).getTransactions().get(1);
+
+        assertEquals(new BigDecimal("1500.00"), salary.getAmount());
+        assertEquals(LocalDate.of(2025, 10, 10), salary.getBookedAt().toLocalDate());
+        assertEquals("Employer s.r.o.", salary.getCounterparty());
+        assertEquals("Mzda 10/2025", salary.getDescription());
+    }
+
+    @Test
+    void periodComesFromStatementDates() {
+        TatraStatementParser.Result result = parse(CAMT);
+
+        assertEquals(2, result.getTransactions().size());
+        assertEquals(LocalDate.of(2025, 10, 1), result.getPeriodFrom());
+        assertEquals(LocalDate.of(2025, 10, 31), result.getPeriodTo());
+    }
+
+    @Test
+    void formatSniffingRequiresCamt053Namespace() {
+        assertEquals(StatementFormat.CAMT053, StatementFormat.detect("vypis.xml", null));
+        assertEquals(StatementFormat.CAMT053, StatementFormat.CAMT053.confirm(CAMT.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] camt054 = CAMT.replace("camt.053.001.02", "camt.054.001.02").getBytes(StandardCharsets.UTF_8);
+        byte[] pain = "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pain.001.001.03\"/>".getBytes(StandardCharsets.UTF_8);
+        assertNull(StatementFormat.CAMT053.confirm(camt054));
+        assertNull(StatementFormat.CAMT053.confirm(pain));
+        assertEquals(StatementFormat.CSV, StatementFormat.CSV.confirm(new byte[0]));
+    }
+
+    private static TatraStatementParser.Result parse(String xml) {
+        return new CamtStatementParser().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvStatementParserTest {
+
+    private static final Charset WINDOWS_1250 = Charset.forName("windows-1250");
+
+    private final CsvStatementParser parser = new CsvStatementParser();
+
+    @Test
+    void amountsWithEitherDecimalSeparatorAndTrailingMinus() {
+        List<BankTransaction> txs = parse(""
+                + "Dátum;Suma;Názov protistrany\n"
+                + "01.10.2025;-10,96;Lidl\n"
+                + "02.10.2025;1 234,56;Salary\n"
+                + "03.10.2025;1,234.56;Bonus\n"
+                + "04.10.2025;10.96-;Tesco\n"
+                + "05.10.2025;\"1.234,50\";Rent\n", StandardCharsets.UTF_8);
+
+        assertEquals(List.of(
+                new BigDecimal("-10.96"),
+                new BigDecimal("1234.56"),
+                new BigDecimal("1234.56"),
+                new BigDecimal("-10.96"),
+                new BigDecimal("1234.50")
+        ), txs.stream().map(BankTransaction::getAmount).toList());
+    }
+
+    @Test
+    void singleSeparatorFollowedByThreeDigitsIsGrouping() {
+        List<BankTransaction> txs = parse(""
+                + "date,amount,payee\n"
+                + "2025-10-01,\"1,234\",A\n"
+                + "2025-10-02,1.234,B\n"
+                + "2025-10-03,\"-1,234,567\",C\n"
+                + "2025-10-04,12.5,D\n", StandardCharsets.UTF_8);
+
+        assertEquals(List.of(
+                new BigDecimal("1234"),
+                new BigDecimal("1234"),
+                new BigDecimal("-1234567"),
+                new BigDecimal("12.5")
+        ), txs.stream().map(BankTransaction::getAmount).toList());
+    }
+
+    @Test
+    void debitAndCreditColumnsSetTheSign() {
+        List<BankTransaction> txs = parse(""
+                + "Datum;Debet;Kredit\n"
+                + "01.10.2025;25,00;\n"
+                + "02.10.2025;;100,00\n", StandardCharsets.UTF_8);
+
+        assertEquals(new BigDecimal("-25.00"), txs.get(0).getAmount());
+        assertEquals(new BigDecimal("100.00"), txs.get(1).getAmount());
+    }
+
+    @Test
+    void windows1250FileIsDetectedAndDecoded() {
+        String csv = "Dátum;Suma;Názov protistrany\n"
+                + "01.10.2025;-3,20;Žabka Košice\n"
+                + "15.10.2025;-7,00;Kaviareň\n";
+
+        TatraStatementParser.Result result = new CsvStatementParser()
+                .parse(new ByteArrayInputStream(csv.getBytes(WINDOWS_1250)));
+
+        assertEquals(2, result.getTransactions().size());
+        assertEquals("Žabka Košice", result.getTransactions().get(0).getCounterparty());
+        assertEquals("Kaviareň", result.getTransactions().get(1).getCounterparty());
+        assertEquals(LocalDate.of(2025, 10, 1), result.getPeriodFrom());
+        assertEquals(LocalDate.of(2025, 10, 15), result.getPeriodTo());
+    }
+
+    @Test
+    void utf8WithBomIsKept() throws IOException {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] body = "Dátum;Suma;Názov protistrany\n01.10.2025;-1,00;Žabka\n".getBytes(StandardCharsets.UTF_8);
+        byte[] csv = new byte[bom.length + body.length];
+        System.arraycopy(bom, 0, csv, 0, bom.length);
+        System.arraycopy(body, 0, csv, bom.length, body.length);
+
+        assertEquals(StandardCharsets.UTF_8,
+                CsvStatementParser.detectCharset(new BufferedInputStream(new ByteArrayInputStream(csv))));
+        assertEquals("Žabka", parser.parse(new ByteArrayInputStream(csv)).getTransactions().get(0).getCounterparty());
+    }
+
+    @Test
+    void explicitCharsetSkipsDetection() {
+        byte[] csv = "Datum;Suma;Protistrana\n01.10.2025;-1,00;Čaj\n".getBytes(WINDOWS_1250);
+
+        TatraStatementParser.Result result = parser.parse(new ByteArrayInputStream(csv), WINDOWS_1250);
+
+        assertEquals("Čaj", result.getTransactions().get(0).getCounterparty());
+    }
+
+    private List<BankTransaction> parse(String csv, Charset charset) {
+        return parser.parse(new ByteArrayInputStream(csv.getBytes(charset))).getTransactions();
+    }
+}
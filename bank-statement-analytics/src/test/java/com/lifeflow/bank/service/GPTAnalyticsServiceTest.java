@@ -0,0 +1,51 @@
+package com.lifeflow.bank.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GPTAnalyticsServiceTest {
+
+    private final JsonFactory factory = new JsonFactory();
+
+    @Test
+    void readsFirstChoiceContentSkippingOtherFields() throws IOException {
+        String response = """
+                {"id":"chatcmpl-1","object":"chat.completion",
+                 "usage":{"prompt_tokens":10,"completion_tokens":5},
+                 "choices":[{"index":0,"logprobs":null,
+                             "message":{"role":"assistant","refusal":null,
+                                        "content":"{\\"summary\\":\\"ok\\",\\"tips\\":[\\"a\\"]}"},
+                             "finish_reason":"stop"},
+                            {"index":1,"message":{"role":"assistant","content":"second"}}]}
+                """;
+
+        assertEquals("{\"summary\":\"ok\",\"tips\":[\"a\"]}", read(response));
+    }
+
+    @Test
+    void stopsReadingAfterContent() throws IOException {
+        // хвост после content не читается — битый остаток ответа не мешает
+        String response = "{\"choices\":[{\"message\":{\"content\":\"done\"}}] , !!! garbage";
+
+        assertEquals("done", read(response));
+    }
+
+    @Test
+    void missingContentIsAnError() {
+        assertThrows(IllegalStateException.class, () -> read("{\"choices\":[]}"));
+        assertThrows(IllegalStateException.class, () -> read("{\"error\":{\"message\":\"rate limited\"}}"));
+        assertThrows(IllegalStateException.class, () -> read("{\"choices\":[{\"message\":{\"content\":null}}]}"));
+        assertThrows(IllegalStateException.class, () -> read("[]"));
+    }
+
+    private String read(String json) throws IOException {
+        try (JsonParser p = factory.createParser(json)) {
+            return GPTAnalyticsService.readMessageContent(p);
+        }
+    }
+}
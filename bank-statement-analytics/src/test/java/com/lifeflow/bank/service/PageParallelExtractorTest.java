@@ -0,0 +1,63 @@
+package com.lifeflow.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageParallelExtractorTest {
+
+    @Test
+    void leadingLinesAreAppendedToPreviousChunksOpenRow() {
+        TatraLayoutExtractor.Extraction first = chunk(LocalDate.of(2025, 10, 1), List.of(), true,
+                row(1, "Miesto platby: A"), row(2, "Miesto platby: B"));
+        TatraLayoutExtractor.Extraction second = chunk(null, List.of("Prijemca: B SHOP"), true,
+                row(3));
+        TatraLayoutExtractor.Extraction third = chunk(null, List.of("Sprava: rent"), false,
+                row(4));
+
+        TatraLayoutExtractor.Extraction stitched = PageParallelExtractor.stitch(List.of(first, second, third));
+
+        assertEquals(LocalDate.of(2025, 10, 1), stitched.periodFrom());
+        assertEquals(4, stitched.rows().size());
+        assertEquals(List.of("Miesto platby: A"), stitched.rows().get(0).blockLines());
+        assertEquals(List.of("Miesto platby: B", "Prijemca: B SHOP"), stitched.rows().get(1).blockLines());
+        assertEquals(List.of("Sprava: rent"), stitched.rows().get(2).blockLines());
+        assertEquals(List.of(), stitched.rows().get(3).blockLines());
+        assertFalse(stitched.endsOpen());
+    }
+
+    @Test
+    void chunkWithoutRowsCarriesTheOpenRowForward() {
+        TatraLayoutExtractor.Extraction first = chunk(null, List.of(), true, row(1));
+        TatraLayoutExtractor.Extraction middle = chunk(null, List.of("line 2"), true);
+        TatraLayoutExtractor.Extraction last = chunk(null, List.of("line 3"), false, row(5));
+
+        TatraLayoutExtractor.Extraction stitched = PageParallelExtractor.stitch(List.of(first, middle, last));
+
+        assertEquals(List.of("line 2", "line 3"), stitched.rows().get(0).blockLines());
+    }
+
+    @Test
+    void closedRowDoesNotTakeTheNextChunksLines() {
+        TatraLayoutExtractor.Extraction first = chunk(null, List.of(), false, row(1));
+        TatraLayoutExtractor.Extraction second = chunk(null, List.of("legal text"), false, row(2));
+        // у первого диапазона строк до первой операции нет, к кому их приклеить — выбрасываются
+        TatraLayoutExtractor.Extraction orphanFirst = chunk(null, List.of("header"), true, row(3));
+
+        assertTrue(PageParallelExtractor.stitch(List.of(first, second)).rows().get(0).blockLines().isEmpty());
+        assertTrue(PageParallelExtractor.stitch(List.of(orphanFirst)).rows().get(0).blockLines().isEmpty());
+    }
+
+    private static TatraLayoutExtractor.TableRow row(int day, String... block) {
+        return new TatraLayoutExtractor.TableRow(LocalDate.of(2025, 10, day), "Platba", "1,00", "-", List.of(block));
+    }
+
+    private static TatraLayoutExtractor.Extraction chunk(LocalDate periodFrom, List<String> leading, boolean endsOpen,
+                                                          TatraLayoutExtractor.TableRow... rows) {
+        return new TatraLayoutExtractor.Extraction(periodFrom, periodFrom == null ? null : periodFrom.plusMonths(1),
+                List.of(rows), 0, leading, endsOpen);
+    }
+}
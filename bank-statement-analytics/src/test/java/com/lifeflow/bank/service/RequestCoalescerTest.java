@@ -0,0 +1,109 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = new RequestCoalescer(new PipelineMetrics(registry));
+
+    @Test
+    void keyNormalizesUsernameAndHashesCredentials() {
+        RequestCoalescer.Key a = RequestCoalescer.key(" User@Gmail.com ", 6, "pw", "pdf");
+        RequestCoalescer.Key b = RequestCoalescer.key("user@gmail.com", 6, "pw", "pdf");
+
+        assertEquals(a, b);
+        assertFalse(a.credentialsHash().contains("pw"));
+        assertNotEquals(a, RequestCoalescer.key("user@gmail.com", 6, "other", "pdf"));
+        assertNotEquals(a, RequestCoalescer.key("user@gmail.com", 6, "pw", "other"));
+        assertNotEquals(a, RequestCoalescer.key("user@gmail.com", 3, "pw", "pdf"));
+    }
+
+    @Test
+    void keyDoesNotDependOnDefaultLocale() {
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            assertEquals(RequestCoalescer.key("ivan@gmail.com", 6, "pw", "pdf"),
+                    RequestCoalescer.key("IVAN@GMAIL.COM", 6, "pw", "pdf"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneComputation() throws Exception {
+        RequestCoalescer.Key key = RequestCoalescer.key("user@gmail.com", 6, "pw", "pdf");
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> coalescer.execute(key, () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = pool.submit(() -> coalescer.execute(key, () -> {
+                runs.incrementAndGet();
+                return "own";
+            }));
+            // лидер держится, пока follower не нашёл его вычисление (счётчик coalesced) —
+            // дальше follower получит его результат, даже если лидер уже закончил
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalescedHits() < 1 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(1.0, coalescedHits(), 0.0);
+            release.countDown();
+
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+            assertEquals(0, coalescer.inFlightCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void entryIsRemovedAfterFailureAndNextCallRecomputes() {
+        RequestCoalescer.Key key = RequestCoalescer.key("user@gmail.com", 6, "pw", "pdf");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> coalescer.execute(key, () -> {
+                    throw new IllegalStateException("imap down");
+                }));
+        assertEquals("imap down", e.getMessage());
+        assertEquals(0, coalescer.inFlightCount());
+
+        assertEquals("ok", coalescer.execute(key, () -> "ok"));
+        assertEquals(0, coalescer.inFlightCount());
+    }
+
+    private double coalescedHits() {
+        Counter counter = registry.find("lifeflow.bank.cache.hits").tag("cache", "coalesced").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementDeduplicatorTest {
+
+    @Test
+    void fingerprintIgnoresCounterpartyCaseAndWhitespace() {
+        BankTransaction a = tx(1, "-10.5", "Lidl  Kosice");
+        BankTransaction b = tx(1, "-10.50", " LIDL KOSICE ");
+
+        assertEquals(TransactionFingerprint.of(a), TransactionFingerprint.of(b));
+        assertNotEquals(TransactionFingerprint.of(a), TransactionFingerprint.of(tx(2, "-10.50", "Lidl Kosice")));
+        assertNotEquals(TransactionFingerprint.of(a), TransactionFingerprint.of(tx(1, "-10.51", "Lidl Kosice")));
+    }
+
+    @Test
+    void centsRoundsHalfUpAndKeepsSign() {
+        assertEquals(-1050, TransactionFingerprint.cents(new BigDecimal("-10.5")));
+        assertEquals(1235, TransactionFingerprint.cents(new BigDecimal("12.345")));
+        assertEquals(0, TransactionFingerprint.cents(null));
+    }
+
+    @Test
+    void sameContentIsClaimedOnce() {
+        StatementDeduplicator dedup = new StatementDeduplicator();
+        byte[] pdf = "%PDF-1.4 statement".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(dedup.claimContent(pdf));
+        assertFalse(dedup.claimContent(pdf.clone()));
+        assertTrue(dedup.claimContent("%PDF-1.4 other".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void coveredPeriodIsRejectedButPartialOverlapIsNot() {
+        StatementDeduplicator dedup = new StatementDeduplicator();
+
+        assertTrue(dedup.claimPeriod(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31)));
+        assertFalse(dedup.claimPeriod(LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 20)));
+        assertTrue(dedup.claimPeriod(LocalDate.of(2025, 1, 15), LocalDate.of(2025, 2, 15)));
+        assertTrue(dedup.claimPeriod(null, null));
+    }
+
+    @Test
+    void retainNewKeepsRepeatsBeyondPreviouslyAcceptedCount() {
+        StatementDeduplicator dedup = new StatementDeduplicator();
+        BankTransaction coffee = tx(3, "-2.40", "Saint Coffee");
+        BankTransaction lidl = tx(3, "-30.00", "Lidl");
+
+        assertEquals(List.of(coffee, lidl), dedup.retainNew(List.of(coffee, lidl)));
+
+        // во второй выписке тот же кофе дважды: один уже принят, второй — новый
+        List<BankTransaction> second = dedup.retainNew(List.of(tx(3, "-2.40", "Saint Coffee"), tx(3, "-2.40", "Saint Coffee")));
+        assertEquals(1, second.size());
+
+        // третья копия ничего нового не приносит
+        assertTrue(dedup.retainNew(List.of(tx(3, "-2.40", "Saint Coffee"), tx(3, "-30.00", "Lidl"))).isEmpty());
+    }
+
+    private static BankTransaction tx(int day, String amount, String counterparty) {
+        return BankTransaction.builder()
+                .bookedAt(OffsetDateTime.of(2025, 1, day, 0, 0, 0, 0, ZoneOffset.UTC))
+                .amount(new BigDecimal(amount))
+                .counterparty(counterparty)
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package com.lifeflow.bank.service;
+
+import com.lifeflow.bank.config.PdfExtractionProperties;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TatraLayoutExtractorTest {
+
+    static final PdfExtractionProperties.Layout LAYOUT = new PdfExtractionProperties.Layout(0.17, 0.72, 0.93, 3.0);
+
+    // A4: 595 pt; колонки по LAYOUT — дата < 101, описание < 428, сумма < 553, знак дальше
+    static final float DATE_X = 40;
+    static final float DESCRIPTION_X = 120;
+    static final float AMOUNT_X = 460;
+    static final float SIGN_X = 565;
+    static final float LINE = 11;
+
+    private final TatraStatementParser parser = new TatraStatementParser();
+
+    @Test
+    void glyphsAreBinnedIntoColumnsByX() throws IOException {
+        byte[] pdf = pdf(List.of(List.of(
+                line(DESCRIPTION_X, "Obdobie od 01.10.2025 do 31.10.2025"),
+                row("03.10.2025", "Platba kartou", "12,30", "-"),
+                line(DESCRIPTION_X, "Miesto platby: LIDL KOSICE"),
+                row("05.10.2025", "Prijata platba", "1 500,00", "")
+        )));
+
+        TatraLayoutExtractor.Extraction extraction = extract(pdf);
+
+        assertEquals(LocalDate.of(2025, 10, 1), extraction.periodFrom());
+        assertEquals(LocalDate.of(2025, 10, 31), extraction.periodTo());
+        assertEquals(2, extraction.rows().size());
+
+        TatraLayoutExtractor.TableRow first = extraction.rows().get(0);
+        assertEquals(LocalDate.of(2025, 10, 3), first.date());
+        assertEquals("Platba kartou", first.description());
+        assertEquals("12,30", first.amount());
+        assertEquals("-", first.sign());
+        assertEquals(List.of("Miesto platby: LIDL KOSICE"), first.blockLines());
+
+        TatraLayoutExtractor.TableRow second = extraction.rows().get(1);
+        assertEquals("1 500,00", second.amount());
+        assertEquals("", second.sign());
+        assertTrue(second.blockLines().isEmpty());
+    }
+
+    @Test
+    void rowWithImpossibleDateIsDroppedNotFatal() throws IOException {
+        byte[] pdf = pdf(List.of(List.of(
+                row("31.02.2025", "Neplatny datum", "1,00", "-"),
+                line(DESCRIPTION_X, "Miesto platby: NIKDE"),
+                row("28.02.2025", "Platba kartou", "2,00", "-")
+        )));
+
+        TatraLayoutExtractor.Extraction extraction = extract(pdf);
+
+        assertEquals(1, extraction.rows().size());
+        assertEquals(LocalDate.of(2025, 2, 28), extraction.rows().get(0).date());
+    }
+
+    @Test
+    void blockContinuesOnNextPageAfterFooterAndHeader() throws IOException {
+        byte[] pdf = pdf(List.of(
+                List.of(
+                        row("02.10.2025", "Platba kartou", "20,00", "-"),
+                        line(DESCRIPTION_X, "Miesto platby: BILLA"),
+                        line(DESCRIPTION_X, "Strana 1 / 2")
+                ),
+                List.of(
+                        line(DESCRIPTION_X, "Vypis z uctu 10/2025"),
+                        row("Datum", "Popis", "Suma", ""),
+                        line(DESCRIPTION_X, "Prijemca: BILLA KOSICE"),
+                        row("03.10.2025", "Prevod", "30,00", ""),
+                        line(DESCRIPTION_X, "Konecny zostatok 100,00"),
+                        line(DESCRIPTION_X, "Pravne informacie banky")
+                )));
+
+        List<TatraLayoutExtractor.TableRow> rows = extract(pdf).rows();
+
+        assertEquals(2, rows.size());
+        assertEquals(List.of("Miesto platby: BILLA", "Prijemca: BILLA KOSICE"), rows.get(0).blockLines());
+        assertTrue(rows.get(1).blockLines().isEmpty());
+    }
+
+    @Test
+    void pageRangeReturnsOrphanContinuationAsLeadingLines() throws IOException {
+        byte[] pdf = pdf(List.of(
+                List.of(row("02.10.2025", "Platba kartou", "20,00", "-")),
+                List.of(
+                        line(DESCRIPTION_X, "Prijemca: BILLA KOSICE"),
+                        row("03.10.2025", "Prevod", "30,00", "")
+                )));
+
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            TatraLayoutExtractor.Extraction first = TatraLayoutExtractor.extract(doc, LAYOUT, parser, 1, 1);
+            TatraLayoutExtractor.Extraction second = TatraLayoutExtractor.extract(doc, LAYOUT, parser, 2, 2);
+
+            assertTrue(first.endsOpen());
+            assertEquals(List.of("Prijemca: BILLA KOSICE"), second.leadingLines());
+            assertEquals(1, second.rows().size());
+        }
+    }
+
+    private TatraLayoutExtractor.Extraction extract(byte[] pdf) throws IOException {
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            return TatraLayoutExtractor.extract(doc, LAYOUT, parser);
+        }
+    }
+
+    // ---------- построение PDF ----------
+
+    /** Строка страницы: набор (x, текст) на одной высоте. */
+    record Line(float[] xs, String[] texts) {
+    }
+
+    static Line line(float x, String text) {
+        return new Line(new float[]{x}, new String[]{text});
+    }
+
+    static Line row(String date, String description, String amount, String sign) {
+        return new Line(new float[]{DATE_X, DESCRIPTION_X, AMOUNT_X, SIGN_X},
+                new String[]{date, description, amount, sign});
+    }
+
+    /**
+     * Страницы A4, строки сверху вниз через LINE pt, шрифт Helvetica 9.
+     */
+    static byte[] pdf(List<List<Line>> pages) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            for (List<Line> lines : pages) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                doc.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    float y = PDRectangle.A4.getHeight() - 60;
+                    for (Line l : lines) {
+                        for (int i = 0; i < l.xs().length; i++) {
+                            if (l.texts()[i].isEmpty()) {
+                                continue;
+                            }
+                            cs.beginText();
+                            cs.setFont(PDType1Font.HELVETICA, 9);
+                            cs.newLineAtOffset(l.xs()[i], y);
+                            cs.showText(l.texts()[i]);
+                            cs.endText();
+                        }
+                        y -= LINE;
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.lifeflow.bank.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lifeflow.bank.ledger.TransactionLedger;
+import com.lifeflow.bank.model.BankTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionExporterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void csvCellsThatLookLikeFormulasArePrefixed() throws IOException {
+        assertEquals("\"'=HYPERLINK(\"\"x\"\")\"", cell("=HYPERLINK(\"x\")"));
+        assertEquals("'+421 900", cell("+421 900"));
+        assertEquals("'-5", cell("-5"));
+        assertEquals("'@SUM(A1)", cell("@SUM(A1)"));
+        assertEquals("Lidl = lacné", cell("Lidl = lacné"));
+        assertEquals("\"'=1,2\"", cell("=1,2"));
+        assertEquals("", cell(null));
+    }
+
+    @Test
+    void csvKeepsNegativeAmountsNumeric() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter(List.of(tx("-12.50", "=cmd|' /C calc'!A0"))).writeCsv("u", null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].startsWith("2025-03-01,-12.50,"), lines[1]);
+        assertTrue(lines[1].contains(",'=cmd|' /C calc'!A0,"), lines[1]);
+    }
+
+    @Test
+    void ndjsonIsOneObjectPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exporter(List.of(tx("-1.00", "a"), tx("2.00", "b\nc"))).writeNdjson("u", null, null, out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        String[] lines = body.split("\n");
+        assertEquals(2, rows);
+        assertEquals(2, lines.length);
+        assertTrue(body.endsWith("}\n"), body);
+        assertFalse(lines[1].startsWith(" "), lines[1]);
+        JsonNode second = mapper.readTree(lines[1]);
+        assertEquals("b\nc", second.get("description").asText());
+        assertTrue(lines[1].contains("\"amount\":2.00"), lines[1]);
+    }
+
+    private static String cell(String value) throws IOException {
+        StringWriter w = new StringWriter();
+        TransactionExporter.csv(w, value);
+        return w.toString();
+    }
+
+    private TransactionExporter exporter(List<BankTransaction> txs) {
+        TransactionLedger ledger = new TransactionLedger(null, null) {
+            @Override
+            public void stream(String username, LocalDate from, LocalDate to, Consumer<BankTransaction> sink) {
+                txs.forEach(sink);
+            }
+        };
+        return new TransactionExporter(ledger, mapper);
+    }
+
+    private static BankTransaction tx(String amount, String description) {
+        return BankTransaction.builder()
+                .bookedAt(LocalDate.of(2025, 3, 1).atStartOfDay().atOffset(ZoneOffset.UTC))
+                .amount(new BigDecimal(amount))
+                .currency("EUR")
+                .description(description)
+                .build();
+    }
+}